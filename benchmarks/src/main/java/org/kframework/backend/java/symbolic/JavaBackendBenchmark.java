@@ -0,0 +1,142 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.symbolic;
+
+import org.kframework.backend.java.builtins.BuiltinMapOperations;
+import org.kframework.backend.java.builtins.IntToken;
+import org.kframework.backend.java.kil.BuiltinMap;
+import org.kframework.backend.java.kil.ConstrainedTerm;
+import org.kframework.backend.java.kil.KItem;
+import org.kframework.backend.java.kil.KLabelConstant;
+import org.kframework.backend.java.kil.KList;
+import org.kframework.backend.java.kil.Term;
+import org.kframework.backend.java.util.JavaKRunState;
+import org.kframework.utils.BitSet;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the java backend on a definition of k-distribution (see {@link KompiledDefinition}): whole
+ * executions, with the number of rewrite steps per second as an extra result, and the operations they spend most of
+ * their time in.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class JavaBackendBenchmark {
+
+    /** Number of steps the program is rewritten for before matching the rules against it. */
+    @Param("50")
+    public int matchAfter;
+
+    private ConstrainedTerm matchSubject;
+    private BitSet allRules;
+    private KLabelConstant dividesInt;
+
+    @Setup
+    public void setUp(KompiledDefinition definition) {
+        int ruleCount = definition.definition().ruleTable.size();
+        allRules = BitSet.apply(ruleCount);
+        allRules.makeOnes(ruleCount);
+        JavaKRunState state = (JavaKRunState) definition.symbolicRewriter().rewrite(
+                new ConstrainedTerm(definition.initialTerm, definition.termContext()), matchAfter);
+        matchSubject = state.getConstrainedTerm();
+
+        dividesInt = KLabelConstant.of("_dividesInt_", definition.definition());
+    }
+
+    @State(Scope.Benchmark)
+    public static class MapState {
+        /** Number of entries of the map updated and looked up. */
+        @Param({"10", "1000"})
+        public int size;
+
+        private Term map;
+        private Term presentKey;
+        private Term absentKey;
+
+        @Setup
+        public void setUp(KompiledDefinition definition) {
+            BuiltinMap.Builder builder = BuiltinMap.builder(definition.global());
+            for (int i = 0; i < size; i++) {
+                builder.put(IntToken.of(i), IntToken.of(-i));
+            }
+            map = builder.build();
+            presentKey = IntToken.of(size / 2);
+            absentKey = IntToken.of(size);
+        }
+    }
+
+    /**
+     * The number of rewrite steps taken by {@link #rewrite}, reported per second next to its throughput.
+     */
+    @AuxCounters
+    @State(Scope.Thread)
+    public static class Steps {
+        public long steps;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            steps = 0;
+        }
+    }
+
+    @Benchmark
+    public Term rewrite(KompiledDefinition definition, Steps steps) {
+        JavaKRunState result = (JavaKRunState) definition.symbolicRewriter().rewrite(
+                new ConstrainedTerm(definition.initialTerm, definition.termContext()), -1);
+        steps.steps += result.getStepsTaken().orElse(0);
+        return result.getJavaKilTerm();
+    }
+
+    @Benchmark
+    public List<FastRuleMatcher.RuleMatchResult> matchRulePattern(KompiledDefinition definition) {
+        FastRuleMatcher matcher = new FastRuleMatcher(definition.global(), definition.definition().ruleTable.size());
+        return matcher.matchRulePattern(matchSubject, definition.definition().automaton.leftHandSide(),
+                allRules.clone(), false, true, Collections.emptyList(), matchSubject.termContext());
+    }
+
+    @Benchmark
+    public Term evaluateFunction(KompiledDefinition definition) {
+        // a new term each time, as for the right-hand sides instantiated while rewriting
+        KItem kItem = KItem.of(dividesInt, KList.concatenate(IntToken.of(7), IntToken.of(91)), definition.global());
+        return kItem.evaluate(definition.termContext());
+    }
+
+    @Benchmark
+    public Term mapUpdate(KompiledDefinition definition, MapState map) {
+        return BuiltinMapOperations.update(map.map, map.presentKey, IntToken.of(0), definition.termContext());
+    }
+
+    @Benchmark
+    public Term mapInsert(KompiledDefinition definition, MapState map) {
+        return BuiltinMapOperations.update(map.map, map.absentKey, IntToken.of(0), definition.termContext());
+    }
+
+    @Benchmark
+    public Term mapLookup(KompiledDefinition definition, MapState map) {
+        return BuiltinMapOperations.lookup(map.map, map.presentKey, definition.termContext());
+    }
+
+    @Benchmark
+    public Term convert(KompiledDefinition definition) {
+        return definition.converter().convert(definition.initialConfiguration);
+    }
+}
@@ -0,0 +1,142 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.symbolic;
+
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.kframework.attributes.Source;
+import org.kframework.backend.java.compile.KOREtoBackendKIL;
+import org.kframework.backend.java.kil.Definition;
+import org.kframework.backend.java.kil.GlobalContext;
+import org.kframework.backend.java.kil.Term;
+import org.kframework.backend.java.kil.TermContext;
+import org.kframework.builtin.Sorts;
+import org.kframework.definition.Module;
+import org.kframework.kompile.CompiledDefinition;
+import org.kframework.kore.K;
+import org.kframework.kore.KToken;
+import org.kframework.krun.KRun;
+import org.kframework.krun.api.KRunState;
+import org.kframework.main.Main;
+import org.kframework.rewriter.Rewriter;
+import org.kframework.utils.errorsystem.KExceptionManager;
+import org.kframework.utils.file.FileUtil;
+import org.kframework.utils.inject.DefinitionScope;
+import org.kframework.utils.inject.SimpleScope;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.kframework.kore.KORE.*;
+
+/**
+ * A definition of k-distribution kompiled with the java backend, loaded the way krun loads it, along with the initial
+ * configuration of a program. The paths are relative to the root of the repository, which the benchmarks have to be
+ * run from. The definition is kompiled into benchmarks/target/kompiled the first time, and again whenever it changes.
+ */
+@State(Scope.Benchmark)
+public class KompiledDefinition {
+
+    @Param("k-distribution/tutorial/1_k/2_imp/lesson_1/imp.k")
+    public String definition;
+
+    @Param("k-distribution/tutorial/1_k/2_imp/lesson_1/tests/sum.imp")
+    public String program;
+
+    public CompiledDefinition compiledDefinition;
+    public KExceptionManager kem;
+    /** The initial configuration of the program, before it is converted to the java backend. */
+    public K initialConfiguration;
+    /** The initial configuration of the program, converted and evaluated. */
+    public Term initialTerm;
+
+    private InitializeRewriter.SymbolicRewriterGlue rewriter;
+    private JavaExecutionOptions javaOptions;
+    private SimpleScope requestScope;
+    private DefinitionScope definitionScope;
+
+    @Setup
+    public void setUp() throws IOException {
+        String name = FilenameUtils.getBaseName(definition);
+        File outputDir = new File("benchmarks/target/kompiled/" + name);
+        File kompiledDir = new File(outputDir, name + "-kompiled");
+        File compiled = new File(kompiledDir, "compiled.bin");
+        if (compiled.lastModified() < new File(definition).lastModified()) {
+            int result = Main.getInjector("-kompile").getInstance(Main.class).runApplication("-kompile",
+                    new String[] { definition, "--backend", "java", "-d", outputDir.getPath() },
+                    new File("."), System.getenv());
+            if (result != 0) {
+                throw new IllegalStateException("Could not kompile " + definition);
+            }
+        }
+
+        Injector injector = Main.getInjector("-krun");
+        requestScope = injector.getInstance(Main.class).getRequestScope();
+        requestScope.enter();
+        Main.seedInjector(requestScope, "-krun", new String[] { "--directory", outputDir.getPath(), program },
+                new File("."), System.getenv());
+        definitionScope = injector.getInstance(DefinitionScope.class);
+        definitionScope.enter(kompiledDir.getAbsoluteFile());
+
+        kem = injector.getInstance(KExceptionManager.class);
+        compiledDefinition = injector.getInstance(Key.get(CompiledDefinition.class,
+                org.kframework.utils.inject.Main.class));
+        Function<Module, Rewriter> initializeRewriter = injector.getInstance(
+                Key.get(new TypeLiteral<Function<Module, Rewriter>>() {}, org.kframework.utils.inject.Main.class));
+        rewriter = (InitializeRewriter.SymbolicRewriterGlue) initializeRewriter.apply(
+                compiledDefinition.executionModule());
+        javaOptions = injector.getInstance(JavaExecutionOptions.class);
+
+        File programFile = new File(program);
+        K pgm = compiledDefinition.getProgramParser(kem).apply(FileUtils.readFileToString(programFile),
+                Source.apply(programFile.getAbsolutePath()));
+        Map<KToken, K> configVars = new HashMap<>();
+        configVars.put(KToken("$PGM", Sorts.KConfigVar()), pgm);
+        configVars.put(KToken("$STDIN", Sorts.KConfigVar()), KToken("\"\"", Sorts.String()));
+        configVars.put(KToken("$IO", Sorts.KConfigVar()), KToken("\"off\"", Sorts.String()));
+        initialConfiguration = new KRun(kem, injector.getInstance(FileUtil.class), false)
+                .plugConfigVars(compiledDefinition, configVars);
+        initialTerm = KILtoBackendJavaKILTransformer.expandAndEvaluate(termContext(), kem,
+                converter().convert(initialConfiguration));
+    }
+
+    @TearDown
+    public void tearDown() {
+        definitionScope.exit();
+        requestScope.exit();
+    }
+
+    public Definition definition() {
+        return rewriter.definition;
+    }
+
+    public GlobalContext global() {
+        return rewriter.rewritingContext;
+    }
+
+    /**
+     * A new context, as each execution of krun starts with.
+     */
+    public TermContext termContext() {
+        return TermContext.builder(rewriter.rewritingContext).freshCounter(0).build();
+    }
+
+    public KOREtoBackendKIL converter() {
+        return new KOREtoBackendKIL(rewriter.module, rewriter.definition, rewriter.rewritingContext, false);
+    }
+
+    public SymbolicRewriter symbolicRewriter() {
+        return new SymbolicRewriter(rewriter.rewritingContext, compiledDefinition.kompileOptions, javaOptions,
+                new KRunState.Counter(), converter());
+    }
+}
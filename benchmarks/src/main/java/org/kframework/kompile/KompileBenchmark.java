@@ -0,0 +1,98 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.kompile;
+
+import org.kframework.definition.Definition;
+import org.kframework.main.GlobalOptions;
+import org.kframework.utils.errorsystem.KExceptionManager;
+import org.kframework.utils.file.FileUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import scala.Function1;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Average time of the stages of {@link Kompile} on generated definitions (see {@link SyntheticDefinition}): the
+ * parsing of the definition, including its rules, and each pass of {@link Kompile#defaultStages} on the output of the
+ * passes before it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class KompileBenchmark {
+
+    private static Kompile kompile() {
+        return new Kompile(new KompileOptions(), FileUtil.testFileUtil(), new KExceptionManager(new GlobalOptions()),
+                false);
+    }
+
+    @Benchmark
+    public Definition parseDefinition(SyntheticDefinition definition) {
+        // a new instance each time, as it keeps the outer parses of the files
+        return kompile().parseDefinition(definition.file, SyntheticDefinition.MAIN_MODULE,
+                SyntheticDefinition.MAIN_MODULE);
+    }
+
+    @State(Scope.Benchmark)
+    public static class Stage {
+        /** The name of the pass in {@link Kompile#defaultStages}. */
+        @Param({"resolveIOStreams", "resolveStrict", "resolveAnonVars", "resolveContexts", "resolveHeatCoolAttribute",
+                "resolveSemanticCasts", "generateSortPredicateSyntax", "resolveFreshConstants",
+                "addImplicitComputationCell", "addStrategyCell", "concretizeCells", "addSemanticsModule"})
+        public String stage;
+
+        private Definition input;
+        private Function1<Definition, Definition> pass;
+
+        @Setup
+        public void setUp(SyntheticDefinition definition) {
+            Kompile kompile = kompile();
+            input = kompile.parseDefinition(definition.file, SyntheticDefinition.MAIN_MODULE,
+                    SyntheticDefinition.MAIN_MODULE);
+            for (Map.Entry<String, Function1<Definition, Definition>> entry : kompile.defaultStages().entrySet()) {
+                if (entry.getKey().equals(stage)) {
+                    pass = entry.getValue();
+                    return;
+                }
+                input = entry.getValue().apply(input);
+            }
+            throw new IllegalArgumentException("Unknown stage " + stage);
+        }
+    }
+
+    @Benchmark
+    public Definition stage(Stage stage) {
+        return stage.pass.apply(stage.input);
+    }
+
+    @State(Scope.Benchmark)
+    public static class Parsed {
+        private Kompile kompile;
+        private Definition parsed;
+
+        @Setup
+        public void setUp(SyntheticDefinition definition) {
+            kompile = kompile();
+            parsed = kompile.parseDefinition(definition.file, SyntheticDefinition.MAIN_MODULE,
+                    SyntheticDefinition.MAIN_MODULE);
+        }
+    }
+
+    @Benchmark
+    public Definition defaultSteps(Parsed parsed) {
+        return parsed.kompile.defaultSteps().apply(parsed.parsed);
+    }
+}
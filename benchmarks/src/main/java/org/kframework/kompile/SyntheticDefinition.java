@@ -0,0 +1,149 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.kompile;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.kframework.attributes.Source;
+import org.kframework.definition.Definition;
+import org.kframework.main.GlobalOptions;
+import org.kframework.parser.concrete2kore.ParserUtils;
+import org.kframework.utils.errorsystem.KExceptionManager;
+import org.kframework.utils.file.FileUtil;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * A generated definition, for the benchmarks of the front end to show how it scales with the size of definitions.
+ *
+ * Module M{i} imports M{i-1} and declares the sort E{i}, which includes Int. Half of its productions are functions
+ * "f{i}x{j}" "(" E{i} ")", defined by the rules of the module, and the others are binary operators "o{i}x{j}"
+ * without priorities between them, so that the expressions which mix them are ambiguous. The main module imports the
+ * last one.
+ */
+@State(Scope.Benchmark)
+public class SyntheticDefinition {
+
+    public static final String MAIN_MODULE = "SYNTHETIC";
+
+    /** Number of modules besides the main one. */
+    @Param({"1", "8"})
+    public int modules;
+
+    /** Number of productions of each module, at least 2. */
+    @Param({"16", "128"})
+    public int productions;
+
+    /** Number of rules of each module. */
+    @Param({"16", "128"})
+    public int rules;
+
+    /** The text of the definition. */
+    public String text;
+    /** A file containing the text of the definition, in a directory of its own. */
+    public File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        if (productions < 2) {
+            throw new IllegalArgumentException("Each module needs at least a function and an operator.");
+        }
+        text = definition(modules, productions, rules);
+        file = new File(Files.createTempDirectory("synthetic").toFile(), "synthetic.k");
+        FileUtils.writeStringToFile(file, text, StandardCharsets.UTF_8);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(file.getParentFile());
+    }
+
+    /**
+     * The outer syntax of the definition and of the prelude, with the rules still unparsed.
+     */
+    public Definition load() {
+        FileUtil files = FileUtil.testFileUtil();
+        ParserUtils parser = new ParserUtils(files::resolveWorkingDirectory, new KExceptionManager(new GlobalOptions()));
+        return parser.loadDefinition(MAIN_MODULE, MAIN_MODULE, text, Source.apply(file.getAbsolutePath()),
+                file.getParentFile(), Lists.newArrayList(Kompile.BUILTIN_DIRECTORY), true);
+    }
+
+    /** The name of the module of the definition which imports all the others. */
+    public String lastModule() {
+        return "M" + (modules - 1);
+    }
+
+    /** The sort of the module which imports all the others. */
+    public String lastSort() {
+        return "E" + (modules - 1);
+    }
+
+    public static String definition(int modules, int productions, int rules) {
+        int functions = productions / 2;
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < modules; i++) {
+            sb.append("module M").append(i).append('\n');
+            if (i > 0) {
+                sb.append("  imports M").append(i - 1).append('\n');
+            }
+            sb.append("  syntax E").append(i).append(" ::= Int\n");
+            for (int j = 0; j < productions; j++) {
+                sb.append("  syntax E").append(i).append(" ::= ");
+                if (j < functions) {
+                    sb.append("\"f").append(i).append('x').append(j).append("\" \"(\" E").append(i)
+                            .append(" \")\" [function]\n");
+                } else {
+                    sb.append('E').append(i).append(" \"o").append(i).append('x').append(j).append("\" E")
+                            .append(i).append(" [left]\n");
+                }
+            }
+            for (int r = 0; r < rules; r++) {
+                sb.append("  rule f").append(i).append('x').append(r % functions).append("(I:Int) => I +Int ")
+                        .append(r).append(" requires I ==Int ").append(r).append('\n');
+            }
+            sb.append("endmodule\n\n");
+        }
+        sb.append("module ").append(MAIN_MODULE).append('\n');
+        sb.append("  imports M").append(modules - 1).append('\n');
+        sb.append("endmodule\n");
+        return sb.toString();
+    }
+
+    /**
+     * The body of a rule of module M{module}, whose right-hand side applies the function to an expression of
+     * {@code size} operands mixing all the operators of the module.
+     */
+    public static String rule(int module, int productions, int size) {
+        int functions = productions / 2;
+        StringBuilder sb = new StringBuilder();
+        sb.append('f').append(module).append("x0(I:Int) => f").append(module).append("x0(");
+        appendExpression(sb, module, functions, productions - functions, size, "I");
+        return sb.append(')').toString();
+    }
+
+    /**
+     * A program of sort E{module}, applying the function to an expression of {@code size} operands and a single
+     * operator.
+     */
+    public static String program(int module, int productions, int size) {
+        StringBuilder sb = new StringBuilder();
+        sb.append('f').append(module).append("x0(");
+        appendExpression(sb, module, productions / 2, 1, size, "0");
+        return sb.append(')').toString();
+    }
+
+    private static void appendExpression(StringBuilder sb, int module, int firstOperator, int operators, int size,
+                                         String first) {
+        sb.append(first);
+        for (int k = 1; k < size; k++) {
+            sb.append(" o").append(module).append('x').append(firstOperator + k % operators).append(' ').append(k);
+        }
+    }
+}
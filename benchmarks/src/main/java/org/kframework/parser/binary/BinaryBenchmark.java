@@ -0,0 +1,53 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.parser.binary;
+
+import org.kframework.backend.java.symbolic.KompiledDefinition;
+import org.kframework.kore.K;
+import org.kframework.unparser.ToBinary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link ToBinary} and {@link BinaryParser} on the initial configuration of a program of a definition
+ * of k-distribution (see {@link KompiledDefinition}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class BinaryBenchmark {
+
+    private byte[] binary;
+
+    @Setup
+    public void setUp(KompiledDefinition definition) {
+        binary = ToBinary.apply(definition.initialConfiguration);
+    }
+
+    @Benchmark
+    public byte[] toBinary(KompiledDefinition definition) {
+        return ToBinary.apply(definition.initialConfiguration);
+    }
+
+    @Benchmark
+    public K parse() {
+        return BinaryParser.parse(binary);
+    }
+
+    @Benchmark
+    public K roundTrip(KompiledDefinition definition) {
+        return BinaryParser.parse(ToBinary.apply(definition.initialConfiguration));
+    }
+}
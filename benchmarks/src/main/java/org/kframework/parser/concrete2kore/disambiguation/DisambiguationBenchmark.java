@@ -0,0 +1,255 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.parser.concrete2kore.disambiguation;
+
+import org.kframework.attributes.Source;
+import org.kframework.definition.Definition;
+import org.kframework.definition.Module;
+import org.kframework.kompile.DefinitionParsing;
+import org.kframework.kompile.SyntheticDefinition;
+import org.kframework.kore.K;
+import org.kframework.parser.Ambiguity;
+import org.kframework.parser.HasChildren;
+import org.kframework.parser.Term;
+import org.kframework.parser.concrete2kore.ParseInModule;
+import org.kframework.parser.concrete2kore.generator.RuleGrammarGenerator;
+import org.kframework.parser.concrete2kore.kernel.KSyntax2GrammarStatesFilter;
+import org.kframework.parser.concrete2kore.kernel.Parser;
+import org.kframework.utils.errorsystem.ParseFailedException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import scala.Tuple2;
+import scala.util.Either;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of each disambiguation visitor on a rule of a generated definition (see {@link SyntheticDefinition}),
+ * applied to the output of the visitors which run before it in {@link ParseInModule}, and of the whole parse.
+ *
+ * The visitors prune the ambiguities of a tree in place (see {@link Ambiguity#replaceChildren}), so each visitor is
+ * applied to a fresh copy of its input, made before every invocation (see {@link Input}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class DisambiguationBenchmark {
+
+    /** Number of operands of the right-hand side of the rule. */
+    @Param({"4", "16"})
+    public int size;
+
+    private ParseInModule parser;
+    private Module disambModule;
+    private String rule;
+
+    private Term parsed;
+    private Term cleaned;
+    private Term rewritePriority;
+    private Term kSeqPriority;
+    private Term castPriority;
+    private Term typeChecked;
+    private Term prioritized;
+    private Term inferred;
+    private Term preferred;
+    private Term filtered;
+    private Term withEmptyLists;
+
+    /**
+     * Copies of the inputs of the visitors, which the benchmark may modify.
+     */
+    @State(Scope.Thread)
+    public static class Input {
+        private Term parsed;
+        private Term cleaned;
+        private Term rewritePriority;
+        private Term kSeqPriority;
+        private Term castPriority;
+        private Term typeChecked;
+        private Term prioritized;
+        private Term inferred;
+        private Term preferred;
+        private Term filtered;
+        private Term withEmptyLists;
+
+        @Setup(Level.Invocation)
+        public void copy(DisambiguationBenchmark b) {
+            parsed = DisambiguationBenchmark.copy(b.parsed);
+            cleaned = DisambiguationBenchmark.copy(b.cleaned);
+            rewritePriority = DisambiguationBenchmark.copy(b.rewritePriority);
+            kSeqPriority = DisambiguationBenchmark.copy(b.kSeqPriority);
+            castPriority = DisambiguationBenchmark.copy(b.castPriority);
+            typeChecked = DisambiguationBenchmark.copy(b.typeChecked);
+            prioritized = DisambiguationBenchmark.copy(b.prioritized);
+            inferred = DisambiguationBenchmark.copy(b.inferred);
+            preferred = DisambiguationBenchmark.copy(b.preferred);
+            filtered = DisambiguationBenchmark.copy(b.filtered);
+            withEmptyLists = DisambiguationBenchmark.copy(b.withEmptyLists);
+        }
+    }
+
+    @Setup
+    public void setUp(SyntheticDefinition definition) {
+        Definition loaded = definition.load();
+        RuleGrammarGenerator gen = new RuleGrammarGenerator(loaded, true);
+        parser = gen.getCombinedGrammar(gen.getRuleGrammar(loaded.getModule(definition.lastModule()).get()));
+        disambModule = parser.getDisambiguationModule();
+        rule = SyntheticDefinition.rule(definition.modules - 1, definition.productions, size);
+
+        parsed = new Parser(rule).parse(KSyntax2GrammarStatesFilter.getGrammar(parser.getParsingModule())
+                .get(DefinitionParsing.START_SYMBOL.name()), 0);
+        // each stage is applied to a copy, so that it keeps the ambiguities of the input stored before it
+        cleaned = get(treeCleaner(copy(parsed)));
+        rewritePriority = get(correctRewritePriority(copy(cleaned)));
+        kSeqPriority = get(correctKSeqPriority(copy(rewritePriority)));
+        castPriority = get(correctCastPriority(copy(kSeqPriority)));
+        typeChecked = get(applyTypeCheck(copy(castPriority)));
+        prioritized = get(priority(copy(typeChecked)));
+        inferred = get(variableTypeInference(copy(prioritized))._1());
+        preferred = preferAvoid(copy(inferred));
+        filtered = get(ambFilter(copy(preferred))._1());
+        withEmptyLists = get(addEmptyLists(copy(filtered))._1());
+    }
+
+    /**
+     * @return a copy of {@code t} sharing none of its nodes with children, which are the ones the visitors modify.
+     */
+    private static Term copy(Term t) {
+        if (!(t instanceof HasChildren)) {
+            return t;
+        }
+        List<Term> children = new ArrayList<>();
+        for (Term child : ((HasChildren) t).items()) {
+            children.add(copy(child));
+        }
+        Term copy = ((HasChildren) t).map(children);
+        copy.location_$eq(t.location());
+        copy.source_$eq(t.source());
+        return copy;
+    }
+
+    private static Term get(Either<Set<ParseFailedException>, Term> result) {
+        if (result.isLeft()) {
+            throw result.left().get().iterator().next();
+        }
+        return result.right().get();
+    }
+
+    @Benchmark
+    public Tuple2<Either<Set<ParseFailedException>, K>, Set<ParseFailedException>> parseString() {
+        return parser.parseString(rule, DefinitionParsing.START_SYMBOL, Source.apply("DisambiguationBenchmark"));
+    }
+
+    @Benchmark
+    public Either<Set<ParseFailedException>, Term> treeCleaner(Input input) {
+        return treeCleaner(input.parsed);
+    }
+
+    private Either<Set<ParseFailedException>, Term> treeCleaner(Term t) {
+        return new TreeCleanerVisitor().apply(t);
+    }
+
+    @Benchmark
+    public Either<Set<ParseFailedException>, Term> correctRewritePriority(Input input) {
+        return correctRewritePriority(input.cleaned);
+    }
+
+    private Either<Set<ParseFailedException>, Term> correctRewritePriority(Term t) {
+        return new CorrectRewritePriorityVisitor().apply(t);
+    }
+
+    @Benchmark
+    public Either<Set<ParseFailedException>, Term> correctKSeqPriority(Input input) {
+        return correctKSeqPriority(input.rewritePriority);
+    }
+
+    private Either<Set<ParseFailedException>, Term> correctKSeqPriority(Term t) {
+        return new CorrectKSeqPriorityVisitor().apply(t);
+    }
+
+    @Benchmark
+    public Either<Set<ParseFailedException>, Term> correctCastPriority(Input input) {
+        return correctCastPriority(input.kSeqPriority);
+    }
+
+    private Either<Set<ParseFailedException>, Term> correctCastPriority(Term t) {
+        return new CorrectCastPriorityVisitor().apply(t);
+    }
+
+    @Benchmark
+    public Either<Set<ParseFailedException>, Term> applyTypeCheck(Input input) {
+        return applyTypeCheck(input.castPriority);
+    }
+
+    private Either<Set<ParseFailedException>, Term> applyTypeCheck(Term t) {
+        return new ApplyTypeCheckVisitor(disambModule.subsorts()).apply(t);
+    }
+
+    @Benchmark
+    public Either<Set<ParseFailedException>, Term> priority(Input input) {
+        return priority(input.typeChecked);
+    }
+
+    private Either<Set<ParseFailedException>, Term> priority(Term t) {
+        return new PriorityVisitor(disambModule.priorities(), disambModule.leftAssoc(), disambModule.rightAssoc())
+                .apply(t);
+    }
+
+    @Benchmark
+    public Tuple2<Either<Set<ParseFailedException>, Term>, Set<ParseFailedException>> variableTypeInference(Input input) {
+        return variableTypeInference(input.prioritized);
+    }
+
+    private Tuple2<Either<Set<ParseFailedException>, Term>, Set<ParseFailedException>> variableTypeInference(
+            Term t) {
+        return new VariableTypeInferenceFilter(disambModule.subsorts(), disambModule.definedSorts(),
+                disambModule.productionsFor(), parser.isStrict()).apply(t);
+    }
+
+    @Benchmark
+    public Term preferAvoid(Input input) {
+        return preferAvoid(input.inferred);
+    }
+
+    private Term preferAvoid(Term t) {
+        return new PreferAvoidVisitor().apply(t);
+    }
+
+    @Benchmark
+    public Tuple2<Either<Set<ParseFailedException>, Term>, Set<ParseFailedException>> ambFilter(Input input) {
+        return ambFilter(input.preferred);
+    }
+
+    private Tuple2<Either<Set<ParseFailedException>, Term>, Set<ParseFailedException>> ambFilter(Term t) {
+        return new AmbFilter().apply(t);
+    }
+
+    @Benchmark
+    public Tuple2<Either<Set<ParseFailedException>, Term>, Set<ParseFailedException>> addEmptyLists(Input input) {
+        return addEmptyLists(input.filtered);
+    }
+
+    private Tuple2<Either<Set<ParseFailedException>, Term>, Set<ParseFailedException>> addEmptyLists(Term t) {
+        return new AddEmptyLists(disambModule).apply(t);
+    }
+
+    @Benchmark
+    public Term removeBracket(Input input) {
+        return new RemoveBracketVisitor().apply(input.withEmptyLists);
+    }
+}
@@ -0,0 +1,58 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.parser.concrete2kore.generator;
+
+import org.kframework.definition.Definition;
+import org.kframework.definition.Module;
+import org.kframework.kompile.SyntheticDefinition;
+import org.kframework.parser.concrete2kore.ParseInModule;
+import org.kframework.parser.concrete2kore.kernel.Grammar;
+import org.kframework.parser.concrete2kore.kernel.KSyntax2GrammarStatesFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the generation of the parsers of the rules of generated definitions (see
+ * {@link SyntheticDefinition}): the modules of {@link RuleGrammarGenerator}, and the grammars of
+ * {@link KSyntax2GrammarStatesFilter}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class RuleGrammarGeneratorBenchmark {
+
+    private Definition parsed;
+    private Module module;
+    private Module parsingModule;
+
+    @Setup
+    public void setUp(SyntheticDefinition definition) {
+        parsed = definition.load();
+        module = parsed.getModule(definition.lastModule()).get();
+        RuleGrammarGenerator gen = new RuleGrammarGenerator(parsed, true);
+        parsingModule = gen.getCombinedGrammar(gen.getRuleGrammar(module)).getParsingModule();
+    }
+
+    @Benchmark
+    public ParseInModule combinedGrammar() {
+        RuleGrammarGenerator gen = new RuleGrammarGenerator(parsed, true);
+        return gen.getCombinedGrammar(gen.getRuleGrammar(module));
+    }
+
+    @Benchmark
+    public Grammar grammar() {
+        return KSyntax2GrammarStatesFilter.getGrammar(parsingModule);
+    }
+}
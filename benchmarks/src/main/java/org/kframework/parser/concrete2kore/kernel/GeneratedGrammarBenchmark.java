@@ -0,0 +1,72 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.parser.concrete2kore.kernel;
+
+import org.kframework.definition.Definition;
+import org.kframework.definition.Module;
+import org.kframework.kompile.DefinitionParsing;
+import org.kframework.kompile.SyntheticDefinition;
+import org.kframework.parser.Term;
+import org.kframework.parser.concrete2kore.generator.RuleGrammarGenerator;
+import org.kframework.parser.concrete2kore.kernel.Grammar.NonTerminal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link Parser} on the program and rule grammars of generated definitions (see
+ * {@link SyntheticDefinition}), before any disambiguation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class GeneratedGrammarBenchmark {
+
+    /** Number of operands of the parsed expressions. */
+    @Param({"10", "100"})
+    public int size;
+
+    private NonTerminal programStart;
+    private String program;
+    private NonTerminal ruleStart;
+    private String rule;
+
+    @Setup
+    public void setUp(SyntheticDefinition definition) {
+        Definition parsed = definition.load();
+        RuleGrammarGenerator gen = new RuleGrammarGenerator(parsed, true);
+        Module module = parsed.getModule(definition.lastModule()).get();
+
+        Grammar programGrammar = KSyntax2GrammarStatesFilter.getGrammar(
+                gen.getCombinedGrammar(gen.getProgramsGrammar(module)).getParsingModule());
+        programStart = programGrammar.get(definition.lastSort());
+        program = SyntheticDefinition.program(definition.modules - 1, definition.productions, size);
+
+        Grammar ruleGrammar = KSyntax2GrammarStatesFilter.getGrammar(
+                gen.getCombinedGrammar(gen.getRuleGrammar(module)).getParsingModule());
+        ruleStart = ruleGrammar.get(DefinitionParsing.START_SYMBOL.name());
+        rule = SyntheticDefinition.rule(definition.modules - 1, definition.productions, size);
+    }
+
+    @Benchmark
+    public Term parseProgram() {
+        return new Parser(program).parse(programStart, 0);
+    }
+
+    @Benchmark
+    public Term parseRule() {
+        return new Parser(rule).parse(ruleStart, 0);
+    }
+}
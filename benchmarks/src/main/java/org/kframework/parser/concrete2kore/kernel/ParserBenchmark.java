@@ -0,0 +1,183 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.parser.concrete2kore.kernel;
+
+import dk.brics.automaton.RegExp;
+import dk.brics.automaton.RunAutomaton;
+import org.kframework.builtin.Sorts;
+import org.kframework.definition.Production;
+import org.kframework.parser.Term;
+import org.kframework.parser.concrete2kore.kernel.Grammar.NonTerminal;
+import org.kframework.parser.concrete2kore.kernel.Grammar.NonTerminalState;
+import org.kframework.parser.concrete2kore.kernel.Grammar.RegExState;
+import org.kframework.parser.concrete2kore.kernel.Grammar.RuleState;
+import org.kframework.parser.concrete2kore.kernel.Rule.WrapLabelRule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.kframework.Collections.*;
+import static org.kframework.definition.Constructors.*;
+
+/**
+ * Throughput of {@link Parser} on the grammars of ParserTest, for inputs of increasing size.
+ * Run with {@code -prof gc} to also get the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    /** Number of tokens in the generated inputs. */
+    @Param({"100", "1000", "10000"})
+    public int size;
+
+    private NonTerminal listOfTokens;
+    private String listOfTokensInput;
+    private NonTerminal arithmetic;
+    private String arithmeticInput;
+
+    @Setup
+    public void setUp() {
+        listOfTokens = listOfTokensGrammar();
+        arithmetic = arithmeticGrammar();
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            sb.append('a');
+        }
+        listOfTokensInput = sb.toString();
+
+        sb = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            if (i != 0) {
+                sb.append(i % 3 == 0 ? '+' : '*');
+            }
+            sb.append(i);
+        }
+        arithmeticInput = sb.toString();
+    }
+
+    @Benchmark
+    public Term parseListOfTokens() {
+        return new Parser(listOfTokensInput).parse(listOfTokens, 0);
+    }
+
+    @Benchmark
+    public Term parseArithmetic() {
+        return new Parser(arithmeticInput).parse(arithmetic, 0);
+    }
+
+    // A ::= ("[a-zA-Z0-9]")*  [klabel(seq)]
+    private static NonTerminal listOfTokensGrammar() {
+        NonTerminal nt1 = new NonTerminal("StartNT");
+
+        RegExState res1 = new RegExState("RegExStid", nt1, regex("[a-zA-Z0-9]"));
+        RuleState rs3 = new RuleState("RuleStateId2", nt1, new WrapLabelRule(constant("seq")));
+
+        nt1.entryState.next.add(res1);
+        nt1.entryState.next.add(rs3);
+        res1.next.add(rs3);
+        res1.next.add(res1);
+        rs3.next.add(nt1.exitState);
+        Grammar grammar = new Grammar();
+        grammar.add(nt1);
+        grammar.compile();
+        return nt1;
+    }
+
+    // Lit  ::= Token{[0-9]+}[klabel(lit)]
+    // Term ::= "(" Exp ")"  [klabel(bracket)]
+    //        | Term "*" Lit [klabel(mul)]
+    //        | Lit
+    // Exp  ::= Exp "+" Term [klabel(plus)]
+    //        | Term
+    private static NonTerminal arithmeticGrammar() {
+        NonTerminal lit = new NonTerminal("Lit");
+        NonTerminal trm = new NonTerminal("Trm");
+        NonTerminal exp = new NonTerminal("Exp");
+
+        { // lit
+            RegExState litState = new RegExState("LitState", lit, regex("[0-9]+"));
+            RuleState rs1 = new RuleState("RuleStateId1", lit, new WrapLabelRule(constant("lit")));
+            lit.entryState.next.add(litState);
+            litState.next.add(rs1);
+            rs1.next.add(lit.exitState);
+        }
+
+        { // trm
+            RegExState lparen = new RegExState("LParen", trm, regex("\\("));
+            RegExState rparen = new RegExState("RParen", trm, regex("\\)"));
+            RuleState rs1 = new RuleState("RuleStateId1", trm, new WrapLabelRule(label("bracket")));
+
+            RegExState star = new RegExState("Star", trm, regex("\\*"));
+            NonTerminalState expState = new NonTerminalState("Trm->Exp", trm, exp);
+            NonTerminalState trmState = new NonTerminalState("Trm->Trm", trm, trm);
+            NonTerminalState lit1State = new NonTerminalState("Trm->Lit1", trm, lit);
+            RuleState rs2 = new RuleState("RuleStateId2", trm, new WrapLabelRule(label("mul")));
+
+            NonTerminalState lit2State = new NonTerminalState("Trm->Lit2", trm, lit);
+
+            trm.entryState.next.add(lparen);
+            lparen.next.add(expState);
+            expState.next.add(rparen);
+            rparen.next.add(rs1);
+            rs1.next.add(trm.exitState);
+
+            trm.entryState.next.add(trmState);
+            trmState.next.add(star);
+            star.next.add(lit1State);
+            lit1State.next.add(rs2);
+            rs2.next.add(trm.exitState);
+
+            trm.entryState.next.add(lit2State);
+            lit2State.next.add(trm.exitState);
+        }
+
+        { // exp
+            RegExState plus = new RegExState("Plus", exp, regex("\\+"));
+            NonTerminalState expState = new NonTerminalState("Exp->Exp", exp, exp);
+            NonTerminalState trm1State = new NonTerminalState("Exp->Trm1", exp, trm);
+            RuleState rs1 = new RuleState("RuleStateId3", exp, new WrapLabelRule(label("plus")));
+            NonTerminalState trm2State = new NonTerminalState("Exp->Trm2", exp, trm);
+
+            exp.entryState.next.add(expState);
+            expState.next.add(plus);
+            plus.next.add(trm1State);
+            trm1State.next.add(rs1);
+            rs1.next.add(exp.exitState);
+
+            exp.entryState.next.add(trm2State);
+            trm2State.next.add(exp.exitState);
+        }
+
+        Grammar grammar = new Grammar();
+        grammar.add(exp);
+        grammar.compile();
+        return exp;
+    }
+
+    private static Production constant(String x) {
+        return Production(Sorts.K(), Seq(Terminal(x)), Att().add("token"));
+    }
+
+    private static Production label(String x) {
+        return Production(x, Sorts.K(), Seq(NonTerminal(Sorts.K())));
+    }
+
+    private static RunAutomaton regex(String x) {
+        return new RunAutomaton(new RegExp(x).toAutomaton(), false);
+    }
+}
@@ -0,0 +1,56 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.parser.outer;
+
+import org.apache.commons.io.FileUtils;
+import org.kframework.attributes.Source;
+import org.kframework.kil.DefinitionItem;
+import org.kframework.kompile.Kompile;
+import org.kframework.kompile.SyntheticDefinition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link Outer#parse} on generated definitions (see {@link SyntheticDefinition}) and on the largest
+ * file of the prelude.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class OuterBenchmark {
+
+    private File domains;
+    private String domainsText;
+
+    @Setup
+    public void setUp() throws IOException {
+        domains = new File(Kompile.BUILTIN_DIRECTORY, "domains.k");
+        domainsText = FileUtils.readFileToString(domains, StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<DefinitionItem> parseSynthetic(SyntheticDefinition definition) {
+        return Outer.parse(Source.apply(definition.file.getAbsolutePath()), definition.text, null);
+    }
+
+    @Benchmark
+    public List<DefinitionItem> parseDomains() {
+        return Outer.parse(Source.apply(domains.getAbsolutePath()), domainsText, null);
+    }
+}
@@ -12,8 +12,8 @@ import org.kframework.backend.java.builtins.MetaK;
 import org.kframework.backend.java.builtins.SortMembership;
 import org.kframework.backend.java.rewritemachine.KAbstractRewriteMachine;
 import org.kframework.backend.java.symbolic.*;
+import org.kframework.backend.java.util.BackendMetrics;
 import org.kframework.backend.java.util.ImpureFunctionException;
-import org.kframework.backend.java.util.Profiler;
 import org.kframework.backend.java.util.Subsorts;
 import org.kframework.backend.java.util.Constants;
 import org.kframework.builtin.KLabels;
@@ -21,6 +21,7 @@ import org.kframework.kil.ASTNode;
 import org.kframework.kil.Attribute;
 import org.kframework.main.GlobalOptions;
 import org.kframework.utils.BitSet;
+import org.kframework.utils.Metrics;
 import org.kframework.utils.errorsystem.KException.ExceptionType;
 import org.kframework.utils.errorsystem.KExceptionManager;
 import org.kframework.utils.errorsystem.KEMException;
@@ -162,11 +163,13 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
             CacheTableColKey cacheTabColKey = new CacheTableColKey((KLabelConstant) kLabel, (KList) kList);
             CacheTableValue cacheTabVal = definition.getSortCacheValue(cacheTabColKey);
             if (cacheTabVal != null) {
+                BackendMetrics.SORT_CACHE.hit();
                 sort = cacheTabVal.sort;
                 isExactSort = cacheTabVal.isExactSort;
                 possibleSorts = cacheTabVal.possibleSorts;
                 return;
             }
+            BackendMetrics.SORT_CACHE.miss();
         }
         KLabelConstant kLabelConstant = (KLabelConstant) kLabel;
         KList kList = (KList) this.kList;
@@ -408,7 +411,8 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
             Definition definition = context.definition();
             KLabelConstant kLabelConstant = (KLabelConstant) kItem.kLabel;
 
-            Profiler.startTimer(Profiler.getTimerForFunction(kLabelConstant));
+            Metrics.Histogram timer = BackendMetrics.function(kLabelConstant);
+            long start = Metrics.start();
 
             try {
                 KList kList = (KList) kItem.kList;
@@ -567,7 +571,9 @@ public class KItem extends Term implements KItemRepresentation, HasGlobalContext
                 }
                 return kItem;
             } finally {
-                Profiler.stopTimer(Profiler.getTimerForFunction(kLabelConstant));
+                if (timer != null) {
+                    timer.stop(start);
+                }
             }
         }
     }
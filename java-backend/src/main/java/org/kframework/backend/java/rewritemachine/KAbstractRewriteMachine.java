@@ -10,8 +10,10 @@ import org.kframework.backend.java.symbolic.DeepCloner;
 import org.kframework.backend.java.symbolic.PatternMatcher;
 import org.kframework.backend.java.symbolic.RuleAuditing;
 import org.kframework.backend.java.symbolic.Substitution;
-import org.kframework.backend.java.util.Profiler;
+import org.kframework.backend.java.util.BackendMetrics;
 import org.kframework.backend.java.util.RewriteEngineUtils;
+import org.kframework.utils.Metrics;
+import org.kframework.utils.RuleProfiler;
 
 import java.util.Collection;
 import java.util.Deque;
@@ -63,12 +65,17 @@ public class KAbstractRewriteMachine {
     }
 
     private boolean rewrite() {
+        RuleProfiler.RuleProfile profile = RuleProfiler.profile(rule, BackendMetrics::name);
+        if (profile != null) {
+            profile.attempted();
+        }
         match(subject);
         if (success) {
             List<ExtendedSubstitution> normalizedExtSubsts = getCNFExtendedSubstitutions(
                     fExtSubst, fMultiExtSubsts);
 
-            Profiler.startTimer(Profiler.EVALUATE_SIDE_CONDITIONS_TIMER);
+            long conditionsStart = Metrics.start();
+            long profileStart = RuleProfiler.start();
             /* take the first match that also satisfies the side-condition as solution */
             ExtendedSubstitution solution = null;
             for (ExtendedSubstitution extSubst : normalizedExtSubsts) {
@@ -81,10 +88,14 @@ public class KAbstractRewriteMachine {
                     break;
                 }
             }
-            Profiler.stopTimer(Profiler.EVALUATE_SIDE_CONDITIONS_TIMER);
+            BackendMetrics.EVALUATE_SIDE_CONDITIONS.stop(conditionsStart);
+            if (profile != null) {
+                profile.conditions(profileStart);
+            }
 
             if (solution != null) {
-                Profiler.startTimer(Profiler.LOCAL_REWRITE_BUILD_RHS_TIMER);
+                long buildStart = Metrics.start();
+                profileStart = RuleProfiler.start();
                 // YilongL: cannot use solution.keySet() as variablesToReuse
                 // because read-only cell may have already used up the binding
                 // term
@@ -95,7 +106,11 @@ public class KAbstractRewriteMachine {
                     List<RHSInstruction> instructions = getWriteCellInstructions(cell.cellLabel());
                     cell.setContent(construct(instructions, solution.substitution(), reusableVariables, context, rule.cellsToCopy().contains(cell.cellLabel())));
                 }
-                Profiler.stopTimer(Profiler.LOCAL_REWRITE_BUILD_RHS_TIMER);
+                BackendMetrics.LOCAL_REWRITE_BUILD_RHS.stop(buildStart);
+                if (profile != null) {
+                    profile.rightHandSide(profileStart);
+                    profile.succeeded();
+                }
             } else {
                 success = false;
             }
@@ -247,7 +262,7 @@ public class KAbstractRewriteMachine {
             /* 1) perform matching under read cell;
              * 2) record the reference if it is also a write cell. */
 
-            Profiler.startTimer(Profiler.PATTERN_MATCH_TIMER);
+            long matchStart = Metrics.start();
             /* there should be no AC-matching under the crntCell (violated rule
              * has been filtered out by the compiler) */
             if (!matcher.patternMatch(crntCell.content(), getReadCellLHS(cellLabel))) {
@@ -264,7 +279,7 @@ public class KAbstractRewriteMachine {
                     }
                 }
             }
-            Profiler.stopTimer(Profiler.PATTERN_MATCH_TIMER);
+            BackendMetrics.PATTERN_MATCH.stop(matchStart);
 
             if (!success) {
                 return;
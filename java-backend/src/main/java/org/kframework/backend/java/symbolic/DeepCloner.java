@@ -8,7 +8,8 @@ import org.kframework.backend.java.kil.GlobalContext;
 import org.kframework.backend.java.kil.Immutable;
 import org.kframework.backend.java.kil.Term;
 import org.kframework.backend.java.kil.TermContext;
-import org.kframework.backend.java.util.Profiler;
+import org.kframework.backend.java.util.BackendMetrics;
+import org.kframework.utils.Metrics;
 
 import com.rits.cloning.Cloner;
 
@@ -30,9 +31,9 @@ public class DeepCloner {
     }
 
     public static Term clone(Term term) {
-        Profiler.startTimer(Profiler.DEEP_CLONE_TIMER);
+        long start = Metrics.start();
         Term deepClone = cloner.deepClone(term);
-        Profiler.stopTimer(Profiler.DEEP_CLONE_TIMER);
+        BackendMetrics.DEEP_CLONE.stop(start);
         return deepClone;
     }
 
@@ -20,9 +20,11 @@ import org.kframework.backend.java.kil.Term;
 import org.kframework.backend.java.kil.TermContext;
 import org.kframework.backend.java.kil.Token;
 import org.kframework.backend.java.kil.Variable;
+import org.kframework.backend.java.util.BackendMetrics;
 import org.kframework.builtin.KLabels;
 import org.kframework.kore.KApply;
 import org.kframework.utils.BitSet;
+import org.kframework.utils.RuleProfiler;
 
 import static org.kframework.Collections.*;
 
@@ -109,6 +111,12 @@ public class FastRuleMatcher {
         List<RuleMatchResult> transitionResults = new ArrayList<>();
         for (int i = theMatchingRules.nextSetBit(0); i >= 0; i = theMatchingRules.nextSetBit(i + 1)) {
             Rule rule = global.getDefinition().ruleTable.get(i);
+            BackendMetrics.ruleTried(rule);
+            RuleProfiler.RuleProfile profile = RuleProfiler.profile(rule, BackendMetrics::name);
+            if (profile != null) {
+                profile.attempted();
+            }
+            long start = RuleProfiler.start();
             // TODO(YilongL): remove TermContext from the signature once
             // ConstrainedTerm doesn't hold a TermContext anymore
             /* TODO(AndreiS): remove this hack for super strictness after strategies work */
@@ -126,6 +134,9 @@ public class FastRuleMatcher {
                             .filter(v -> !v.name().equals(KOREtoBackendKIL.THE_VARIABLE))
                             .collect(Collectors.toSet()),
                     context);
+            if (profile != null) {
+                profile.conditions(start);
+            }
             for (Triple<ConjunctiveFormula, Boolean, Map<scala.collection.immutable.List<Pair<Integer, Integer>>, Term>> triple : ruleResults) {
                 RuleMatchResult result = new RuleMatchResult(triple.getLeft(), triple.getMiddle(), triple.getRight(), i);
                 if (transitions.stream().anyMatch(rule::containsAttribute)) {
@@ -0,0 +1,130 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.symbolic;
+
+import org.kframework.utils.errorsystem.KEMException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.function.Supplier;
+
+/**
+ * A set of 128-bit fingerprints, stored outside the Java heap in an open-addressing hash table with linear probing.
+ *
+ * The table doubles when it becomes 70% full. While it fits in the given amount of memory it is kept in direct
+ * buffers; beyond that it is kept in a memory-mapped file, so its size is only limited by the disk and the address
+ * space, and the operating system decides which parts of it stay in memory.
+ *
+ * The fingerprint 0 is stored as 1, since it marks the empty slots.
+ */
+public class FingerprintSet {
+
+    private static final int SLOT_BYTES = 16;
+    /* slots per buffer, so that every buffer can be indexed by an int */
+    private static final int SEGMENT_BITS = 26;
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    private final long memoryLimit;
+    private final Supplier<File> spillFiles;
+
+    private ByteBuffer[] segments;
+    private long capacity;
+    private long size;
+    private File file;
+
+    /**
+     * @param memoryLimit the size in bytes up to which the table is kept in memory.
+     * @param spillFiles  supplies a new file whenever a table larger than that is needed.
+     */
+    public FingerprintSet(long memoryLimit, Supplier<File> spillFiles) {
+        this.memoryLimit = memoryLimit;
+        this.spillFiles = spillFiles;
+        this.capacity = INITIAL_CAPACITY;
+        this.segments = allocate(capacity);
+    }
+
+    /**
+     * @return true if the fingerprint was not in the set.
+     */
+    public boolean add(long high, long low) {
+        if (high == 0 && low == 0) {
+            low = 1;
+        }
+        if ((size + 1) * 10 > capacity * 7) {
+            grow();
+        }
+        if (insert(segments, capacity, high, low)) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    private static boolean insert(ByteBuffer[] segments, long capacity, long high, long low) {
+        long mask = capacity - 1;
+        long slot = low & mask;
+        while (true) {
+            ByteBuffer segment = segments[(int) (slot >>> SEGMENT_BITS)];
+            int offset = (int) (slot & ((1 << SEGMENT_BITS) - 1)) * SLOT_BYTES;
+            long h = segment.getLong(offset);
+            long l = segment.getLong(offset + 8);
+            if (h == 0 && l == 0) {
+                segment.putLong(offset, high);
+                segment.putLong(offset + 8, low);
+                return true;
+            }
+            if (h == high && l == low) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void grow() {
+        long newCapacity = capacity * 2;
+        File oldFile = file;
+        ByteBuffer[] newSegments = allocate(newCapacity);
+        for (ByteBuffer segment : segments) {
+            for (int offset = 0; offset < segment.capacity(); offset += SLOT_BYTES) {
+                long h = segment.getLong(offset);
+                long l = segment.getLong(offset + 8);
+                if (h != 0 || l != 0) {
+                    insert(newSegments, newCapacity, h, l);
+                }
+            }
+        }
+        segments = newSegments;
+        capacity = newCapacity;
+        if (oldFile != null && oldFile != file) {
+            oldFile.delete();
+        }
+    }
+
+    private ByteBuffer[] allocate(long capacity) {
+        int slotsPerSegment = (int) Math.min(capacity, 1L << SEGMENT_BITS);
+        int segmentBytes = slotsPerSegment * SLOT_BYTES;
+        ByteBuffer[] segments = new ByteBuffer[(int) (capacity / slotsPerSegment)];
+        if (capacity * SLOT_BYTES <= memoryLimit) {
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = ByteBuffer.allocateDirect(segmentBytes);
+            }
+            return segments;
+        }
+        file = spillFiles.get();
+        // the mapped buffers stay valid after the channel is closed, and new files read as zeros
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) i * segmentBytes, segmentBytes);
+            }
+        } catch (IOException e) {
+            throw KEMException.criticalError("Could not map the visited states table to " + file.getAbsolutePath(), e);
+        }
+        return segments;
+    }
+}
@@ -26,6 +26,7 @@ import org.kframework.krun.api.KRunState;
 import org.kframework.krun.api.io.FileSystem;
 import org.kframework.main.GlobalOptions;
 import org.kframework.rewriter.Rewriter;
+import org.kframework.rewriter.RewriterSession;
 import org.kframework.rewriter.SearchType;
 import org.kframework.utils.errorsystem.KExceptionManager;
 import org.kframework.utils.file.FileUtil;
@@ -43,6 +44,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
@@ -109,6 +111,8 @@ public class InitializeRewriter implements Function<Module, Rewriter> {
         private final KExceptionManager kem;
         private final KompileOptions kompileOptions;
         private final JavaExecutionOptions javaOptions;
+        /* whether an execution has been traced with --record-trace or --replay-trace */
+        private boolean traced;
 
         public SymbolicRewriterGlue(
                 Module module,
@@ -134,8 +138,25 @@ public class InitializeRewriter implements Function<Module, Rewriter> {
             KOREtoBackendKIL converter = new KOREtoBackendKIL(module, definition, termContext.global(), false);
             Term backendKil = KILtoBackendJavaKILTransformer.expandAndEvaluate(termContext, kem, converter.convert(k));
             this.rewriter = new SymbolicRewriter(rewritingContext,  kompileOptions, javaOptions, new KRunState.Counter(), converter);
-            JavaKRunState result = (JavaKRunState) rewriter.rewrite(new ConstrainedTerm(backendKil, termContext), depth.orElse(-1));
-            return new RewriterResult(result.getStepsTaken(), result.getJavaKilTerm());
+            // only the first execution is traced, so that later ones (e.g. the debugger checking whether a
+            // configuration is final) do not overwrite the trace or replay it from the start
+            boolean trace = !traced;
+            traced = true;
+            RewriteTrace.Writer recorder = !trace || javaOptions.recordTrace == null ? null
+                    : new RewriteTrace.Writer(rewritingContext.files.resolveWorkingDirectory(javaOptions.recordTrace));
+            RewriteTrace.Reader replay = !trace || javaOptions.replayTrace == null ? null
+                    : new RewriteTrace.Reader(rewritingContext.files.resolveWorkingDirectory(javaOptions.replayTrace));
+            try {
+                JavaKRunState result = (JavaKRunState) rewriter.rewrite(new ConstrainedTerm(backendKil, termContext), depth.orElse(-1), recorder, replay);
+                return new RewriterResult(result.getStepsTaken(), result.getJavaKilTerm());
+            } finally {
+                if (recorder != null) {
+                    recorder.close();
+                }
+                if (replay != null) {
+                    replay.close();
+                }
+            }
         }
 
         @Override
@@ -158,6 +179,18 @@ public class InitializeRewriter implements Function<Module, Rewriter> {
             return searchResults;
         }
 
+        @Override
+        public void search(K initialConfiguration, Optional<Integer> depth, Optional<Integer> bound, Rule pattern, SearchType searchType, Predicate<Map<? extends KVariable, ? extends K>> consumer) {
+            TermContext termContext = TermContext.builder(rewritingContext).freshCounter(initCounterValue).build();
+            KOREtoBackendKIL converter = new KOREtoBackendKIL(module, definition, termContext.global(), false);
+            Term javaTerm = KILtoBackendJavaKILTransformer.expandAndEvaluate(termContext, kem, converter.convert(initialConfiguration));
+            org.kframework.backend.java.kil.Rule javaPattern = converter.convert(Optional.empty(), pattern);
+            this.rewriter = new SymbolicRewriter(rewritingContext,  kompileOptions, javaOptions, new KRunState.Counter(), converter);
+            int[] count = {0};
+            rewriter.search(javaTerm, javaPattern, depth.orElse(NEGATIVE_VALUE), searchType, termContext,
+                    r -> consumer.test(r) && ++count[0] != bound.orElse(NEGATIVE_VALUE));
+        }
+
 
         public Tuple2<RewriterResult, List<? extends Map<? extends KVariable, ? extends K>>> executeAndMatch(K k, Optional<Integer> depth, Rule rule) {
             RewriterResult res = execute(k, depth);
@@ -205,6 +238,61 @@ public class InitializeRewriter implements Function<Module, Rewriter> {
                     .collect(Collectors.toList());
         }
 
+        @Override
+        public RewriterSession session(K k) {
+            return session(k, Optional.empty());
+        }
+
+        @Override
+        public RewriterSession session(K k, Optional<BigInteger> freshCounter) {
+            return new Session(k, freshCounter.orElse(initCounterValue));
+        }
+
+        /**
+         * Converts the configuration to backend KIL and creates the {@link SymbolicRewriter} once,
+         * and then keeps rewriting the resulting {@link ConstrainedTerm}.
+         * The fresh counter is also kept, so fresh constants are not reused across calls, and can be passed to a new
+         * session to rewrite a configuration again with the same fresh constants.
+         */
+        private class Session implements RewriterSession {
+            private final TermContext termContext;
+            private final KOREtoBackendKIL converter;
+            private final SymbolicRewriter symbolicRewriter;
+            private ConstrainedTerm configuration;
+
+            Session(K k, BigInteger freshCounter) {
+                termContext = TermContext.builder(rewritingContext).freshCounter(freshCounter).build();
+                converter = new KOREtoBackendKIL(module, definition, termContext.global(), false);
+                Term backendKil = KILtoBackendJavaKILTransformer.expandAndEvaluate(termContext, kem, converter.convert(k));
+                symbolicRewriter = new SymbolicRewriter(rewritingContext, kompileOptions, javaOptions, new KRunState.Counter(), converter);
+                configuration = new ConstrainedTerm(backendKil, termContext);
+            }
+
+            @Override
+            public RewriterResult execute(Optional<Integer> depth) {
+                JavaKRunState result = (JavaKRunState) symbolicRewriter.rewrite(configuration, depth.orElse(-1));
+                configuration = result.getConstrainedTerm();
+                return new RewriterResult(result.getStepsTaken(), result.getJavaKilTerm());
+            }
+
+            @Override
+            public K configuration() {
+                return configuration.term();
+            }
+
+            @Override
+            public List<? extends Map<? extends KVariable, ? extends K>> match(Rule rule) {
+                org.kframework.backend.java.kil.Rule javaPattern = converter.convert(Optional.empty(), rule);
+                return symbolicRewriter
+                        .search(configuration.term(), javaPattern, NEGATIVE_VALUE, 0, SearchType.STAR, termContext)
+                        .stream().collect(Collectors.toList());
+            }
+
+            @Override
+            public Optional<BigInteger> freshCounter() {
+                return Optional.of(termContext.getCounterValue());
+            }
+        }
     }
 
 
@@ -35,6 +35,36 @@ public final class JavaExecutionOptions {
             + "tagged with the value of --apply-tag, or fail with an error explaining why the rule did not apply.")
     public Integer auditingStep;
 
+    @Parameter(names="--record-trace", description="Write the rule applied at each rewrite step to the specified "
+            + "file, so the execution can be replayed with --replay-trace. Only the first execution of the program "
+            + "is recorded, e.g. not the steps taken in the debugger.")
+    public String recordTrace;
+
+    @Parameter(names="--replay-trace", description="Re-apply the rules recorded with --record-trace in the specified "
+            + "file instead of searching for a rule to apply at each step. Rewriting stops at the end of the trace, and "
+            + "fails if the execution diverges from it.")
+    public String replayTrace;
+
+    @Parameter(names="--fingerprint-visited", description="Remember the states visited by search as 128-bit "
+            + "fingerprints in a table outside the Java heap instead of keeping the states themselves. Distinct states "
+            + "with the same fingerprint are taken to be the same state, which is very unlikely but possible.")
+    public boolean fingerprintVisited = false;
+
+    @Parameter(names="--fingerprint-memory", description="Size in megabytes up to which the table of "
+            + "--fingerprint-visited is kept in memory. Larger tables are kept in a memory-mapped temporary file.")
+    public long fingerprintMemory = 1024;
+
+    @Parameter(names="--search-graph", description="Write the states and transitions explored by search to the "
+            + "specified file as they are found. Together with --fingerprint-visited, this does not keep the graph "
+            + "in memory, so it can be used to explore very large state spaces.")
+    public String searchGraph;
+
+    @Parameter(names="--partial-order-reduction", description="When searching for final states, explore only one "
+            + "order of the steps which rewrite different instances of a cell of multiplicity *, such as threads, "
+            + "when the order cannot change the final states. Ignored by other searches, and when the depth of the "
+            + "search is bounded.")
+    public boolean partialOrderReduction = false;
+
     public static class RuleIndexConveter extends BaseEnumConverter<IndexingAlgorithm> {
 
         public RuleIndexConveter(String optionName) {
@@ -0,0 +1,322 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.symbolic;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.Multisets;
+import org.kframework.attributes.Att;
+import org.kframework.backend.java.kil.BuiltinList;
+import org.kframework.backend.java.kil.CellCollection;
+import org.kframework.backend.java.kil.CellLabel;
+import org.kframework.backend.java.kil.ConstrainedTerm;
+import org.kframework.backend.java.kil.Definition;
+import org.kframework.backend.java.kil.KItem;
+import org.kframework.backend.java.kil.KLabelConstant;
+import org.kframework.backend.java.kil.KList;
+import org.kframework.backend.java.kil.Rule;
+import org.kframework.backend.java.kil.Sort;
+import org.kframework.backend.java.kil.Term;
+import org.kframework.backend.java.kil.Token;
+import org.kframework.backend.java.kil.Variable;
+import org.kframework.compile.ConfigurationInfo;
+import org.kframework.kil.ASTNode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Partial-order reduction for searches for final states, enabled with {@code --partial-order-reduction}.
+ *
+ * The reduction is based on the cells of multiplicity * of the configuration, such as threads. A rule is local to
+ * such a cell if it matches exactly one instance of it, besides rewriting that instance at most adds new instances
+ * next to it, and outside of the instance only matches cells which no rule ever writes. The steps of local rules on
+ * different instances commute, and since a local step only depends on its instance and on cells which never change,
+ * it can only be disabled by a step which rewrites its instance. So when all the steps possible on an instance are
+ * local, and no rule which is not local may apply to the instance before one of them is taken, it is enough to
+ * explore these steps: the steps on the other instances remain possible afterwards, and only the order in which they
+ * are interleaved differs. The explored steps form a persistent set, so all the final states remain reachable.
+ *
+ * A cell is not used for the reduction if some rule matches several of its instances, or uses a variable which may
+ * contain them other than to carry it over unchanged.
+ */
+public class PartialOrderReduction {
+
+    private final Definition definition;
+    private final Set<String> cellSorts = new HashSet<>();
+    /* the cells used for the reduction, with the indices of their local rules */
+    private final Map<CellLabel, Set<Integer>> localRules = new HashMap<>();
+    /* for each of these cells, the patterns of the instance matched by each rule which is not local */
+    private final Map<CellLabel, List<Term>> otherPatterns = new HashMap<>();
+
+    /* the names of the cells whose contents some rule may change */
+    private final Set<String> writtenCells = new HashSet<>();
+
+    public PartialOrderReduction(Definition definition) {
+        this.definition = definition;
+        for (Rule rule : definition.ruleTable.values()) {
+            Multimap<String, Term> lhsCells = ArrayListMultimap.create();
+            Multimap<String, Term> rhsCells = ArrayListMultimap.create();
+            collectCells(rule.leftHandSide(), lhsCells);
+            collectCells(rule.rightHandSide(), rhsCells);
+            Set<String> names = new HashSet<>(lhsCells.keySet());
+            names.addAll(rhsCells.keySet());
+            for (String name : names) {
+                if (!HashMultiset.create(lhsCells.get(name)).equals(HashMultiset.create(rhsCells.get(name)))) {
+                    writtenCells.add(name);
+                }
+            }
+        }
+        ConfigurationInfo configurationInfo = definition.configurationInfo();
+        for (org.kframework.kore.Sort sort : configurationInfo.getCellSorts()) {
+            cellSorts.add(sort.name());
+            if (configurationInfo.getMultiplicity(sort) == ConfigurationInfo.Multiplicity.STAR) {
+                scala.collection.JavaConversions.setAsJavaSet(configurationInfo.getCellBagSortsOfCell(sort))
+                        .forEach(s -> cellSorts.add(s.name()));
+            }
+        }
+        definition.definitionData().cellLabelMultiplicity.forEach((cell, multiplicity) -> {
+            if (multiplicity == ConfigurationInfo.Multiplicity.STAR) {
+                analyze(cell);
+            }
+        });
+    }
+
+    private void analyze(CellLabel cell) {
+        Set<Integer> local = new HashSet<>();
+        List<Term> patterns = new ArrayList<>();
+        for (Map.Entry<Integer, Rule> entry : definition.ruleTable.entrySet()) {
+            Rule rule = entry.getValue();
+            if (rule.containsAttribute(Att.refers_THIS_CONFIGURATION())
+                    || rule.containsAttribute(Att.refers_RESTORE_CONFIGURATION())) {
+                return;
+            }
+            List<Term> instances = new ArrayList<>();
+            collectInstances(rule.leftHandSide(), cell, instances);
+            Term lhsOutside = withoutInstances(rule.leftHandSide(), cell);
+            Term rhsOutside = withoutInstances(rule.rightHandSide(), cell);
+
+            Multiset<Variable> lhsVariables = VariableOccurrencesCounter.count(rule.leftHandSide());
+            Multiset<Variable> rhsVariables = VariableOccurrencesCounter.count(rule.rightHandSide());
+            Set<Variable> sideVariables = new HashSet<>(rule.lookups().variableSet());
+            rule.requires().forEach(t -> sideVariables.addAll(t.variableSet()));
+            rule.ensures().forEach(t -> sideVariables.addAll(t.variableSet()));
+
+            boolean carriedOver = true;
+            for (Variable variable : lhsOutside.variableSet()) {
+                boolean unchanged = lhsVariables.count(variable) == 1 && rhsVariables.count(variable) == 1
+                        && !sideVariables.contains(variable);
+                if (!unchanged && mayContainInstances(variable)) {
+                    return;
+                }
+                carriedOver &= unchanged;
+            }
+
+            if (instances.size() > 1) {
+                return;
+            } else if (instances.size() == 1) {
+                Set<String> readCells = new HashSet<>();
+                collectReadCells(lhsOutside, readCells);
+                if (carriedOver && lhsOutside.equals(rhsOutside) && Collections.disjoint(readCells, writtenCells)) {
+                    local.add(entry.getKey());
+                } else {
+                    patterns.add(instances.get(0));
+                }
+            }
+        }
+        localRules.put(cell, local);
+        otherPatterns.put(cell, patterns);
+    }
+
+    private boolean mayContainInstances(Variable variable) {
+        return variable.sort().equals(Sort.BAG) || cellSorts.contains(variable.sort().name());
+    }
+
+    /**
+     * Removes the steps which do not need to be explored from the results of a rewrite step, and the corresponding
+     * rule indices.
+     */
+    public void reduce(ConstrainedTerm subject, List<ConstrainedTerm> results, List<Integer> rules) {
+        if (results.size() < 2 || rules.contains(RewriteTrace.STUCK)) {
+            return;
+        }
+        for (Map.Entry<CellLabel, Set<Integer>> entry : localRules.entrySet()) {
+            CellLabel cell = entry.getKey();
+            Multiset<Term> instances = HashMultiset.create();
+            collectInstances(subject.term(), cell, instances);
+
+            /* the instance rewritten by each step, if the step is local */
+            Map<Term, List<Integer>> steps = new HashMap<>();
+            Set<Term> excluded = new HashSet<>();
+            boolean known = true;
+            for (int i = 0; i < results.size() && known; i++) {
+                Multiset<Term> resultInstances = HashMultiset.create();
+                collectInstances(results.get(i).term(), cell, resultInstances);
+                Multiset<Term> rewritten = Multisets.difference(instances, resultInstances);
+                if (!entry.getValue().contains(rules.get(i))) {
+                    excluded.addAll(rewritten.elementSet());
+                } else if (rewritten.size() == 1) {
+                    steps.computeIfAbsent(rewritten.iterator().next(), t -> new ArrayList<>()).add(i);
+                } else {
+                    // a local step which leaves its instance unchanged, so its instance is not known
+                    known = false;
+                }
+            }
+            if (!known) {
+                continue;
+            }
+
+            for (Map.Entry<Term, List<Integer>> step : steps.entrySet()) {
+                Term instance = step.getKey();
+                if (excluded.contains(instance)
+                        || otherPatterns.get(cell).stream().anyMatch(p -> mayMatch(p, instance))) {
+                    continue;
+                }
+                List<ConstrainedTerm> reducedResults = new ArrayList<>();
+                List<Integer> reducedRules = new ArrayList<>();
+                for (int i : step.getValue()) {
+                    reducedResults.add(results.get(i));
+                    reducedRules.add(rules.get(i));
+                }
+                results.clear();
+                results.addAll(reducedResults);
+                rules.clear();
+                rules.addAll(reducedRules);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Collects the contents of the instances of the cell, without looking inside the contents of other cells.
+     */
+    private void collectInstances(Term term, CellLabel cell, java.util.Collection<Term> instances) {
+        if (term instanceof CellCollection) {
+            for (CellCollection.Cell c : ((CellCollection) term).cells().values()) {
+                if (c.cellLabel().equals(cell)) {
+                    instances.add(c.content());
+                } else {
+                    collectInstances(c.content(), cell, instances);
+                }
+            }
+        } else if (term instanceof KList) {
+            for (Term item : ((KList) term).getContents()) {
+                collectInstances(item, cell, instances);
+            }
+        } else if (isCell(term)) {
+            collectInstances(((KItem) term).kList(), cell, instances);
+        }
+    }
+
+    /**
+     * Collects the contents of all the cells in the term, by cell name.
+     */
+    private void collectCells(Term term, Multimap<String, Term> cells) {
+        if (term instanceof CellCollection) {
+            for (CellCollection.Cell c : ((CellCollection) term).cells().values()) {
+                cells.put(c.cellLabel().name(), c.content());
+                collectCells(c.content(), cells);
+            }
+        } else if (term instanceof KList) {
+            for (Term item : ((KList) term).getContents()) {
+                collectCells(item, cells);
+            }
+        } else if (isCell(term)) {
+            cells.put(((KLabelConstant) ((KItem) term).kLabel()).name(), ((KItem) term).kList());
+            collectCells(((KItem) term).kList(), cells);
+        }
+    }
+
+    /**
+     * Collects the names of the cells in a pattern whose contents it matches other than with a variable or with
+     * other cells.
+     */
+    private void collectReadCells(Term pattern, Set<String> readCells) {
+        if (pattern instanceof CellCollection) {
+            for (CellCollection.Cell c : ((CellCollection) pattern).cells().values()) {
+                if (!onlyCells(c.content())) {
+                    readCells.add(c.cellLabel().name());
+                }
+                collectReadCells(c.content(), readCells);
+            }
+        } else if (pattern instanceof KList) {
+            for (Term item : ((KList) pattern).getContents()) {
+                collectReadCells(item, readCells);
+            }
+        } else if (isCell(pattern)) {
+            if (!onlyCells(((KItem) pattern).kList())) {
+                readCells.add(((KLabelConstant) ((KItem) pattern).kLabel()).name());
+            }
+            collectReadCells(((KItem) pattern).kList(), readCells);
+        }
+    }
+
+    private boolean onlyCells(Term content) {
+        if (content instanceof KList) {
+            return ((KList) content).getContents().stream().allMatch(this::onlyCells);
+        }
+        return content instanceof Variable || content instanceof CellCollection || isCell(content);
+    }
+
+    private boolean isCell(Term term) {
+        return term instanceof KItem && ((KItem) term).kLabel() instanceof KLabelConstant
+                && definition.configurationInfo().isCellLabel((KLabelConstant) ((KItem) term).kLabel());
+    }
+
+    private static Term withoutInstances(Term term, CellLabel cell) {
+        return (Term) term.accept(new CopyOnWriteTransformer() {
+            @Override
+            public ASTNode transform(CellCollection cellCollection) {
+                Term rest = cellCollection.removeAll(Collections.singleton(cell));
+                return rest instanceof CellCollection ? super.transform((CellCollection) rest) : rest.accept(this);
+            }
+        });
+    }
+
+    /**
+     * Returns false only if the pattern certainly does not match the term.
+     */
+    private static boolean mayMatch(Term pattern, Term term) {
+        if (pattern instanceof KItem && term instanceof KItem) {
+            KItem patternItem = (KItem) pattern;
+            KItem termItem = (KItem) term;
+            if (patternItem.kLabel() instanceof KLabelConstant && termItem.kLabel() instanceof KLabelConstant
+                    && ((KLabelConstant) patternItem.kLabel()).isConstructor()
+                    && !patternItem.kLabel().equals(termItem.kLabel())) {
+                return false;
+            }
+            return mayMatch(patternItem.kList(), termItem.kList());
+        } else if (pattern instanceof KList && term instanceof KList) {
+            KList patternList = (KList) pattern;
+            KList termList = (KList) term;
+            if (patternList.hasFrame() || termList.hasFrame() || patternList.size() != termList.size()) {
+                return true;
+            }
+            for (int i = 0; i < patternList.size(); i++) {
+                if (!mayMatch(patternList.get(i), termList.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (pattern instanceof BuiltinList && term instanceof BuiltinList) {
+            BuiltinList patternList = (BuiltinList) pattern;
+            BuiltinList termList = (BuiltinList) term;
+            for (int i = 0; i < patternList.size() && i < termList.size()
+                    && patternList.isElement(i) && termList.isElement(i); i++) {
+                if (!mayMatch(patternList.get(i), termList.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (pattern instanceof Token && term instanceof Token) {
+            return pattern.equals(term);
+        }
+        return true;
+    }
+}
@@ -15,14 +15,14 @@ import org.kframework.backend.java.kil.TermContext;
 import org.kframework.backend.java.kil.Variable;
 import org.kframework.backend.java.rewritemachine.KAbstractRewriteMachine;
 import org.kframework.backend.java.strategies.TransitionCompositeStrategy;
+import org.kframework.backend.java.util.BackendMetrics;
 import org.kframework.backend.java.util.Coverage;
-import org.kframework.backend.java.util.Profiler;
 import org.kframework.kompile.KompileOptions;
 import org.kframework.krun.KRunOptions;
 import org.kframework.rewriter.SearchType;
+import org.kframework.utils.Metrics;
 import org.kframework.utils.errorsystem.KEMException;
 
-import java.io.File;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -46,6 +46,7 @@ public class PatternMatchRewriter {
     private final TransitionCompositeStrategy strategy;
     private final List<Term> results = new ArrayList<>();
     private final RuleIndex ruleIndex;
+    private final Coverage coverage;
 
     @Inject
     public PatternMatchRewriter(
@@ -57,9 +58,7 @@ public class PatternMatchRewriter {
         ruleIndex = definition.getIndex();
         this.strategy = new TransitionCompositeStrategy(kompileOptions.transition);
         this.javaOptions = javaOptions;
-        if (options.experimental.statistics) {
-            Profiler.enableProfilingMode.set(true);
-        }
+        this.coverage = Coverage.of(options.experimental.coverage, options.experimental.coverageHistogram);
     }
 
     public Term rewrite(Term subject, int bound, TermContext termContext) {
@@ -88,33 +87,38 @@ public class PatternMatchRewriter {
          * the correct reusable variables obtained from the pattern match
          * phase */
         int step;
-        for (step = 0; step != bound; ++step) {
-            computeRewriteStep(subject, step, 1, termContext);
-            Term result = getTransition(0);
-            if (result != null) {
-                if (ENABLE_DEBUG_MODE) {
-                    UnsafeSharingDetector.visitTerm(result);
+        try {
+            for (step = 0; step != bound; ++step) {
+                computeRewriteStep(subject, step, 1, termContext);
+                Term result = getTransition(0);
+                if (result != null) {
+                    if (ENABLE_DEBUG_MODE) {
+                        UnsafeSharingDetector.visitTerm(result);
+                    }
+                    subject = result;
+                    BackendMetrics.REWRITE_STEPS.inc();
+                } else {
+//                    computeRewriteStep(subject, 1);
+                    break;
                 }
-                subject = result;
-            } else {
-//                computeRewriteStep(subject, 1);
-                break;
             }
+        } finally {
+            // the locations recorded before a failed step are kept too
+            Coverage.flush(coverage);
         }
-
         stopwatch.stop();
         if (options.experimental.statistics) {
             System.err.println("[" + step + ", " + stopwatch + "]");
-            Profiler.printResult();
+            System.err.print(Metrics.toJson());
         }
 
         return subject;
     }
 
     private List<Rule> getRules(List<CellCollection.Cell> indexingCells) {
-        Profiler.startTimer(Profiler.QUERY_RULE_INDEXING_TIMER);
+        long indexingStart = Metrics.start();
         List<Rule> rules = ruleIndex.getRules(indexingCells);
-        Profiler.stopTimer(Profiler.QUERY_RULE_INDEXING_TIMER);
+        BackendMetrics.QUERY_RULE_INDEXING.stop(indexingStart);
         return rules;
     }
 
@@ -193,7 +197,6 @@ public class PatternMatchRewriter {
 
         RuleAuditing.setAuditingRule(javaOptions, step, termContext.definition());
 
-        File coverage = options.experimental.coverage;
         Coverage.print(coverage, subject);
 
         // Applying a strategy to a list of rules divides the rules up into
@@ -213,6 +216,7 @@ public class PatternMatchRewriter {
                             System.err.println("\nAuditing " + rule + "...\n");
                         }
                         boolean succeed = false;
+                        BackendMetrics.ruleTried(rule);
                         if (rule.isCompiledForFastRewriting()) {
                             /* compute reference results using old algorithm under DEBUG mode */
                             List<Term> referenceResults = null;
@@ -227,7 +231,7 @@ public class PatternMatchRewriter {
                                 subject = DeepCloner.clone(subject);
                             }
 
-                            Profiler.startTimer(Profiler.REWRITE_WITH_KOMPILED_RULES_TIMER);
+                            long kompiledStart = Metrics.start();
                             succeed = KAbstractRewriteMachine.rewrite(
                                     rule,
                                     DataStructures.getCellEntry(subject),
@@ -249,9 +253,9 @@ public class PatternMatchRewriter {
                                     assert referenceResults.isEmpty();
                                 }
                             }
-                            Profiler.stopTimer(Profiler.REWRITE_WITH_KOMPILED_RULES_TIMER);
+                            BackendMetrics.REWRITE_WITH_KOMPILED_RULES.stop(kompiledStart);
                         } else {
-                            Profiler.startTimer(Profiler.REWRITE_WITH_UNKOMPILED_RULES_TIMER);
+                            long unkompiledStart = Metrics.start();
                             for (Map<Variable, Term> subst : getMatchingResults(subject, rule, termContext)) {
                                 if (options.experimental.trace) {
                                     System.out.println(rule);
@@ -263,10 +267,11 @@ public class PatternMatchRewriter {
                                 succeed = true;
                                 break;
                             }
-                            Profiler.stopTimer(Profiler.REWRITE_WITH_UNKOMPILED_RULES_TIMER);
+                            BackendMetrics.REWRITE_WITH_UNKOMPILED_RULES.stop(unkompiledStart);
                         }
 
                         if (succeed) {
+                            BackendMetrics.ruleFired(rule);
                             if (rule.modifyCellStructure()) {
                                 computeIndexingCells(subject, termContext);
                             }
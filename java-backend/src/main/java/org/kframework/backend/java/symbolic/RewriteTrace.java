@@ -0,0 +1,204 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.symbolic;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.kframework.utils.errorsystem.KEMException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The sequence of rules applied by {@link SymbolicRewriter#rewrite}, recorded with {@code --record-trace} and
+ * re-applied with {@code --replay-trace}.
+ *
+ * A trace file starts with a header and then has one entry per rewrite step, each made of variable-length
+ * integers: the step number, the index of the rule in {@link org.kframework.backend.java.kil.Definition#ruleTable}
+ * plus one (zero stands for the step which adds the #STUCK flag to the strategy cell), and the position of the
+ * match, i.e. the path in the configuration of the first rewrite of the rule.
+ */
+public final class RewriteTrace {
+
+    private static final int MAGIC = 0x4b545243; // "KTRC"
+    private static final int VERSION = 1;
+
+    /**
+     * The rule index of the step which adds the #STUCK flag.
+     */
+    public static final int STUCK = -1;
+
+    public static final class Entry {
+        public final int step;
+        public final int ruleIndex;
+        /**
+         * The path of the first rewrite as a flat array of pairs of integers.
+         */
+        public final int[] position;
+
+        public Entry(int step, int ruleIndex, int[] position) {
+            this.step = step;
+            this.ruleIndex = ruleIndex;
+            this.position = position;
+        }
+
+        public static int[] position(scala.collection.immutable.List<Pair<Integer, Integer>> path) {
+            int[] position = new int[path.size() * 2];
+            int i = 0;
+            for (Pair<Integer, Integer> p : scala.collection.JavaConversions.seqAsJavaList(path)) {
+                position[i++] = p.getLeft();
+                position[i++] = p.getRight();
+            }
+            return position;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Entry entry = (Entry) o;
+            return step == entry.step && ruleIndex == entry.ruleIndex && Arrays.equals(position, entry.position);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * step + ruleIndex) + Arrays.hashCode(position);
+        }
+
+        @Override
+        public String toString() {
+            return "step " + step + ", rule " + ruleIndex + " at " + Arrays.toString(position);
+        }
+    }
+
+    public static final class Writer implements Closeable {
+        private final File file;
+        private final DataOutputStream out;
+
+        public Writer(File file) {
+            this.file = file;
+            try {
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+            } catch (IOException e) {
+                throw KEMException.criticalError("Could not write rewrite trace to " + file.getAbsolutePath(), e);
+            }
+        }
+
+        public void write(Entry entry) {
+            try {
+                writeVarInt(out, entry.step);
+                writeVarInt(out, entry.ruleIndex + 1);
+                writeVarInt(out, entry.position.length);
+                for (int i : entry.position) {
+                    writeVarInt(out, i);
+                }
+            } catch (IOException e) {
+                throw KEMException.criticalError("Could not write rewrite trace to " + file.getAbsolutePath(), e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw KEMException.criticalError("Could not write rewrite trace to " + file.getAbsolutePath(), e);
+            }
+        }
+    }
+
+    public static final class Reader implements Closeable {
+        private final File file;
+        private final DataInputStream in;
+
+        public Reader(File file) {
+            this.file = file;
+            try {
+                in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw KEMException.criticalError("Not a rewrite trace, or one written by a different version of K: " + file.getAbsolutePath());
+                }
+            } catch (IOException e) {
+                throw KEMException.criticalError("Could not read rewrite trace from " + file.getAbsolutePath(), e);
+            }
+        }
+
+        /**
+         * @return the next entry, or null at the end of the trace.
+         */
+        public Entry read() {
+            try {
+                in.mark(1);
+                if (in.read() == -1) {
+                    return null;
+                }
+                in.reset();
+                int step = readVarInt(in);
+                int ruleIndex = readVarInt(in) - 1;
+                int[] position = new int[readVarInt(in)];
+                for (int i = 0; i < position.length; i++) {
+                    position[i] = readVarInt(in);
+                }
+                return new Entry(step, ruleIndex, position);
+            } catch (EOFException e) {
+                throw KEMException.criticalError("Truncated rewrite trace: " + file.getAbsolutePath(), e);
+            } catch (IOException e) {
+                throw KEMException.criticalError("Could not read rewrite trace from " + file.getAbsolutePath(), e);
+            }
+        }
+
+        /**
+         * @return all the remaining entries, e.g. to index them for random access.
+         */
+        public List<Entry> readAll() {
+            List<Entry> entries = new ArrayList<>();
+            Entry entry;
+            while ((entry = read()) != null) {
+                entries.add(entry);
+            }
+            return entries;
+        }
+
+        @Override
+        public void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                throw KEMException.criticalError("Could not read rewrite trace from " + file.getAbsolutePath(), e);
+            }
+        }
+    }
+
+    private RewriteTrace() {}
+
+    // unsigned LEB128; all the numbers in a trace are non-negative
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
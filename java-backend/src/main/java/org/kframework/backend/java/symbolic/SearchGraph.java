@@ -0,0 +1,209 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.symbolic;
+
+import org.kframework.kore.K;
+import org.kframework.parser.binary.BinaryParser;
+import org.kframework.unparser.ToBinary;
+import org.kframework.utils.errorsystem.KEMException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The transition graph explored by search, written with {@code --search-graph} while the search runs.
+ *
+ * A graph file starts with a header and then has one record for each new state and one for each transition, in the
+ * order in which search finds them. States are identified by their {@link StateFingerprint}.
+ *
+ * * State:      the byte 1, the 16-byte fingerprint, the 4-byte length of the configuration, and the configuration
+ *               in the KAST binary format of {@link ToBinary#stream}. The configurations of a file share one intern
+ *               table, so they have to be read in order; tools which only need the graph can skip them.
+ * * Transition: the byte 2, the fingerprints of the source and the target, and the 4-byte index of the rule in
+ *               {@link org.kframework.backend.java.kil.Definition#ruleTable}, or {@link RewriteTrace#STUCK} for
+ *               the step which adds the #STUCK flag to the strategy cell.
+ *
+ * The state record of a state precedes all the transitions to and from it. The first state is the initial one.
+ * Only the terms of the states are written, not their constraints.
+ */
+public final class SearchGraph {
+
+    private static final int MAGIC = 0x4b534752; // "KSGR"
+    private static final int VERSION = 1;
+
+    private static final int STATE = 1, TRANSITION = 2;
+
+    public abstract static class Record {
+    }
+
+    public static final class State extends Record {
+        public final long[] fingerprint;
+        public final K configuration;
+
+        public State(long[] fingerprint, K configuration) {
+            this.fingerprint = fingerprint;
+            this.configuration = configuration;
+        }
+
+        @Override
+        public String toString() {
+            return "state " + Arrays.toString(fingerprint);
+        }
+    }
+
+    public static final class Transition extends Record {
+        public final long[] source;
+        public final long[] target;
+        public final int ruleIndex;
+
+        public Transition(long[] source, long[] target, int ruleIndex) {
+            this.source = source;
+            this.target = target;
+            this.ruleIndex = ruleIndex;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Transition that = (Transition) o;
+            return ruleIndex == that.ruleIndex && Arrays.equals(source, that.source) && Arrays.equals(target, that.target);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * Arrays.hashCode(source) + Arrays.hashCode(target)) + ruleIndex;
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(source) + " -> " + Arrays.toString(target) + " by rule " + ruleIndex;
+        }
+    }
+
+    public static final class Writer implements Closeable {
+        private final File file;
+        private final DataOutputStream out;
+        /* holds one configuration at a time, to write its length before it */
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final ToBinary configurations = ToBinary.stream(new DataOutputStream(buffer));
+
+        public Writer(File file) {
+            this.file = file;
+            try {
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+            } catch (IOException e) {
+                throw KEMException.criticalError("Could not write search graph to " + file.getAbsolutePath(), e);
+            }
+        }
+
+        public void writeState(long[] fingerprint, K configuration) {
+            buffer.reset();
+            configurations.write(configuration);
+            try {
+                out.writeByte(STATE);
+                writeFingerprint(fingerprint);
+                out.writeInt(buffer.size());
+                buffer.writeTo(out);
+            } catch (IOException e) {
+                throw KEMException.criticalError("Could not write search graph to " + file.getAbsolutePath(), e);
+            }
+        }
+
+        public void writeTransition(long[] source, long[] target, int ruleIndex) {
+            try {
+                out.writeByte(TRANSITION);
+                writeFingerprint(source);
+                writeFingerprint(target);
+                out.writeInt(ruleIndex);
+            } catch (IOException e) {
+                throw KEMException.criticalError("Could not write search graph to " + file.getAbsolutePath(), e);
+            }
+        }
+
+        private void writeFingerprint(long[] fingerprint) throws IOException {
+            out.writeLong(fingerprint[0]);
+            out.writeLong(fingerprint[1]);
+        }
+
+        @Override
+        public void close() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw KEMException.criticalError("Could not write search graph to " + file.getAbsolutePath(), e);
+            }
+        }
+    }
+
+    public static final class Reader implements Closeable {
+        private final File file;
+        private final DataInputStream in;
+        private final BinaryParser configurations = BinaryParser.stream();
+
+        public Reader(File file) {
+            this.file = file;
+            try {
+                in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw KEMException.criticalError("Not a search graph, or one written by a different version of K: " + file.getAbsolutePath());
+                }
+            } catch (IOException e) {
+                throw KEMException.criticalError("Could not read search graph from " + file.getAbsolutePath(), e);
+            }
+        }
+
+        /**
+         * @return the next state or transition, or null at the end of the graph.
+         */
+        public Record read() {
+            try {
+                int tag = in.read();
+                switch (tag) {
+                case -1:
+                    return null;
+                case STATE:
+                    long[] fingerprint = readFingerprint();
+                    byte[] configuration = new byte[in.readInt()];
+                    in.readFully(configuration);
+                    return new State(fingerprint, configurations.next(ByteBuffer.wrap(configuration)));
+                case TRANSITION:
+                    return new Transition(readFingerprint(), readFingerprint(), in.readInt());
+                default:
+                    throw KEMException.criticalError("Unexpected record " + tag + " in search graph " + file.getAbsolutePath());
+                }
+            } catch (EOFException e) {
+                throw KEMException.criticalError("Truncated search graph: " + file.getAbsolutePath(), e);
+            } catch (IOException e) {
+                throw KEMException.criticalError("Could not read search graph from " + file.getAbsolutePath(), e);
+            }
+        }
+
+        private long[] readFingerprint() throws IOException {
+            return new long[] {in.readLong(), in.readLong()};
+        }
+
+        @Override
+        public void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                throw KEMException.criticalError("Could not read search graph from " + file.getAbsolutePath(), e);
+            }
+        }
+    }
+
+    private SearchGraph() {}
+}
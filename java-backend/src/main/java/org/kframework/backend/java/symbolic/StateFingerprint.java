@@ -0,0 +1,171 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.symbolic;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.kframework.backend.java.kil.AssociativeCommutativeCollection;
+import org.kframework.backend.java.kil.CellCollection;
+import org.kframework.backend.java.kil.CollectionInternalRepresentation;
+import org.kframework.backend.java.kil.ConstrainedTerm;
+import org.kframework.backend.java.kil.KCollection;
+import org.kframework.backend.java.kil.KItem;
+import org.kframework.backend.java.kil.KLabelConstant;
+import org.kframework.backend.java.kil.Term;
+import org.kframework.backend.java.kil.Token;
+import org.kframework.backend.java.kil.Variable;
+
+import java.nio.ByteBuffer;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Computes 128-bit fingerprints of states, so that the states visited by search can be remembered without keeping
+ * the states themselves.
+ *
+ * Equal states have equal fingerprints. In particular, the elements of maps, sets and cell collections are combined
+ * in a way which does not depend on their order. The constraint of the state is fingerprinted from its
+ * substitution, equalities and disjunctions in the same way. Terms of kinds not handled below fall back to their
+ * hash code.
+ */
+public final class StateFingerprint {
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private static final int KITEM = 1;
+    private static final int KCOLLECTION = 2;
+    private static final int ORDERED_COLLECTION = 3;
+    private static final int UNORDERED_COLLECTION = 4;
+    private static final int TOKEN = 5;
+    private static final int KLABEL = 6;
+    private static final int VARIABLE = 7;
+    private static final int OTHER = 8;
+    private static final int STATE = 9;
+    private static final int CONSTRAINT = 10;
+    private static final int EQUALITY = 11;
+    private static final int DISJUNCTION = 12;
+
+    /* fingerprints of the subterms already visited, as they are often shared */
+    private final Map<Term, long[]> cache = new IdentityHashMap<>();
+
+    private StateFingerprint() {}
+
+    /**
+     * @return the fingerprint of the state as two longs, the most significant first.
+     */
+    public static long[] of(ConstrainedTerm state) {
+        StateFingerprint fingerprint = new StateFingerprint();
+        long[] term = fingerprint.fingerprint(state.term());
+        long[] constraint = fingerprint.constraint(state.constraint());
+        return toLongs(HASH.newHasher()
+                .putInt(STATE)
+                .putLong(term[0])
+                .putLong(term[1])
+                .putLong(constraint[0])
+                .putLong(constraint[1])
+                .hash().asBytes());
+    }
+
+    /**
+     * The substitution is a map, so its bindings are combined regardless of their order, while the equalities and
+     * disjunctions are lists, which are only equal in the same order.
+     */
+    private long[] constraint(ConjunctiveFormula constraint) {
+        long sum0 = 0, sum1 = 0;
+        for (Map.Entry<Variable, Term> binding : constraint.substitution().entrySet()) {
+            long[] fp = ordered(EQUALITY, "", binding.getKey(), binding.getValue());
+            sum0 += fp[0];
+            sum1 += fp[1];
+        }
+        Hasher hasher = HASH.newHasher()
+                .putInt(CONSTRAINT)
+                .putInt(constraint.substitution().size())
+                .putLong(sum0)
+                .putLong(sum1)
+                .putInt(constraint.equalities().size());
+        for (Equality equality : constraint.equalities()) {
+            put(hasher, ordered(EQUALITY, "", equality.leftHandSide(), equality.rightHandSide()));
+        }
+        hasher.putInt(constraint.disjunctions().size());
+        for (DisjunctiveFormula disjunction : constraint.disjunctions()) {
+            hasher.putInt(DISJUNCTION).putInt(disjunction.conjunctions().size());
+            for (ConjunctiveFormula conjunction : disjunction.conjunctions()) {
+                put(hasher, constraint(conjunction));
+            }
+        }
+        return toLongs(hasher.hash().asBytes());
+    }
+
+    private long[] fingerprint(Term term) {
+        long[] result = cache.get(term);
+        if (result == null) {
+            result = compute(term);
+            cache.put(term, result);
+        }
+        return result;
+    }
+
+    private long[] compute(Term term) {
+        if (term instanceof KItem) {
+            return ordered(KITEM, "", ((KItem) term).kLabel(), ((KItem) term).kList());
+        } else if (term instanceof KCollection) {
+            KCollection collection = (KCollection) term;
+            Hasher hasher = HASH.newHasher().putInt(KCOLLECTION).putUnencodedChars(term.getClass().getName());
+            for (Term item : collection.getContents()) {
+                put(hasher, fingerprint(item));
+            }
+            if (collection.hasFrame()) {
+                put(hasher, fingerprint(collection.frame()));
+            }
+            return toLongs(hasher.hash().asBytes());
+        } else if (term instanceof AssociativeCommutativeCollection || term instanceof CellCollection) {
+            long sum0 = 0, sum1 = 0;
+            int count = 0;
+            for (Term component : ((CollectionInternalRepresentation) term).getKComponents()) {
+                long[] fp = fingerprint(component);
+                sum0 += fp[0];
+                sum1 += fp[1];
+                count++;
+            }
+            return toLongs(HASH.newHasher()
+                    .putInt(UNORDERED_COLLECTION)
+                    .putUnencodedChars(term.getClass().getName())
+                    .putInt(count)
+                    .putLong(sum0)
+                    .putLong(sum1)
+                    .hash().asBytes());
+        } else if (term instanceof CollectionInternalRepresentation) {
+            return ordered(ORDERED_COLLECTION, term.getClass().getName(),
+                    ((CollectionInternalRepresentation) term).getKComponents().toArray(new Term[0]));
+        } else if (term instanceof Token) {
+            return ordered(TOKEN, ((Token) term).sort().name() + ":" + ((Token) term).value());
+        } else if (term instanceof KLabelConstant) {
+            return ordered(KLABEL, ((KLabelConstant) term).name());
+        } else if (term instanceof Variable) {
+            return ordered(VARIABLE, ((Variable) term).name() + ":" + ((Variable) term).sort().name());
+        } else {
+            return toLongs(HASH.newHasher()
+                    .putInt(OTHER)
+                    .putUnencodedChars(term.getClass().getName())
+                    .putInt(term.hashCode())
+                    .hash().asBytes());
+        }
+    }
+
+    private long[] ordered(int kind, String s, Term... children) {
+        Hasher hasher = HASH.newHasher().putInt(kind).putUnencodedChars(s);
+        for (Term child : children) {
+            put(hasher, fingerprint(child));
+        }
+        return toLongs(hasher.hash().asBytes());
+    }
+
+    private static void put(Hasher hasher, long[] fingerprint) {
+        hasher.putLong(fingerprint[0]).putLong(fingerprint[1]);
+    }
+
+    private static long[] toLongs(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new long[] {buffer.getLong(), buffer.getLong()};
+    }
+}
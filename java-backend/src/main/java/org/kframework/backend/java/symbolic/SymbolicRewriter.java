@@ -16,6 +16,7 @@ import org.kframework.backend.java.compile.KOREtoBackendKIL;
 import org.kframework.backend.java.indexing.RuleIndex;
 import org.kframework.backend.java.kil.*;
 import org.kframework.backend.java.strategies.TransitionCompositeStrategy;
+import org.kframework.backend.java.util.BackendMetrics;
 import org.kframework.backend.java.util.JavaKRunState;
 import org.kframework.builtin.KLabels;
 import org.kframework.kil.ASTNode;
@@ -25,6 +26,9 @@ import org.kframework.kore.K;
 import org.kframework.kore.KApply;
 import org.kframework.krun.api.KRunState;
 import org.kframework.utils.BitSet;
+import org.kframework.utils.Metrics;
+import org.kframework.utils.RuleProfiler;
+import org.kframework.utils.errorsystem.KEMException;
 import org.kframework.rewriter.SearchType;
 
 import java.util.ArrayList;
@@ -36,6 +40,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
@@ -57,6 +62,10 @@ public class SymbolicRewriter {
     private final FastRuleMatcher theFastMatcher;
     private final Definition definition;
     private final BitSet allRuleBits;
+    /* the match which produced the first result of the last call of fastComputeRewriteStep, if any */
+    private FastRuleMatcher.RuleMatchResult firstResultMatch;
+    /* the rules which produced the results of the last call of fastComputeRewriteStep, in the same order */
+    private final List<Integer> resultRules = new ArrayList<>();
 
     @Inject
     public SymbolicRewriter(GlobalContext global, KompileOptions kompileOptions, JavaExecutionOptions javaOptions,
@@ -75,13 +84,30 @@ public class SymbolicRewriter {
     }
 
     public KRunState rewrite(ConstrainedTerm constrainedTerm, int bound) {
+        return rewrite(constrainedTerm, bound, null, null);
+    }
+
+    /**
+     * @param recorder if not null, the rule applied at each step is written to it.
+     * @param replay   if not null, the rule applied at each step is read from it and matched directly, instead of
+     *                 searching all the rules. Rewriting stops at the end of the trace.
+     */
+    public KRunState rewrite(ConstrainedTerm constrainedTerm, int bound, RewriteTrace.Writer recorder, RewriteTrace.Reader replay) {
         stopwatch.start();
         int step = 0;
         List<ConstrainedTerm> results;
-        while (step != bound && !(results = computeRewriteStep(constrainedTerm, step, true)).isEmpty()) {
+        while (step != bound && !(results = replay == null
+                ? computeRewriteStep(constrainedTerm, step, true)
+                : replayRewriteStep(constrainedTerm, step, replay)).isEmpty()) {
+            if (recorder != null) {
+                recorder.write(firstResultMatch == null
+                        ? new RewriteTrace.Entry(step, RewriteTrace.STUCK, new int[0])
+                        : traceEntry(step, firstResultMatch));
+            }
             /* get the first solution */
             constrainedTerm = results.get(0);
             step++;
+            BackendMetrics.REWRITE_STEPS.inc();
         }
 
         ConstrainedTerm afterVariableRename = new ConstrainedTerm(new RenameAnonymousVariables().apply(constrainedTerm.term()), constrainedTerm.termContext());
@@ -91,11 +117,44 @@ public class SymbolicRewriter {
         stopwatch.stop();
         if (afterVariableRename.termContext().global().krunOptions.experimental.statistics) {
             System.err.println("[" + step + ", " + stopwatch + " ]");
+            System.err.print(Metrics.toJson());
         }
 
         return finalState;
     }
 
+    private static RewriteTrace.Entry traceEntry(int step, FastRuleMatcher.RuleMatchResult match) {
+        return new RewriteTrace.Entry(step, match.ruleIndex, RewriteTrace.Entry.position(match.rewrites.keySet().iterator().next()));
+    }
+
+    /**
+     * Applies the rule recorded for this step, matching only that rule against the configuration.
+     * @return the results of the step, which are empty at the end of the trace.
+     */
+    private List<ConstrainedTerm> replayRewriteStep(ConstrainedTerm constrainedTerm, int step, RewriteTrace.Reader replay) {
+        RewriteTrace.Entry entry = replay.read();
+        if (entry == null) {
+            return Collections.emptyList();
+        }
+        List<ConstrainedTerm> results;
+        if (entry.ruleIndex == RewriteTrace.STUCK) {
+            firstResultMatch = null;
+            results = addStuckFlagIfNotThere(constrainedTerm).map(Collections::singletonList).orElse(Collections.emptyList());
+        } else {
+            BitSet ruleBits = BitSet.apply(definition.ruleTable.size());
+            ruleBits.set(entry.ruleIndex);
+            results = fastComputeRewriteStep(constrainedTerm, true, false, ruleBits);
+        }
+        RewriteTrace.Entry actual = firstResultMatch == null
+                ? new RewriteTrace.Entry(step, RewriteTrace.STUCK, new int[0])
+                : traceEntry(step, firstResultMatch);
+        if (results.isEmpty() || !actual.equals(entry)) {
+            throw KEMException.criticalError("Execution diverged from the rewrite trace: expected " + entry
+                    + (results.isEmpty() ? ", but the rule did not apply" : ", but got " + actual));
+        }
+        return results;
+    }
+
     private List<ConstrainedTerm> computeRewriteStep(ConstrainedTerm constrainedTerm, int step, boolean computeOne) {
         return fastComputeRewriteStep(constrainedTerm, computeOne, false);
     }
@@ -152,20 +211,28 @@ public class SymbolicRewriter {
     }
 
     private List<ConstrainedTerm> fastComputeRewriteStep(ConstrainedTerm subject, boolean computeOne, boolean narrowing) {
+        return fastComputeRewriteStep(subject, computeOne, narrowing, allRuleBits);
+    }
+
+    private List<ConstrainedTerm> fastComputeRewriteStep(ConstrainedTerm subject, boolean computeOne, boolean narrowing, BitSet ruleBits) {
         List<ConstrainedTerm> results = new ArrayList<>();
+        firstResultMatch = null;
+        resultRules.clear();
         if (definition.automaton == null) {
             return results;
         }
         List<FastRuleMatcher.RuleMatchResult> matches = theFastMatcher.matchRulePattern(
                 subject,
                 definition.automaton.leftHandSide(),
-                allRuleBits,
+                ruleBits,
                 narrowing,
                 computeOne,
                 transitions,
                 subject.termContext());
         for (FastRuleMatcher.RuleMatchResult matchResult : matches) {
             Rule rule = definition.ruleTable.get(matchResult.ruleIndex);
+            RuleProfiler.RuleProfile profile = RuleProfiler.profile(rule, BackendMetrics::name);
+            long profileStart = RuleProfiler.start();
             Substitution<Variable, Term> substitution =
                     rule.containsAttribute(Att.refers_THIS_CONFIGURATION()) ?
                             matchResult.constraint.substitution().plus(new Variable(KLabels.THIS_CONFIGURATION, Sort.KSEQUENCE), filterOurStrategyCell(subject.term())) :
@@ -204,6 +271,9 @@ public class SymbolicRewriter {
             constraint = ((ConjunctiveFormula) constraint.substituteWithBinders(renameSubst)).simplify(subject.termContext());
 
             ConstrainedTerm result = new ConstrainedTerm(theNew, constraint, subject.termContext());
+            if (profile != null) {
+                profile.rightHandSide(profileStart);
+            }
             if (!matchResult.isMatching) {
                 // TODO(AndreiS): move these some other place
                 result = result.expandPatterns(true);
@@ -219,11 +289,22 @@ public class SymbolicRewriter {
                 continue;
             }
 
+            if (results.isEmpty()) {
+                firstResultMatch = matchResult;
+            }
             results.add(result);
+            resultRules.add(matchResult.ruleIndex);
+            BackendMetrics.ruleFired(rule);
+            if (profile != null) {
+                profile.succeeded();
+            }
         }
 
         if (results.isEmpty()) {
-            addStuckFlagIfNotThere(subject).ifPresent(results::add);
+            addStuckFlagIfNotThere(subject).ifPresent(result -> {
+                results.add(result);
+                resultRules.add(RewriteTrace.STUCK);
+            });
         }
 
         return results;
@@ -405,14 +486,13 @@ public class SymbolicRewriter {
 
     /**
      * Unifies the term with the pattern, and computes a map from variables in
-     * the pattern to the terms they unify with. Adds as many search results
-     * up to the bound as were found, and returns {@code true} if the bound has been reached.
+     * the pattern to the terms they unify with. Passes the search results to the consumer,
+     * and returns {@code true} if it asked for the search to stop.
      */
     private boolean addSearchResult(
-            HashSet<Substitution<Variable, Term>> searchResults,
+            Predicate<Substitution<Variable, Term>> consumer,
             ConstrainedTerm subject,
-            Rule pattern,
-            int bound) {
+            Rule pattern) {
         assert Sets.intersection(subject.term().variableSet(),
                 subject.constraint().substitution().keySet()).isEmpty();
         assert pattern.requires().stream().allMatch(BoolToken.TRUE::equals) && pattern.lookups().getKComponents().isEmpty();
@@ -421,8 +501,7 @@ public class SymbolicRewriter {
                 pattern.leftHandSide(),
                 subject.termContext());
         for (Substitution<Variable, Term> searchResult : discoveredSearchResults) {
-            searchResults.add(searchResult);
-            if (searchResults.size() == bound) {
+            if (!consumer.test(searchResult)) {
                 return true;
             }
         }
@@ -444,22 +523,84 @@ public class SymbolicRewriter {
             int depth,
             SearchType searchType,
             TermContext context) {
+        HashSet<Substitution<Variable, Term>> searchResults = Sets.newHashSet();
+        searchStates(initialTerm, pattern, depth, searchType, context, r -> {
+            searchResults.add(r);
+            return searchResults.size() != bound;
+        });
+
+        return searchResults.stream().map(this::renameAnonymousVariables).collect(Collectors.toSet());
+    }
+
+    /**
+     * Like {@link #search(Term, Rule, int, int, SearchType, TermContext)}, but passes the results to the consumer
+     * as soon as they are found instead of collecting them. A substitution found in several states is passed
+     * once for each of them.
+     *
+     * @param consumer called with each result; the search stops as soon as it returns false
+     */
+    public void search(
+            Term initialTerm,
+            Rule pattern,
+            int depth,
+            SearchType searchType,
+            TermContext context,
+            Predicate<? super Substitution<Variable, Term>> consumer) {
+        searchStates(initialTerm, pattern, depth, searchType, context, r -> consumer.test(renameAnonymousVariables(r)));
+    }
+
+    private Substitution<Variable, Term> renameAnonymousVariables(Substitution<Variable, Term> r) {
+        RenameAnonymousVariables renameAnonymousVariables = new RenameAnonymousVariables();
+        Substitution<Variable, Term> subs = new HashMapSubstitution();
+        r.forEach((k, v) -> subs.plus(renameAnonymousVariables.getRenamedVariable(k), renameAnonymousVariables.apply(v)));
+        return subs;
+    }
+
+    private void searchStates(
+            Term initialTerm,
+            Rule pattern,
+            int depth,
+            SearchType searchType,
+            TermContext context,
+            Predicate<Substitution<Variable, Term>> consumer) {
+        try (SearchGraph.Writer graph = javaOptions.searchGraph == null ? null
+                : new SearchGraph.Writer(context.global().files.resolveWorkingDirectory(javaOptions.searchGraph))) {
+            searchStates(initialTerm, pattern, depth, searchType, context, consumer, graph);
+        }
+    }
+
+    /**
+     * @param graph if not null, the states and transitions are written to it as they are explored.
+     */
+    private void searchStates(
+            Term initialTerm,
+            Rule pattern,
+            int depth,
+            SearchType searchType,
+            TermContext context,
+            Predicate<Substitution<Variable, Term>> consumer,
+            SearchGraph.Writer graph) {
         stopwatch.start();
 
-        HashSet<Substitution<Variable, Term>> searchResults = Sets.newHashSet();
-        Set<ConstrainedTerm> visited = Sets.newHashSet();
+        VisitedStates visited = visitedStates(context);
+        // with a bound on the depth, the states at the bound are results as well, and the reduction does not preserve them
+        PartialOrderReduction reduction = javaOptions.partialOrderReduction && searchType == SearchType.FINAL && depth < 0
+                ? new PartialOrderReduction(definition) : null;
 
         ConstrainedTerm initCnstrTerm = new ConstrainedTerm(initialTerm, context);
+        if (graph != null) {
+            graph.writeState(StateFingerprint.of(initCnstrTerm), initialTerm);
+        }
 
         // If depth is 0 then we are just trying to match the pattern.
         // A more clean solution would require a bit of a rework to how patterns
         // are handled in krun.Main when not doing search.
         if (depth == 0) {
-            addSearchResult(searchResults, initCnstrTerm, pattern, bound);
+            addSearchResult(consumer, initCnstrTerm, pattern);
             stopwatch.stop();
             if (context.global().krunOptions.experimental.statistics)
                 System.err.println("[" + visited.size() + "states, " + 0 + "steps, " + stopwatch + "]");
-            return searchResults;
+            return;
         }
 
         // The search queues will map terms to their depth in terms of transitions.
@@ -473,11 +614,11 @@ public class SymbolicRewriter {
             depth = 1;
         }
         if (searchType == SearchType.STAR) {
-            if (addSearchResult(searchResults, initCnstrTerm, pattern, bound)) {
+            if (addSearchResult(consumer, initCnstrTerm, pattern)) {
                 stopwatch.stop();
                 if (context.global().krunOptions.experimental.statistics)
                     System.err.println("[" + visited.size() + "states, " + 0 + "steps, " + stopwatch + "]");
-                return searchResults;
+                return;
             }
         }
 
@@ -492,27 +633,42 @@ public class SymbolicRewriter {
                 Integer currentDepth = entry.getValue();
 
                 List<ConstrainedTerm> results = computeRewriteStep(term, step, false);
+                List<Integer> rules = new ArrayList<>(resultRules);
+                if (reduction != null) {
+                    reduction.reduce(term, results, rules);
+                }
+                long[] source = graph == null ? null : StateFingerprint.of(term);
 
                 if (results.isEmpty() && searchType == SearchType.FINAL) {
-                    if (addSearchResult(searchResults, term, pattern, bound)) {
+                    if (addSearchResult(consumer, term, pattern)) {
                         break label;
                     }
                 }
 
-                for (ConstrainedTerm result : results) {
+                for (int i = 0; i < results.size(); i++) {
+                    ConstrainedTerm result = results.get(i);
                     if (!transition) {
                         nextQueue.put(result, currentDepth);
                         break;
                     } else {
+                        // The graph also needs to know whether the states beyond the target depth are new.
+                        boolean unvisited = (currentDepth + 1 != depth || graph != null) && visited.add(result);
+                        if (graph != null) {
+                            long[] target = StateFingerprint.of(result);
+                            if (unvisited) {
+                                graph.writeState(target, result.term());
+                            }
+                            graph.writeTransition(source, target, rules.get(i));
+                        }
                         // Continue searching if we haven't reached our target
                         // depth and we haven't already visited this state.
-                        if (currentDepth + 1 != depth && visited.add(result)) {
+                        if (currentDepth + 1 != depth && unvisited) {
                             nextQueue.put(result, currentDepth + 1);
                         }
                         // If we aren't searching for only final results, then
                         // also add this as a result if it matches the pattern.
                         if (searchType != SearchType.FINAL || currentDepth + 1 == depth) {
-                            if (addSearchResult(searchResults, result, pattern, bound)) {
+                            if (addSearchResult(consumer, result, pattern)) {
                                 break label;
                             }
                         }
@@ -532,15 +688,50 @@ public class SymbolicRewriter {
         if (context.global().krunOptions.experimental.statistics) {
             System.err.println("[" + visited.size() + "states, " + step + "steps, " + stopwatch + "]");
         }
+    }
+
+    /**
+     * The states visited by a search.
+     */
+    private interface VisitedStates {
+        /**
+         * @return true if the state had not been visited yet.
+         */
+        boolean add(ConstrainedTerm state);
+
+        long size();
+    }
+
+    private VisitedStates visitedStates(TermContext context) {
+        if (javaOptions.fingerprintVisited) {
+            int[] files = {0};
+            FingerprintSet fingerprints = new FingerprintSet(javaOptions.fingerprintMemory * (1L << 20),
+                    () -> context.global().files.resolveTemp("visited-" + files[0]++ + ".bin"));
+            return new VisitedStates() {
+                @Override
+                public boolean add(ConstrainedTerm state) {
+                    long[] fingerprint = StateFingerprint.of(state);
+                    return fingerprints.add(fingerprint[0], fingerprint[1]);
+                }
 
-        Set<Substitution<Variable, Term>> adaptedResults = searchResults.stream().map(r -> {
-            RenameAnonymousVariables renameAnonymousVariables = new RenameAnonymousVariables();
-            Substitution<Variable, Term> subs = new HashMapSubstitution();
-            r.forEach((k, v) -> subs.plus(renameAnonymousVariables.getRenamedVariable(k), renameAnonymousVariables.apply(v)));
-            return subs;
-        }).collect(Collectors.toSet());
+                @Override
+                public long size() {
+                    return fingerprints.size();
+                }
+            };
+        }
+        Set<ConstrainedTerm> states = Sets.newHashSet();
+        return new VisitedStates() {
+            @Override
+            public boolean add(ConstrainedTerm state) {
+                return states.add(state);
+            }
 
-        return adaptedResults;
+            @Override
+            public long size() {
+                return states.size();
+            }
+        };
     }
 
     public List<ConstrainedTerm> proveRule(
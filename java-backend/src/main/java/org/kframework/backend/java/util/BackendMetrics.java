@@ -0,0 +1,67 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.util;
+
+import org.kframework.backend.java.kil.KLabelConstant;
+import org.kframework.backend.java.kil.Rule;
+import org.kframework.utils.Metrics;
+
+/**
+ * The {@link Metrics} of the Java backend.
+ *
+ * The timers are not reentrant: a function called recursively records the time of each call, including the time of
+ * the calls it makes.
+ */
+public final class BackendMetrics {
+
+    private BackendMetrics() {}
+
+    public static final Metrics.Counter REWRITE_STEPS = Metrics.counter("rewriteSteps");
+
+    /** The rules the rewriter attempted to apply to the subject, i.e. whose side conditions it evaluated. */
+    public static final Metrics.Family<Metrics.Counter> RULES_TRIED = Metrics.counters("rulesTried");
+    /** The rules applied to the subject. */
+    public static final Metrics.Family<Metrics.Counter> RULES_FIRED = Metrics.counters("rulesFired");
+
+    public static final Metrics.Family<Metrics.Histogram> FUNCTIONS = Metrics.histograms("functions");
+
+    public static final Metrics.Histogram SMT_QUERIES = Metrics.histogram("smtQueries");
+
+    public static final Metrics.HitRate SORT_CACHE = Metrics.hitRate("sortCache");
+
+    public static final Metrics.Histogram QUERY_RULE_INDEXING = Metrics.histogram("queryRuleIndexing");
+    public static final Metrics.Histogram REWRITE_WITH_KOMPILED_RULES = Metrics.histogram("rewriteWithKompiledRules");
+    public static final Metrics.Histogram REWRITE_WITH_UNKOMPILED_RULES = Metrics.histogram("rewriteWithUnkompiledRules");
+    public static final Metrics.Histogram PATTERN_MATCH = Metrics.histogram("patternMatch");
+    public static final Metrics.Histogram EVALUATE_SIDE_CONDITIONS = Metrics.histogram("evaluateSideConditions");
+    public static final Metrics.Histogram LOCAL_REWRITE_BUILD_RHS = Metrics.histogram("localRewriteBuildRHS");
+    public static final Metrics.Histogram EVALUATE_LOOKUP_CHOICE = Metrics.histogram("evaluateLookupChoice");
+    public static final Metrics.Histogram EVALUATE_REQUIRES = Metrics.histogram("evaluateRequires");
+    public static final Metrics.Histogram DEEP_CLONE = Metrics.histogram("deepClone");
+
+    public static void ruleTried(Rule rule) {
+        if (Metrics.isEnabled()) {
+            RULES_TRIED.get(rule, BackendMetrics::name).inc();
+        }
+    }
+
+    public static void ruleFired(Rule rule) {
+        if (Metrics.isEnabled()) {
+            RULES_FIRED.get(rule, BackendMetrics::name).inc();
+        }
+    }
+
+    /**
+     * @return the timer of the function, or null if the metrics are disabled.
+     */
+    public static Metrics.Histogram function(KLabelConstant label) {
+        return Metrics.isEnabled() ? FUNCTIONS.get(label, KLabelConstant::label) : null;
+    }
+
+    /**
+     * @return the name under which the metrics of the rule are exported: its location, and its label if any.
+     */
+    public static String name(Rule rule) {
+        String name = rule.getSource() + ":" + rule.getLocation();
+        return rule.label() == null ? name : name + " " + rule.label();
+    }
+}
@@ -5,67 +5,255 @@ import org.kframework.backend.java.kil.*;
 import org.kframework.attributes.Source;
 import org.kframework.utils.errorsystem.KEMException;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
-
-import static org.apache.commons.io.FileUtils.writeStringToFile;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * For measuring semantic coverage
  *
+ * The locations are buffered on the thread which records them, and written by a background thread, so that
+ * recording a location does not wait for the file. They are only guaranteed to be in the file once the recording
+ * thread calls {@link #flush}.
+ *
  * @author daejunpark
  */
 public class Coverage {
 
+    /* the number of characters buffered on a thread before they are handed to the writer */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /* "KCOV" */
+    private static final int HISTOGRAM_MAGIC = 0x4B434F56;
+
+    /* writes the files of all the instances in order */
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "coverage-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final ConcurrentMap<File, Coverage> instances = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final boolean histogram;
+    private final ThreadLocal<StringBuilder> lines = ThreadLocal.withInitial(StringBuilder::new);
+    private final ThreadLocal<Map<String, long[]>> counts = ThreadLocal.withInitial(HashMap::new);
+    /* the counts flushed by all threads which are not in the file yet */
+    private final ConcurrentMap<String, Long> pendingCounts = new ConcurrentHashMap<>();
+    private volatile IOException failure;
+
+    private Coverage(File file, boolean histogram) {
+        this.file = file;
+        this.histogram = histogram;
+    }
+
     /**
-     * Print location information of {@code constrainedTerm} into {@code file}.
-     * - If {@code file} is null, then it does nothing.
-     * - If the location information is not available, then it does nothing.
+     * The instance recording the coverage into {@code file}, shared by all the rewriters writing to the same file.
+     * - If {@code histogram} is false, each location is appended to {@code file} on a line of its own.
+     * - Otherwise, {@code file} holds the number of times each location was recorded, added to the counts in it
+     * when they are written. See {@link #readHistogram}. Deleting the file resets the counts.
      *
      * @param file could be null.
+     * @return null if {@code file} is null.
+     */
+    public static Coverage of(File file, boolean histogram) {
+        if (file == null) {
+            return null;
+        }
+        Coverage coverage = instances.computeIfAbsent(file.getAbsoluteFile(), f -> new Coverage(f, histogram));
+        if (coverage.histogram != histogram) {
+            throw KEMException.criticalError("The coverage file " + file + " is already recorded "
+                    + (coverage.histogram ? "as a histogram." : "line by line."));
+        }
+        return coverage;
+    }
+
+    /**
+     * Print location information of {@code constrainedTerm} into {@code coverage}.
+     * - If {@code coverage} is null, then it does nothing.
+     * - If the location information is not available, then it does nothing.
+     *
+     * @param coverage could be null.
      * @param constrainedTerm should not be null.
      */
-    public static void print(File file, ConstrainedTerm constrainedTerm) {
-        if (file != null) {
-            print(file, getSourceLocation(constrainedTerm));
+    public static void print(Coverage coverage, ConstrainedTerm constrainedTerm) {
+        if (coverage != null) {
+            coverage.print(getSourceLocation(constrainedTerm));
         }
     }
 
     /**
-     * Print location information of {@code term} into {@code file}.
-     * - If {@code file} is {@code null}, then it does nothing.
+     * Print location information of {@code term} into {@code coverage}.
+     * - If {@code coverage} is {@code null}, then it does nothing.
      * - If the location information is not available, then it does nothing.
      *
-     * @param file could be null.
+     * @param coverage could be null.
      * @param term should not be null.
      */
-    public static void print(File file, Term term) {
-        if (file != null) {
-            print(file, getSourceLocation(term));
+    public static void print(Coverage coverage, Term term) {
+        if (coverage != null) {
+            coverage.print(getSourceLocation(term));
         }
     }
 
     /**
-     * Print location information of {@code rule} into {@code file}.
-     * - If {@code file} is {@code null}, then it does nothing.
+     * Print location information of {@code rule} into {@code coverage}.
+     * - If {@code coverage} is {@code null}, then it does nothing.
      * - If the location information is not available, then it does nothing.
      *
-     * @param file could be null.
+     * @param coverage could be null.
      * @param rule should not be null.
      */
-    public static void print(File file, Rule rule) {
-        if (file != null) {
-            print(file, getSourceLocation(rule));
+    public static void print(Coverage coverage, Rule rule) {
+        if (coverage != null) {
+            coverage.print(getSourceLocation(rule));
+        }
+    }
+
+    /**
+     * Writes the locations recorded by the calling thread to the file, and waits until they are written.
+     * If the calling thread is interrupted while waiting, the locations may not be written, and it fails with its
+     * interrupt status set.
+     *
+     * @param coverage could be null.
+     */
+    public static void flush(Coverage coverage) {
+        if (coverage != null) {
+            coverage.flush();
         }
     }
 
-    private synchronized static void print(File file, String string) {
-        if (file != null && string != null) {
+    /* package-private for the tests, which record locations without building terms */
+    void print(String string) {
+        if (string == null) {
+            return;
+        }
+        if (histogram) {
+            long[] count = counts.get().get(string);
+            if (count == null) {
+                counts.get().put(string, new long[] {1});
+            } else {
+                count[0]++;
+            }
+        } else {
+            StringBuilder sb = lines.get();
+            sb.append(string).append('\n');
+            if (sb.length() >= BUFFER_SIZE) {
+                writeLines(sb);
+            }
+        }
+    }
+
+    private void writeLines(StringBuilder sb) {
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(sb.toString());
+        sb.setLength(0);
+        writer.execute(() -> {
+            try (FileChannel channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+        });
+    }
+
+    private void writeHistogram() {
+        writer.execute(() -> {
+            if (pendingCounts.isEmpty()) {
+                return;
+            }
+            // the file is read again every time, since it may have been reset or written by another process
+            Map<String, Long> sorted;
             try {
-                writeStringToFile(file, string + "\n", true);
+                sorted = file.exists() && file.length() > 0 ? readHistogram(file) : new TreeMap<>();
+            } catch (IOException e) {
+                failure = e;
+                return;
+            }
+            for (String location : pendingCounts.keySet()) {
+                Long count = pendingCounts.remove(location);
+                if (count != null) {
+                    sorted.merge(location, count, Long::sum);
+                }
+            }
+            try (FileChannel channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                         Channels.newOutputStream(channel)))) {
+                out.writeInt(HISTOGRAM_MAGIC);
+                out.writeInt(sorted.size());
+                for (Map.Entry<String, Long> entry : sorted.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue());
+                }
             } catch (IOException e) {
-                throw KEMException.internalError("Could not write to " + file, e);
+                failure = e;
+            }
+        });
+    }
+
+    private void flush() {
+        if (histogram) {
+            Map<String, long[]> local = counts.get();
+            if (!local.isEmpty()) {
+                local.forEach((location, count) -> pendingCounts.merge(location, count[0], Long::sum));
+                local.clear();
+                writeHistogram();
+            }
+        } else if (lines.get().length() > 0) {
+            writeLines(lines.get());
+        }
+        try {
+            writer.submit(() -> {}).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw KEMException.internalError("Interrupted while writing to " + file, e);
+        } catch (ExecutionException e) {
+            throw KEMException.internalError("Could not write to " + file, e.getCause());
+        }
+        IOException e = failure;
+        if (e != null) {
+            failure = null;
+            throw KEMException.internalError("Could not write to " + file, e);
+        }
+    }
+
+    /**
+     * @return the number of times each location was recorded in a coverage file written as a histogram.
+     */
+    public static Map<String, Long> readHistogram(File file) throws IOException {
+        try (InputStream in = Files.newInputStream(file.toPath());
+             DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+            if (data.readInt() != HISTOGRAM_MAGIC) {
+                throw new IOException(file + " is not a coverage histogram.");
+            }
+            int size = data.readInt();
+            Map<String, Long> counts = new TreeMap<>();
+            for (int i = 0; i < size; i++) {
+                counts.put(data.readUTF(), data.readLong());
             }
+            return counts;
         }
     }
 
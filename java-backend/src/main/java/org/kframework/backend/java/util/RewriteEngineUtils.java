@@ -19,6 +19,7 @@ import org.kframework.backend.java.symbolic.ImmutableMapSubstitution;
 import org.kframework.backend.java.symbolic.PatternMatcher;
 import org.kframework.backend.java.symbolic.RuleAuditing;
 import org.kframework.backend.java.symbolic.Substitution;
+import org.kframework.utils.Metrics;
 
 import java.util.Collections;
 import java.util.List;
@@ -55,7 +56,7 @@ public class RewriteEngineUtils {
         }
 
         /* evaluate data structure lookups/choices and add bindings for them */
-        Profiler.startTimer(Profiler.EVALUATE_LOOKUP_CHOICE_TIMER);
+        long lookupsStart = Metrics.start();
         int i = 0;
         for (Equality equality : rule.lookups().equalities()) {
             Term lookupOrChoice = equality.leftHandSide();
@@ -117,11 +118,11 @@ public class RewriteEngineUtils {
             }
             ++i;
         }
-        Profiler.stopTimer(Profiler.EVALUATE_LOOKUP_CHOICE_TIMER);
+        BackendMetrics.EVALUATE_LOOKUP_CHOICE.stop(lookupsStart);
 
 
         /* evaluate side conditions */
-        Profiler.startTimer(Profiler.EVALUATE_REQUIRES_TIMER);
+        long requiresStart = Metrics.start();
         if (crntSubst != null) {
             i = 0;
             for (Term require : rule.requires()) {
@@ -145,7 +146,7 @@ public class RewriteEngineUtils {
                 i++;
             }
         }
-        Profiler.stopTimer(Profiler.EVALUATE_REQUIRES_TIMER);
+        BackendMetrics.EVALUATE_REQUIRES.stop(requiresStart);
 
         return crntSubst;
     }
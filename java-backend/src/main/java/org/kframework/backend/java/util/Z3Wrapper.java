@@ -8,6 +8,7 @@ import com.microsoft.z3.Solver;
 import com.microsoft.z3.Status;
 import com.microsoft.z3.Z3Exception;
 import org.kframework.main.GlobalOptions;
+import org.kframework.utils.Metrics;
 import org.kframework.utils.OS;
 import org.kframework.utils.errorsystem.KExceptionManager;
 import org.kframework.utils.file.FileUtil;
@@ -50,10 +51,15 @@ public class Z3Wrapper {
     }
 
     public synchronized boolean isUnsat(String query, int timeout) {
-        if (options.z3Executable) {
-            return checkQueryWithExternalProcess(query, timeout);
-        } else {
-            return checkQueryWithLibrary(query, timeout);
+        long start = Metrics.start();
+        try {
+            if (options.z3Executable) {
+                return checkQueryWithExternalProcess(query, timeout);
+            } else {
+                return checkQueryWithLibrary(query, timeout);
+            }
+        } finally {
+            BackendMetrics.SMT_QUERIES.stop(start);
         }
     }
 
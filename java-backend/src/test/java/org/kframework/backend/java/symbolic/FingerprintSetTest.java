@@ -0,0 +1,45 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.symbolic;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import static org.junit.Assert.*;
+
+public class FingerprintSetTest {
+
+    private static void testSet(FingerprintSet set) {
+        int n = 200000;
+        for (int i = 0; i < n; i++) {
+            assertTrue(set.add(i * 0x9E3779B97F4A7C15L, i));
+        }
+        assertFalse(set.add(0, 0));
+        for (int i = 0; i < n; i++) {
+            assertFalse(set.add(i * 0x9E3779B97F4A7C15L, i));
+        }
+        assertEquals(n, set.size());
+    }
+
+    @Test
+    public void testInMemory() {
+        testSet(new FingerprintSet(Long.MAX_VALUE, () -> {
+            throw new AssertionError();
+        }));
+    }
+
+    @Test
+    public void testMapped() {
+        testSet(new FingerprintSet(0, () -> {
+            try {
+                File file = File.createTempFile("visited", null);
+                file.deleteOnExit();
+                return file;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+    }
+}
@@ -0,0 +1,30 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.symbolic;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RewriteTraceTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        File file = File.createTempFile("trace", null);
+        file.deleteOnExit();
+        List<RewriteTrace.Entry> entries = Arrays.asList(
+                new RewriteTrace.Entry(0, 0, new int[] {0, 1}),
+                new RewriteTrace.Entry(1, 300, new int[] {2, 3, 100000, 100001}),
+                new RewriteTrace.Entry(2, RewriteTrace.STUCK, new int[0]));
+        try (RewriteTrace.Writer writer = new RewriteTrace.Writer(file)) {
+            entries.forEach(writer::write);
+        }
+        try (RewriteTrace.Reader reader = new RewriteTrace.Reader(file)) {
+            assertEquals(entries, reader.readAll());
+            assertNull(reader.read());
+        }
+    }
+}
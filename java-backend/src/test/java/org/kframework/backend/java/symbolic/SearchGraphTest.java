@@ -0,0 +1,42 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.symbolic;
+
+import org.junit.Test;
+import org.kframework.kore.K;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+import static org.kframework.kore.KORE.*;
+
+public class SearchGraphTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        File file = File.createTempFile("graph", null);
+        file.deleteOnExit();
+        K first = KApply(KLabel("<T>"), KApply(KLabel("<k>"), KToken("1", Sort("Int"))));
+        K second = KApply(KLabel("<T>"), KApply(KLabel("<k>"), KToken("2", Sort("Int"))));
+        long[] a = {1, 2}, b = {3, 4};
+        SearchGraph.Transition transition = new SearchGraph.Transition(a, b, 5);
+        SearchGraph.Transition loop = new SearchGraph.Transition(b, b, RewriteTrace.STUCK);
+        try (SearchGraph.Writer writer = new SearchGraph.Writer(file)) {
+            writer.writeState(a, first);
+            writer.writeState(b, second);
+            writer.writeTransition(a, b, 5);
+            writer.writeTransition(b, b, RewriteTrace.STUCK);
+        }
+        try (SearchGraph.Reader reader = new SearchGraph.Reader(file)) {
+            SearchGraph.State state = (SearchGraph.State) reader.read();
+            assertArrayEquals(a, state.fingerprint);
+            assertEquals(first, state.configuration);
+            // the labels of the second configuration are only in the intern table of the first
+            state = (SearchGraph.State) reader.read();
+            assertArrayEquals(b, state.fingerprint);
+            assertEquals(second, state.configuration);
+            assertEquals(transition, reader.read());
+            assertEquals(loop, reader.read());
+            assertNull(reader.read());
+        }
+    }
+}
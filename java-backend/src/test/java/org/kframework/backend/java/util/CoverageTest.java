@@ -0,0 +1,59 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.backend.java.util;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CoverageTest {
+
+    @Test
+    public void testLinesAndHistogram() throws Exception {
+        File linesFile = File.createTempFile("coverage", null);
+        linesFile.deleteOnExit();
+        File histogramFile = File.createTempFile("coverage", null);
+        histogramFile.deleteOnExit();
+        Coverage lines = Coverage.of(linesFile, false);
+        Coverage histogram = Coverage.of(histogramFile, true);
+        assertSame(lines, Coverage.of(linesFile, false));
+
+        lines.print("a.k:(1,1,1,5)");
+        histogram.print("a.k:(1,1,1,5)");
+        lines.print("a.k:(2,1,2,5)");
+        histogram.print("a.k:(2,1,2,5)");
+        histogram.print("a.k:(1,1,1,5)");
+        lines.print(null);
+        histogram.print(null);
+        Coverage.flush(lines);
+        Coverage.flush(histogram);
+
+        assertEquals(Arrays.asList("a.k:(1,1,1,5)", "a.k:(2,1,2,5)"),
+                Files.readAllLines(linesFile.toPath(), StandardCharsets.UTF_8));
+        Map<String, Long> counts = Coverage.readHistogram(histogramFile);
+        assertEquals(2, counts.size());
+        assertEquals(2L, (long) counts.get("a.k:(1,1,1,5)"));
+        assertEquals(1L, (long) counts.get("a.k:(2,1,2,5)"));
+
+        // the counts flushed by another thread are added to those already in the file
+        Thread thread = new Thread(() -> {
+            histogram.print("a.k:(2,1,2,5)");
+            Coverage.flush(histogram);
+        });
+        thread.start();
+        thread.join();
+        assertEquals(2L, (long) Coverage.readHistogram(histogramFile).get("a.k:(2,1,2,5)"));
+
+        // deleting the file between runs resets the counts
+        assertTrue(histogramFile.delete());
+        histogram.print("a.k:(2,1,2,5)");
+        Coverage.flush(histogram);
+        assertEquals(Collections.singletonMap("a.k:(2,1,2,5)", 1L), Coverage.readHistogram(histogramFile));
+    }
+}
@@ -1,6 +1,7 @@
 // Copyright (c) 2015-2016 K Team. All Rights Reserved.
 package org.kframework.debugger;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -43,6 +44,11 @@ public class TstKDebugOnKORE_IT {
         debuggerSession = new KoreKDebug(parsed, new KoreUtils(fileName, "IMP", "IMP-SYNTAX", false).getRewriter(), new Integer(500), null, utils.kem, kRunOptions, utils.compiledDef);
     }
 
+    @After
+    public void tearDown() {
+        debuggerSession.close();
+    }
+
     @Test @Ignore
     public void normalExecutionTest() throws IOException, URISyntaxException {
         int steps = getRandomSteps(1, 100);
@@ -0,0 +1,64 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+
+package org.kframework.kore.convertors;
+
+import org.junit.Test;
+import org.kframework.attributes.Source;
+import org.kframework.builtin.BooleanUtils;
+import org.kframework.definition.Rule;
+import org.kframework.kore.K;
+import org.kframework.kore.KApply;
+import org.kframework.kore.KORE;
+import org.kframework.kore.VisitK;
+import org.kframework.rewriter.SearchType;
+import org.kframework.utils.KoreUtils;
+
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class TstPartialOrderReductionOnKORE_IT {
+
+    private static Set<String> finalStates(boolean partialOrderReduction) throws URISyntaxException {
+        KoreUtils utils = new KoreUtils("/convertor-tests/threads.k", "THREADS", "THREADS-SYNTAX", true, false, false);
+        utils.javaOptions.partialOrderReduction = partialOrderReduction;
+        K pgm = utils.getParsed("wait || clear || tick", Source.apply("generated by TstPartialOrderReductionOnKORE_IT"));
+        return utils.getRewriter().search(pgm, Optional.empty(), Optional.empty(),
+                new Rule(KORE.KVariable("X"), BooleanUtils.TRUE, BooleanUtils.TRUE, KORE.Att()), SearchType.FINAL)
+                .stream()
+                .flatMap(m -> m.values().stream())
+                .map(TstPartialOrderReductionOnKORE_IT::canonical)
+                .collect(Collectors.toSet());
+    }
+
+    /* the contents of the cells of the state, which do not depend on the order of the threads */
+    private static String canonical(K state) {
+        List<String> cells = new ArrayList<>();
+        new VisitK() {
+            @Override
+            public void apply(KApply k) {
+                if (k.klabel().name().equals("<k>") || k.klabel().name().equals("<flag>")) {
+                    cells.add(k.toString());
+                } else {
+                    super.apply(k);
+                }
+            }
+        }.apply(state);
+        Collections.sort(cells);
+        return cells.toString();
+    }
+
+    @Test
+    public void testFinalStates() throws URISyntaxException {
+        Set<String> expected = finalStates(false);
+        // wait either runs before clear, or is stuck after it
+        assertEquals(2, expected.size());
+        assertEquals(expected, finalStates(true));
+    }
+}
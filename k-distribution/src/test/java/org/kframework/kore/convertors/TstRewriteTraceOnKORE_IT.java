@@ -0,0 +1,53 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+
+package org.kframework.kore.convertors;
+
+import org.junit.Test;
+import org.kframework.attributes.Source;
+import org.kframework.kore.K;
+import org.kframework.rewriter.Rewriter;
+import org.kframework.utils.KoreUtils;
+import org.kframework.utils.errorsystem.KEMException;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class TstRewriteTraceOnKORE_IT {
+
+    private static final String DEFINITION = "/convertor-tests/kore_imp.k";
+
+    private static K parse(KoreUtils utils, int n) throws URISyntaxException {
+        String pgm = "int s, n; n = " + n + "; while(0<=n) { s = s + n; n = n + -1; }";
+        return utils.getParsed(pgm, Source.apply("generated by TstRewriteTraceOnKORE_IT"));
+    }
+
+    @Test
+    public void testRecordAndReplay() throws URISyntaxException, IOException {
+        File trace = File.createTempFile("trace", null);
+        trace.deleteOnExit();
+
+        KoreUtils recording = new KoreUtils(DEFINITION, "IMP", "IMP-SYNTAX", false);
+        recording.javaOptions.recordTrace = trace.getAbsolutePath();
+        Rewriter recorder = recording.getRewriter();
+        K recorded = recorder.execute(parse(recording, 10), Optional.empty()).k();
+        // a later execution, like the debugger checking whether a configuration is final, keeps the trace
+        recorder.execute(parse(recording, 10), Optional.of(1));
+
+        KoreUtils replaying = new KoreUtils(DEFINITION, "IMP", "IMP-SYNTAX", false);
+        replaying.javaOptions.replayTrace = trace.getAbsolutePath();
+        assertEquals(recorded, replaying.getRewriter().execute(parse(replaying, 10), Optional.empty()).k());
+
+        KoreUtils diverging = new KoreUtils(DEFINITION, "IMP", "IMP-SYNTAX", false);
+        diverging.javaOptions.replayTrace = trace.getAbsolutePath();
+        try {
+            diverging.getRewriter().execute(parse(diverging, 5), Optional.empty());
+            fail("Replaying the trace of a different program should diverge");
+        } catch (KEMException e) {
+            assertTrue(e.getMessage().contains("diverged"));
+        }
+    }
+}
@@ -11,6 +11,7 @@ import org.kframework.krun.KRunOptions;
 import org.kframework.rewriter.Rewriter;
 import org.kframework.attributes.Source;
 import org.kframework.backend.java.symbolic.InitializeRewriter;
+import org.kframework.backend.java.symbolic.JavaExecutionOptions;
 import org.kframework.backend.java.symbolic.JavaSymbolicCommonModule;
 import org.kframework.backend.java.symbolic.Stage;
 import org.kframework.builtin.Sorts;
@@ -56,6 +57,7 @@ public class KoreUtils {
     public final SimpleScope requestScope;
     public final BiFunction<String, Source, K> programParser;
     public Rewriter rewriter;
+    public final JavaExecutionOptions javaOptions = new JavaExecutionOptions();
 
     protected File testResource(String baseName) throws URISyntaxException {
         return new File(KoreUtils.class.getResource(baseName).toURI());
@@ -94,6 +96,7 @@ public class KoreUtils {
                 bind(FileSystem.class).to(PortableFileSystem.class);
                 bind(FileUtil.class).toInstance(FileUtil.testFileUtil());
                 bind(KompileOptions.class).toInstance(kompileOptions);
+                bind(JavaExecutionOptions.class).toInstance(javaOptions);
                 bind(KRunOptions.class).toInstance(krunOptions);
                 bind(KRunOptions.ConfigurationCreationOptions.class).toInstance(krunOptions.configurationCreation);
 
@@ -0,0 +1,206 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.debugger;
+
+import org.kframework.kore.K;
+import org.kframework.parser.binary.BinaryParser;
+import org.kframework.unparser.ToBinary;
+import org.kframework.utils.errorsystem.KEMException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The checkpoints of a {@link DebuggerState}, i.e. the configurations at some of the steps of its history.
+ * Any other step can be recomputed by rewriting from the closest checkpoint before it.
+ * <p>
+ * Stores are immutable. Adding a checkpoint or dropping the most recent ones returns a new store which
+ * shares the older checkpoints with the original, so stepping or copying a state does not copy its history.
+ * <p>
+ * Only the most recent checkpoints of each store are kept as terms, as configured by its {@link Storage}.
+ * Older ones are written to a file in the KAST binary format, and read back when they are needed again.
+ */
+public final class CheckpointStore {
+
+    private static final class Node {
+        final int step;
+        final int firstStep;
+        final Node previous;
+        final Optional<BigInteger> freshCounter;
+        K k;
+        long offset;
+        int length;
+
+        Node(int step, K k, Optional<BigInteger> freshCounter, Node previous) {
+            this.step = step;
+            this.firstStep = previous == null ? step : previous.firstStep;
+            this.k = k;
+            this.freshCounter = freshCounter;
+            this.previous = previous;
+        }
+    }
+
+    /**
+     * Where the checkpoints that are not kept as terms are written. Shared by all the stores of a debugger session,
+     * which closes it when it ends.
+     */
+    public static final class Storage implements Closeable {
+        private final int inMemory;
+        private final File file;
+        private RandomAccessFile out;
+
+        /**
+         * @param inMemory The number of most recent checkpoints of each store to keep as terms. Negative keeps all.
+         * @param file     The file to write the other checkpoints to. Only null if all of them are kept as terms.
+         */
+        public Storage(int inMemory, File file) {
+            if (inMemory >= 0 && file == null) {
+                throw new IllegalArgumentException("The checkpoints which are not kept as terms need a file.");
+            }
+            this.inMemory = inMemory;
+            this.file = file;
+        }
+
+        synchronized void spill(Node node) {
+            if (node.k == null) {
+                return;
+            }
+            byte[] bytes = ToBinary.apply(node.k);
+            try {
+                if (out == null) {
+                    out = new RandomAccessFile(file, "rw");
+                }
+                node.offset = out.length();
+                node.length = bytes.length;
+                out.seek(node.offset);
+                out.write(bytes);
+            } catch (IOException e) {
+                throw KEMException.internalError("Could not write debugger checkpoint to " + file.getAbsolutePath(), e);
+            }
+            node.k = null;
+        }
+
+        synchronized K load(Node node) {
+            if (node.k != null) {
+                return node.k;
+            }
+            if (out == null) {
+                throw KEMException.internalError("Debugger checkpoint read after its storage was closed.");
+            }
+            try {
+                byte[] bytes = new byte[node.length];
+                out.seek(node.offset);
+                out.readFully(bytes);
+                return BinaryParser.parse(bytes);
+            } catch (IOException e) {
+                throw KEMException.internalError("Could not read debugger checkpoint from " + file.getAbsolutePath(), e);
+            }
+        }
+
+        /**
+         * Closes the file of the checkpoints which are not kept as terms. They cannot be read afterwards.
+         */
+        @Override
+        public synchronized void close() {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    throw KEMException.internalError("Could not close " + file.getAbsolutePath(), e);
+                } finally {
+                    out = null;
+                }
+            }
+        }
+    }
+
+    private final Storage storage;
+    private final Node last;
+
+    public CheckpointStore(Storage storage) {
+        this(storage, null);
+    }
+
+    private CheckpointStore(Storage storage, Node last) {
+        this.storage = storage;
+        this.last = last;
+    }
+
+    public boolean isEmpty() {
+        return last == null;
+    }
+
+    /**
+     * @return A store with the checkpoints of this one and the given configuration at the given step,
+     * which must be after the last checkpoint of this store.
+     */
+    public CheckpointStore put(int step, K k) {
+        return put(step, k, Optional.empty());
+    }
+
+    /**
+     * Like {@link #put(int, K)}, but also records the value of the fresh counter of the rewriter at the step, so
+     * that rewriting again from the checkpoint generates the same fresh constants.
+     */
+    public CheckpointStore put(int step, K k, Optional<BigInteger> freshCounter) {
+        assert last == null || step > last.step;
+        Node node = new Node(step, k, freshCounter, last);
+        if (storage.inMemory >= 0) {
+            Node old = node;
+            for (int i = 0; i < storage.inMemory && old != null; i++) {
+                old = old.previous;
+            }
+            if (old != null) {
+                storage.spill(old);
+            }
+        }
+        return new CheckpointStore(storage, node);
+    }
+
+    /**
+     * @return A store with the checkpoints of this one up to and including the given step.
+     */
+    public CheckpointStore headStore(int step) {
+        return new CheckpointStore(storage, floor(step));
+    }
+
+    /**
+     * @return The last checkpoint at or before the given step, or null if there is none.
+     */
+    public Map.Entry<Integer, K> floorEntry(int step) {
+        Node node = floor(step);
+        if (node == null) {
+            return null;
+        }
+        return new AbstractMap.SimpleImmutableEntry<>(node.step, storage.load(node));
+    }
+
+    /**
+     * @return The fresh counter recorded with the last checkpoint at or before the given step, if any.
+     */
+    public Optional<BigInteger> floorFreshCounter(int step) {
+        Node node = floor(step);
+        return node == null ? Optional.empty() : node.freshCounter;
+    }
+
+    private Node floor(int step) {
+        Node node = last;
+        while (node != null && node.step > step) {
+            node = node.previous;
+        }
+        return node;
+    }
+
+    public int firstStep() {
+        return last.firstStep;
+    }
+
+    public int lastStep() {
+        return last.step;
+    }
+}
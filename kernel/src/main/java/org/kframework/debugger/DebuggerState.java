@@ -1,14 +1,13 @@
 // Copyright (c) 2015-2016 K Team. All Rights Reserved.
 package org.kframework.debugger;
 
-import com.google.common.collect.Maps;
 import org.kframework.kore.K;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.NavigableMap;
-import java.util.TreeMap;
+import java.util.Optional;
 
 /**
  * Created by Manasvi on 6/15/15.
@@ -24,7 +23,7 @@ import java.util.TreeMap;
  */
 public class DebuggerState {
 
-    private final NavigableMap<Integer, K> checkpointMap;
+    private final CheckpointStore checkpoints;
 
     private final List<DebuggerMatchResult> watchList;
 
@@ -32,18 +31,30 @@ public class DebuggerState {
 
     private final int stepNum;
 
-    public DebuggerState(K currentK, int stepNum, NavigableMap<Integer, K> checkpointMap, List<DebuggerMatchResult> watchList) {
-        this.checkpointMap = new TreeMap<>(checkpointMap);
+    private final Optional<BigInteger> freshCounter;
+
+    public DebuggerState(K currentK, int stepNum, CheckpointStore checkpoints, List<DebuggerMatchResult> watchList) {
+        this(currentK, stepNum, checkpoints, watchList, Optional.empty());
+    }
+
+    /**
+     * @param freshCounter The fresh counter of the rewriter after reaching {@code currentK}, if known.
+     */
+    public DebuggerState(K currentK, int stepNum, CheckpointStore checkpoints, List<DebuggerMatchResult> watchList,
+                         Optional<BigInteger> freshCounter) {
+        this.checkpoints = checkpoints;
         this.watchList = new ArrayList<>(watchList);
         this.currentK = currentK;
         this.stepNum = stepNum;
+        this.freshCounter = freshCounter;
     }
 
     public DebuggerState(DebuggerState copyState) {
-        this.checkpointMap = new TreeMap<>(copyState.getCheckpointMap());
+        this.checkpoints = copyState.getCheckpoints();
         this.watchList = new ArrayList<>(copyState.getWatchList());
         this.currentK = copyState.getCurrentK();
         this.stepNum = copyState.getStepNum();
+        this.freshCounter = copyState.getFreshCounter();
     }
 
     public K getCurrentK() {
@@ -54,6 +65,10 @@ public class DebuggerState {
         return stepNum;
     }
 
+    public Optional<BigInteger> getFreshCounter() {
+        return freshCounter;
+    }
+
     /**
      * Get the last checkpoint from the Map.
      * The last checkpoint may not have the most recent K.
@@ -61,14 +76,14 @@ public class DebuggerState {
      * @return The most recent checkpoint element in the Map
      */
     public int getlastMapCheckpoint() {
-        return checkpointMap.lastKey();
+        return checkpoints.lastStep();
     }
 
     public List<DebuggerMatchResult> getWatchList() {
         return Collections.unmodifiableList(watchList);
     }
 
-    public NavigableMap<Integer, K> getCheckpointMap() {
-        return Maps.unmodifiableNavigableMap(checkpointMap);
+    public CheckpointStore getCheckpoints() {
+        return checkpoints;
     }
 }
@@ -6,6 +6,7 @@ import org.kframework.definition.Rule;
 import org.kframework.kore.K;
 import org.kframework.kore.KVariable;
 
+import java.io.Closeable;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -16,7 +17,7 @@ import java.util.Optional;
  * happens through the methods described in this
  * interface.
  */
-public interface KDebug {
+public interface KDebug extends Closeable {
 
     /**
      * Change the Checkpoint Interval in the Debugger.
@@ -131,5 +132,12 @@ public interface KDebug {
      * @return The watch number of the watch removed, or -1 if watch not found in the list.
      */
     public int removeWatch(int watchNum);
+
+    /**
+     * End the debugger session, releasing the file its checkpoints are saved to.
+     * None of its states can be used afterwards.
+     */
+    @Override
+    public void close();
 }
 
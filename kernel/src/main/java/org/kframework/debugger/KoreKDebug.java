@@ -3,26 +3,41 @@ package org.kframework.debugger;
 
 
 import org.kframework.rewriter.Rewriter;
+import org.kframework.rewriter.RewriterSession;
 import org.kframework.RewriterResult;
+import org.kframework.attributes.Att;
 import org.kframework.attributes.Source;
 import org.kframework.definition.Rule;
+import org.kframework.kil.Attribute;
 import org.kframework.kompile.CompiledDefinition;
 import org.kframework.kore.K;
+import org.kframework.kore.KApply;
+import org.kframework.kore.KLabel;
 import org.kframework.kore.KVariable;
+import org.kframework.kore.VisitK;
 import org.kframework.krun.KRun;
 import org.kframework.krun.KRunOptions;
 import org.kframework.rewriter.SearchType;
 import org.kframework.utils.errorsystem.KExceptionManager;
 import org.kframework.utils.file.FileUtil;
+import scala.Option;
+import scala.Tuple2;
 
+import java.math.BigInteger;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.NavigableMap;
 import java.util.Optional;
-import java.util.TreeMap;
+import java.util.Set;
 import java.util.stream.Collectors;
 
+import static org.kframework.Collections.*;
+import static org.kframework.kore.KORE.*;
+
 /**
  * Kore Based Debugger Implementation.
  */
@@ -37,6 +52,8 @@ public class KoreKDebug implements KDebug {
     private final KExceptionManager kem;
     private KRunOptions options;
     private CompiledDefinition compiledDef;
+    private Set<KLabel> cellContainers;
+    private final CheckpointStore.Storage storage;
 
     /**
      * Start a Debugger Session. The initial Configuration becomes a part of the new and only state of the Debugger
@@ -58,14 +75,20 @@ public class KoreKDebug implements KDebug {
         this.kem = kem;
         this.options = options;
         this.compiledDef = compiledDef;
-        NavigableMap<Integer, K> checkpointMap = new TreeMap<>();
-        checkpointMap.put(DEFAULT_ID, initialK);
+        int inMemory = options.experimental.debuggerCheckpointsInMemory;
+        this.storage = new CheckpointStore.Storage(inMemory, inMemory < 0 ? null : files.resolveTemp("checkpoints.bin"));
+        CheckpointStore checkpoints = new CheckpointStore(storage).put(DEFAULT_ID, initialK);
         List<DebuggerMatchResult> watchList = new ArrayList<>();
-        DebuggerState initialState = new DebuggerState(initialK, DEFAULT_ID, checkpointMap, watchList);
+        DebuggerState initialState = new DebuggerState(initialK, DEFAULT_ID, checkpoints, watchList);
         stateList.add(initialState);
         activeStateIndex = DEFAULT_ID;
     }
 
+    @Override
+    public void close() {
+        storage.close();
+    }
+
     @Override
     public void setCheckpointInterval(int checkpointInterval) {
         this.checkpointInterval = checkpointInterval;
@@ -73,34 +96,45 @@ public class KoreKDebug implements KDebug {
 
     @Override
     public DebuggerState step(int currentStateIndex, int steps) {
+        DebuggerState currentState = stateList.get(currentStateIndex);
+        return step(currentStateIndex, steps, currentState.getCurrentK());
+    }
+
+    /**
+     * @param watchedK The configuration the results in the watch list of the state were computed on.
+     */
+    private DebuggerState step(int currentStateIndex, int steps, K watchedK) {
         DebuggerState currentState = stateList.get(currentStateIndex);
         K currentK = currentState.getCurrentK();
         int activeStateCheckpoint = currentState.getStepNum();
         RewriterResult result;
-        NavigableMap<Integer, K> checkpointMap = new TreeMap<>(currentState.getCheckpointMap());
+        CheckpointStore checkpoints = currentState.getCheckpoints();
         List<DebuggerMatchResult> origWatchList = currentState.getWatchList();
+        // keep the configuration in the rewriter between checkpoints instead of converting it back and forth
+        RewriterSession session = rewriter.session(currentK, currentState.getFreshCounter());
         while (steps >= checkpointInterval) {
-            result = rewriter.execute(currentK, Optional.of(checkpointInterval));
+            result = session.execute(Optional.of(checkpointInterval));
             if (isFinalState(checkpointInterval, result)) {
                 return processStateData(result.k(),
                         activeStateCheckpoint + result.rewriteSteps().get(),
                         currentStateIndex,
-                        checkpointMap,
-                        origWatchList
+                        checkpoints,
+                        updateWatchList(origWatchList, watchedK, result.k(), session),
+                        session.freshCounter()
                 );
             }
             steps -= checkpointInterval;
             activeStateCheckpoint += checkpointInterval;
-            checkpointMap.put(activeStateCheckpoint, result.k());
-            currentK = result.k();
+            checkpoints = checkpoints.put(activeStateCheckpoint, result.k(), session.freshCounter());
         }
-        result = rewriter.execute(currentK, Optional.of(steps));
+        result = session.execute(Optional.of(steps));
         if (isFinalState(steps, result)) {
             return processStateData(result.k(),
                     activeStateCheckpoint + result.rewriteSteps().get(),
                     currentStateIndex,
-                    checkpointMap,
-                    origWatchList
+                    checkpoints,
+                    updateWatchList(origWatchList, watchedK, result.k(), session),
+                    session.freshCounter()
             );
 
         }
@@ -108,36 +142,129 @@ public class KoreKDebug implements KDebug {
         return processStateData(result.k(),
                 activeStateCheckpoint,
                 currentStateIndex,
-                checkpointMap,
-                origWatchList
+                checkpoints,
+                updateWatchList(origWatchList, watchedK, result.k(), session),
+                session.freshCounter()
         );
     }
 
     /* Private Helper function to do make a new state with the requested data */
-    private DebuggerState processStateData(K finalK, int stepNum, int stateNum, NavigableMap<Integer, K> checkpointMap, List<DebuggerMatchResult> watchList) {
-        List<DebuggerMatchResult> updatedWatchList = updateWatchList(watchList, finalK);
+    private DebuggerState processStateData(K finalK, int stepNum, int stateNum, CheckpointStore checkpoints, List<DebuggerMatchResult> watchList, Optional<BigInteger> freshCounter) {
         stateList.remove(stateNum);
         DebuggerState nextState = new DebuggerState(
                 finalK,
                 stepNum,
-                checkpointMap,
-                updatedWatchList
+                checkpoints,
+                watchList,
+                freshCounter
         );
         stateList.add(stateNum, nextState);
         return nextState;
     }
 
-    private List<DebuggerMatchResult> updateWatchList(List<DebuggerMatchResult> originalList, K finalK) {
-        List<DebuggerMatchResult> modifiableList = new ArrayList<>(originalList);
-        return modifiableList.stream()
-                .map(x -> {
-                    return new DebuggerMatchResult(
-                            rewriter.match(finalK, x.getCompiledRule()),
-                            x.getParsedRule(),
-                            x.getCompiledRule(),
-                            x.getPattern());
-                })
-                .collect(Collectors.toCollection(ArrayList::new));
+    /**
+     * Re-evaluates the watches on the configuration of the session, which is converted to the backend only once
+     * for all of them. A watch whose pattern mentions cells keeps its previous result if all the occurrences of those
+     * cells are the same in the configuration it was computed on, since the match cannot see anything else.
+     *
+     * @param watchedK The configuration the results in originalList were computed on.
+     * @param finalK   The configuration of the session.
+     */
+    private List<DebuggerMatchResult> updateWatchList(List<DebuggerMatchResult> originalList, K watchedK, K finalK, RewriterSession session) {
+        List<Set<KLabel>> watchedCells = originalList.stream()
+                .map(x -> watchedCells(x.getParsedRule()))
+                .collect(Collectors.toList());
+        Set<KLabel> allCells = new HashSet<>();
+        watchedCells.forEach(allCells::addAll);
+        Map<KLabel, List<K>> oldCells = cellsOf(watchedK, allCells);
+        Map<KLabel, List<K>> newCells = cellsOf(finalK, allCells);
+
+        List<DebuggerMatchResult> updatedList = new ArrayList<>();
+        for (int i = 0; i < originalList.size(); i++) {
+            DebuggerMatchResult x = originalList.get(i);
+            Set<KLabel> cells = watchedCells.get(i);
+            if (!cells.isEmpty() && cells.stream().allMatch(l -> oldCells.get(l).equals(newCells.get(l)))) {
+                updatedList.add(x);
+            } else {
+                updatedList.add(new DebuggerMatchResult(
+                        session.match(x.getCompiledRule()),
+                        x.getParsedRule(),
+                        x.getCompiledRule(),
+                        x.getPattern()));
+            }
+        }
+        return updatedList;
+    }
+
+    /* The labels of the cells mentioned by a pattern */
+    private Set<KLabel> watchedCells(Rule parsedPattern) {
+        Set<KLabel> cells = new HashSet<>();
+        VisitK visitor = new VisitK() {
+            @Override
+            public void apply(KApply k) {
+                if (isCell(k.klabel())) {
+                    cells.add(k.klabel());
+                }
+                super.apply(k);
+            }
+        };
+        visitor.apply(parsedPattern.body());
+        visitor.apply(parsedPattern.requires());
+        return cells;
+    }
+
+    /* All the occurrences of the given cells in a configuration, in order */
+    private Map<KLabel, List<K>> cellsOf(K config, Set<KLabel> labels) {
+        Map<KLabel, List<K>> cells = new HashMap<>();
+        labels.forEach(l -> cells.put(l, new ArrayList<>()));
+        if (labels.isEmpty()) {
+            return cells;
+        }
+        // cells only occur under other cells and cell collections, so other terms such as computations are not visited
+        Set<KLabel> containers = cellContainers();
+        Deque<K> stack = new ArrayDeque<>();
+        stack.push(config);
+        while (!stack.isEmpty()) {
+            K k = stack.pop();
+            if (!(k instanceof KApply)) {
+                continue;
+            }
+            KApply kapp = (KApply) k;
+            if (labels.contains(kapp.klabel())) {
+                cells.get(kapp.klabel()).add(kapp);
+            }
+            if (k != config && !containers.contains(kapp.klabel())) {
+                continue;
+            }
+            List<K> items = kapp.klist().items();
+            for (int i = items.size() - 1; i >= 0; i--) {
+                stack.push(items.get(i));
+            }
+        }
+        return cells;
+    }
+
+    /* The labels of the cells, and of the collections of cells and their elements */
+    private Set<KLabel> cellContainers() {
+        if (cellContainers == null) {
+            Set<KLabel> containers = new HashSet<>();
+            for (Tuple2<KLabel, Att> entry : iterable(compiledDef.executionModule().attributesFor())) {
+                Att att = entry._2();
+                if (att.contains(Attribute.CELL_KEY)) {
+                    containers.add(entry._1());
+                } else if (att.contains("wrapElement")) {
+                    containers.add(entry._1());
+                    containers.add(KLabel(att.<String>get("element").get()));
+                }
+            }
+            cellContainers = containers;
+        }
+        return cellContainers;
+    }
+
+    private boolean isCell(KLabel label) {
+        Option<Att> att = compiledDef.executionModule().attributesFor().get(label);
+        return att.isDefined() && att.get().contains(Attribute.CELL_KEY);
     }
 
     private boolean isFinalState(int steps, RewriterResult result) {
@@ -153,8 +280,8 @@ public class KoreKDebug implements KDebug {
         DebuggerState currentState = stateList.get(initialStateNum);
         int currentCheckpoint = currentState.getStepNum();
         int target = currentCheckpoint - steps;
-        NavigableMap<Integer, K> currMap = new TreeMap<>(currentState.getCheckpointMap());
-        Map.Entry<Integer, K> relevantEntry = currMap.floorEntry(target);
+        CheckpointStore checkpoints = currentState.getCheckpoints();
+        Map.Entry<Integer, K> relevantEntry = checkpoints.floorEntry(target);
         if (relevantEntry == null) {
             /* Invalid Operation, no need to change the state */
             return null;
@@ -164,16 +291,16 @@ public class KoreKDebug implements KDebug {
         processStateData(relevantEntry.getValue(),
                 floorKey,
                 initialStateNum,
-                currMap.headMap(floorKey, true),
-                updateWatchList(currentState.getWatchList(), relevantEntry.getValue()));
-        return step(initialStateNum, target - floorKey);
+                checkpoints.headStore(floorKey),
+                currentState.getWatchList(),
+                checkpoints.floorFreshCounter(floorKey));
+        return step(initialStateNum, target - floorKey, currentState.getCurrentK());
     }
 
     @Override
     public DebuggerState jumpTo(int initialStateNum, int configurationNum) {
         DebuggerState currentState = stateList.get(initialStateNum);
-        NavigableMap<Integer, K> checkpointMap = new TreeMap<>(currentState.getCheckpointMap());
-        int firstKey = checkpointMap.firstKey();
+        int firstKey = currentState.getCheckpoints().firstStep();
         if (configurationNum < firstKey) {
             return null;
         }
@@ -258,8 +385,9 @@ public class KoreKDebug implements KDebug {
         DebuggerState nextState = new DebuggerState(
                 activeState.getCurrentK(),
                 activeState.getStepNum(),
-                new TreeMap<>(activeState.getCheckpointMap()),
-                watchList);
+                activeState.getCheckpoints(),
+                watchList,
+                activeState.getFreshCounter());
         stateList.add(activeStateIndex, nextState);
     }
 
@@ -277,8 +405,9 @@ public class KoreKDebug implements KDebug {
                 new DebuggerState(
                         currActiveState.getCurrentK(),
                         currActiveState.getStepNum(),
-                        new TreeMap<>(currActiveState.getCheckpointMap()),
-                        updatedList)
+                        currActiveState.getCheckpoints(),
+                        updatedList,
+                        currActiveState.getFreshCounter())
 
         );
         return watchNum;
@@ -24,6 +24,7 @@ import org.kframework.utils.inject.JCommanderModule.Usage;
 import scala.Option;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
@@ -102,7 +103,16 @@ public class KastFrontEnd extends FrontEnd {
                 }
                 mod = mod2.get();
             }
-            K parsed = def.getParser(mod, sort, kem).apply(FileUtil.read(stringToParse), source);
+            K parsed;
+            if (options.experimental.chunked) {
+                try {
+                    parsed = def.getChunkedParser(mod, sort, kem).parse(stringToParse, source);
+                } catch (IOException e) {
+                    throw KEMException.internalError("Error reading from " + stringToParse, e);
+                }
+            } else {
+                parsed = def.getParser(mod, sort, kem).apply(FileUtil.read(stringToParse), source);
+            }
             System.out.println(ToKast.apply(parsed));
             sw.printTotal("Total");
             return 0;
@@ -93,5 +93,9 @@ public final class KastOptions {
     public Experimental experimental = new Experimental();
 
     public static final class Experimental {
+
+        @Parameter(names="--chunked", description="If the sort to parse is a user list, read and parse the input " +
+                "one list element at a time. Reduces the memory needed to parse very large programs.")
+        public boolean chunked = false;
     }
 }
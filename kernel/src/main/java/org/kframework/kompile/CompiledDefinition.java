@@ -20,6 +20,7 @@ import org.kframework.kore.KToken;
 import org.kframework.kore.Sort;
 import org.kframework.kore.VisitK;
 import org.kframework.parser.TreeNodesToKORE;
+import org.kframework.parser.concrete2kore.ChunkedListParser;
 import org.kframework.parser.concrete2kore.ParseInModule;
 import org.kframework.parser.concrete2kore.generator.RuleGrammarGenerator;
 import org.kframework.utils.errorsystem.KException;
@@ -56,6 +57,11 @@ public class CompiledDefinition implements Serializable {
     private final Module languageParsingModule;
     private transient Map<String, Rule> cachedcompiledPatterns;
     private transient Map<String, Rule> cachedParsedPatterns;
+    /**
+     * Program parsers by the name of their module, with their grammar compiled.
+     * Not transient, so that the parsers generated during kompile are reused by krun and kast.
+     */
+    private final Map<String, ParseInModule> programParsers = new ConcurrentHashMap<>();
 
 
     public CompiledDefinition(KompileOptions kompileOptions, Definition parsedDefinition, Definition kompiledDefinition, KLabel topCellInitializer) {
@@ -155,7 +161,7 @@ public class CompiledDefinition implements Serializable {
      */
 
     public BiFunction<String, Source, K> getParser(Module module, Sort programStartSymbol, KExceptionManager kem) {
-        ParseInModule parseInModule = new RuleGrammarGenerator(parsedDefinition, kompileOptions.strict()).getCombinedGrammar(module);
+        ParseInModule parseInModule = getCombinedGrammar(module);
 
         return (BiFunction<String, Source, K> & Serializable) (s, source) -> {
             Tuple2<Either<Set<ParseFailedException>, K>, Set<ParseFailedException>> res = parseInModule.parseString(s, programStartSymbol, source);
@@ -167,6 +173,23 @@ public class CompiledDefinition implements Serializable {
         };
     }
 
+    /**
+     * Like {@link #getParser(Module, Sort, KExceptionManager)}, but reads the program incrementally and, if the
+     * start symbol is a user list, parses it one element at a time. See {@link ChunkedListParser}.
+     */
+    public ChunkedListParser getChunkedParser(Module module, Sort programStartSymbol, KExceptionManager kem) {
+        ParseInModule parseInModule = getCombinedGrammar(module);
+        return new ChunkedListParser(parseInModule, module, programStartSymbol, kem);
+    }
+
+    private ParseInModule getCombinedGrammar(Module module) {
+        return programParsers.computeIfAbsent(module.name(), name -> {
+            ParseInModule parseInModule = new RuleGrammarGenerator(parsedDefinition, kompileOptions.strict()).getCombinedGrammar(module);
+            parseInModule.initialize();
+            return parseInModule;
+        });
+    }
+
     public Module getExtensionModule(Module module) {
         return new RuleGrammarGenerator(kompiledDefinition, kompileOptions.strict()).getCombinedGrammar(module).getExtensionModule();
     }
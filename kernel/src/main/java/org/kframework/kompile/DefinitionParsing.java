@@ -40,6 +40,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -103,11 +104,11 @@ public class DefinitionParsing {
         Module module = modules.iterator().next();
 
         errors = java.util.Collections.synchronizedSet(Sets.newHashSet());
-        caches = new HashMap<>();
+        caches = new ConcurrentHashMap<>();
 
         if (cacheParses) {
             try {
-                caches = loader.load(Map.class, cacheFile);
+                caches = new ConcurrentHashMap<String, ParseCache>(loader.load(Map.class, cacheFile));
             } catch (FileNotFoundException e) {
             } catch (IOException | ClassNotFoundException e) {
                 kem.registerInternalHiddenWarning("Invalidating serialized cache due to corruption.", e);
@@ -184,11 +185,11 @@ public class DefinitionParsing {
         }
 
         errors = java.util.Collections.synchronizedSet(Sets.newHashSet());
-        caches = new HashMap<>();
+        caches = new ConcurrentHashMap<>();
 
         if (cacheParses) {
             try {
-                caches = loader.load(Map.class, cacheFile);
+                caches = new ConcurrentHashMap<String, ParseCache>(loader.load(Map.class, cacheFile));
             } catch (FileNotFoundException e) {
             } catch (IOException | ClassNotFoundException e) {
                 kem.registerInternalHiddenWarning("Invalidating serialized cache due to corruption.", e);
@@ -212,20 +213,31 @@ public class DefinitionParsing {
 
     public Definition resolveNonConfigBubbles(Definition defWithConfig) {
         RuleGrammarGenerator gen = new RuleGrammarGenerator(defWithConfig, isStrict);
+        // The modules are transformed in dependency order, but their rule parsers do not depend on each other,
+        // so generate all of them in parallel first. The transformation then finds them in the parse caches,
+        // because transforming a module does not change its syntax.
+        stream(defWithConfig.modules())
+                .parallel()
+                .filter(this::hasNonConfigBubbles)
+                .forEach(m -> loadCache(gen.getRuleGrammar(m)).getParser(gen));
         Definition parsedDef = DefinitionTransformer.from(m -> this.resolveNonConfigBubbles(m, gen), "parsing rules").apply(defWithConfig);
         return parsedDef;
     }
 
-    private Module resolveNonConfigBubbles(Module module, RuleGrammarGenerator gen) {
-        if (stream(module.localSentences())
+    private boolean hasNonConfigBubbles(Module module) {
+        return stream(module.localSentences())
                 .filter(s -> s instanceof Bubble)
                 .map(b -> (Bubble) b)
-                .filter(b -> !b.sentenceType().equals("config")).count() == 0)
+                .anyMatch(b -> !b.sentenceType().equals("config"));
+    }
+
+    private Module resolveNonConfigBubbles(Module module, RuleGrammarGenerator gen) {
+        if (!hasNonConfigBubbles(module))
             return module;
         Module ruleParserModule = gen.getRuleGrammar(module);
 
         ParseCache cache = loadCache(ruleParserModule);
-        ParseInModule parser = gen.getCombinedGrammar(cache.getModule());
+        ParseInModule parser = cache.getParser(gen);
 
         Set<Sentence> ruleSet = stream(module.localSentences())
                 .parallel()
@@ -292,12 +304,12 @@ public class DefinitionParsing {
     }
 
     private ParseCache loadCache(Module parser) {
-        ParseCache cachedParser = caches.get(parser.name());
-        if (cachedParser == null || !equalsSyntax(cachedParser.getModule(), parser) || cachedParser.isStrict() != isStrict) {
-            cachedParser = new ParseCache(parser, isStrict, java.util.Collections.synchronizedMap(new HashMap<>()));
-            caches.put(parser.name(), cachedParser);
-        }
-        return cachedParser;
+        return caches.compute(parser.name(), (name, cachedParser) -> {
+            if (cachedParser == null || !equalsSyntax(cachedParser.getModule(), parser) || cachedParser.isStrict() != isStrict) {
+                return new ParseCache(parser, isStrict, java.util.Collections.synchronizedMap(new HashMap<>()));
+            }
+            return cachedParser;
+        });
     }
 
     private boolean equalsSyntax(Module _this, Module that) {
@@ -310,13 +322,13 @@ public class DefinitionParsing {
 
     private Stream<? extends K> parseBubble(Module module, Bubble b) {
         ParseCache cache = loadCache(gen.getConfigGrammar(module));
-        ParseInModule parser = gen.getCombinedGrammar(cache.getModule());
+        ParseInModule parser = cache.getParser(gen);
         return performParse(cache.getCache(), parser, b);
     }
 
     private ParseInModule getParser(Module module) {
         ParseCache cache = loadCache(gen.getConfigGrammar(module));
-        return gen.getCombinedGrammar(cache.getModule());
+        return cache.getParser(gen);
     }
 
     private Stream<? extends K> performParse(Map<String, ParsedSentence> cache, ParseInModule parser, Bubble b) {
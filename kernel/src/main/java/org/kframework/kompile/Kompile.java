@@ -39,10 +39,12 @@ import org.kframework.utils.errorsystem.KEMException;
 import org.kframework.utils.errorsystem.KExceptionManager;
 import org.kframework.utils.file.FileUtil;
 import org.kframework.utils.file.JarInfo;
+import scala.Function1;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
@@ -134,6 +136,19 @@ public class Kompile {
     }
 
     public Function<Definition, Definition> defaultSteps() {
+        return def -> {
+            for (Function1<Definition, Definition> stage : defaultStages().values()) {
+                def = stage.apply(def);
+            }
+            return def;
+        };
+    }
+
+    /**
+     * The passes of {@link #defaultSteps}, by name, in the order in which they are applied, so that they can also be
+     * applied and measured separately.
+     */
+    public LinkedHashMap<String, Function1<Definition, Definition>> defaultStages() {
         DefinitionTransformer resolveStrict = DefinitionTransformer.from(new ResolveStrict(kompileOptions)::resolve, "resolving strict and seqstrict attributes");
         DefinitionTransformer resolveHeatCoolAttribute = DefinitionTransformer.fromSentenceTransformer(new ResolveHeatCoolAttribute(new HashSet<>(kompileOptions.transition))::resolve, "resolving heat and cool attributes");
         DefinitionTransformer resolveAnonVars = DefinitionTransformer.fromSentenceTransformer(new ResolveAnonVar()::resolve, "resolving \"_\" vars");
@@ -141,19 +156,20 @@ public class Kompile {
                 DefinitionTransformer.fromSentenceTransformer(new ResolveSemanticCasts(kompileOptions.backend.equals(Backends.JAVA))::resolve, "resolving semantic casts");
         DefinitionTransformer generateSortPredicateSyntax = DefinitionTransformer.from(new GenerateSortPredicateSyntax()::gen, "adding sort predicate productions");
 
-        return def -> func(this::resolveIOStreams)
-                .andThen(resolveStrict)
-                .andThen(resolveAnonVars)
-                .andThen(func(d -> new ResolveContexts(kompileOptions).resolve(d)))
-                .andThen(resolveHeatCoolAttribute)
-                .andThen(resolveSemanticCasts)
-                .andThen(generateSortPredicateSyntax)
-                .andThen(func(this::resolveFreshConstants))
-                .andThen(func(AddImplicitComputationCell::transformDefinition))
-                .andThen(new Strategy(kompileOptions.experimental.heatCoolStrategies).addStrategyCellToRulesTransformer())
-                .andThen(func(ConcretizeCells::transformDefinition))
-                .andThen(func(this::addSemanticsModule))
-                .apply(def);
+        LinkedHashMap<String, Function1<Definition, Definition>> stages = new LinkedHashMap<>();
+        stages.put("resolveIOStreams", func(this::resolveIOStreams));
+        stages.put("resolveStrict", resolveStrict);
+        stages.put("resolveAnonVars", resolveAnonVars);
+        stages.put("resolveContexts", func(d -> new ResolveContexts(kompileOptions).resolve(d)));
+        stages.put("resolveHeatCoolAttribute", resolveHeatCoolAttribute);
+        stages.put("resolveSemanticCasts", resolveSemanticCasts);
+        stages.put("generateSortPredicateSyntax", generateSortPredicateSyntax);
+        stages.put("resolveFreshConstants", func(this::resolveFreshConstants));
+        stages.put("addImplicitComputationCell", func(AddImplicitComputationCell::transformDefinition));
+        stages.put("addStrategyCell", new Strategy(kompileOptions.experimental.heatCoolStrategies).addStrategyCellToRulesTransformer());
+        stages.put("concretizeCells", func(ConcretizeCells::transformDefinition));
+        stages.put("addSemanticsModule", func(this::addSemanticsModule));
+        return stages;
     }
 
     public Rule parseAndCompileRule(CompiledDefinition compiledDef, String contents, Source source, Optional<Rule> parsedRule) {
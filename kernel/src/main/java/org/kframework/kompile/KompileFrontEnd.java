@@ -67,6 +67,8 @@ public class KompileFrontEnd extends FrontEnd {
 
         Kompile kompile = new Kompile(options, files, kem, sw);
         CompiledDefinition def = kompile.run(options.outerParsing.mainDefinitionFile(files), options.mainModule(files), options.syntaxModule(files), koreBackend.get().steps(kompile));
+        // generate the program parser now, so it is saved with the definition instead of being rebuilt by every krun
+        def.getProgramParser(kem);
         loader.saveOrDie(files.resolveKompiled("compiled.bin"), def);
         koreBackend.get().accept(def);
         loader.saveOrDie(files.resolveKompiled("timestamp"), "");
@@ -1,6 +1,7 @@
 // Copyright (c) 2015-2016 K Team. All Rights Reserved.
 package org.kframework.krun;
 
+import org.apache.commons.io.output.CloseShieldOutputStream;
 import org.apache.commons.lang3.tuple.Pair;
 import org.kframework.attributes.Source;
 import org.kframework.builtin.Sorts;
@@ -24,6 +25,7 @@ import org.kframework.rewriter.Rewriter;
 import org.kframework.unparser.AddBrackets;
 import org.kframework.unparser.KOREToTreeNodes;
 import org.kframework.unparser.OutputModes;
+import org.kframework.unparser.ParallelUnparser;
 import org.kframework.unparser.ToBinary;
 import org.kframework.unparser.ToKast;
 import org.kframework.utils.errorsystem.KEMException;
@@ -33,10 +35,16 @@ import org.kframework.utils.errorsystem.ParseFailedException;
 import org.kframework.utils.file.FileUtil;
 import scala.Tuple2;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -86,7 +94,7 @@ public class KRun {
         Object result = executionMode.execute(program, rewriter, compiledDef);
 
         if (result instanceof K) {
-            prettyPrint(compiledDef, options.output, s -> outputFile(s, options), (K) result);
+            prettyPrint(compiledDef, options, (K) result);
             if (options.exitCodePattern != null) {
                 Rule exitCodePattern = compilePattern(files, kem, options.exitCodePattern, options, compiledDef, Source.apply("<command line: --exit-code>"));
                 List<? extends Map<? extends KVariable, ? extends K>> res = rewriter.match((K) result, exitCodePattern);
@@ -95,7 +103,7 @@ public class KRun {
         } else if (result instanceof Tuple2) {
             Tuple2<?, ?> tuple = (Tuple2<?, ?>) result;
             if (tuple._1() instanceof K && tuple._2() instanceof Integer) {
-                prettyPrint(compiledDef, options.output, s -> outputFile(s, options), (K) tuple._1());
+                prettyPrint(compiledDef, options, (K) tuple._1());
                 return (Integer) tuple._2();
             }
             if (tuple._1() instanceof SearchResult && tuple._2() instanceof Integer) {
@@ -116,13 +124,13 @@ public class KRun {
     }
 
     private void printSearchResult(SearchResult result, KRunOptions options, CompiledDefinition compiledDef) {
+        if (result.isStreamed()) {
+            printStreamedSearchResult(result, options, compiledDef);
+            return;
+        }
         Set<Map<? extends KVariable, ? extends K>> searchResult = ((SearchResult) result).getSearchList().stream()
                 .map(subst -> filterAnonymousVariables(subst, result.getParsedRule()))
                 .collect(Collectors.toSet());
-        outputFile("Search results:\n\n", options);
-        if (searchResult.isEmpty()) {
-            outputFile("No search results \n", options);
-        }
         int i = 1;
         List<String> results = new ArrayList<>();
         for (Map<? extends KVariable, ? extends K> substitution : searchResult) {
@@ -131,14 +139,50 @@ public class KRun {
             //Note that this is actually unsafe, but we are here assuming that --search is not used with --output binary
             results.add(new String(sb.toByteArray()));
         }
+        // the solutions are sorted by their text, so they have to be printed before being written out
         Collections.sort(results);
-        StringBuilder sb = new StringBuilder();
-        for (String solution : results) {
-            sb.append("Solution ").append(i++).append(":\n");
-            sb.append(solution);
-            sb.append("\n");
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(openOutputFile(options)))) {
+            out.write("Search results:\n\n");
+            if (searchResult.isEmpty()) {
+                out.write("No search results \n");
+            }
+            for (String solution : results) {
+                out.write("Solution " + i++ + ":\n");
+                out.write(solution);
+                out.write("\n");
+            }
+        } catch (IOException e) {
+            throw KEMException.internalError(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Prints every solution as soon as the search finds it, without sorting or deduplicating them.
+     */
+    private void printStreamedSearchResult(SearchResult result, KRunOptions options, CompiledDefinition compiledDef) {
+        try (OutputStream out = openOutputFile(options)) {
+            out.write("Search results:\n\n".getBytes());
+            int[] i = {0};
+            result.forEachResult(substitution -> {
+                ByteArrayOutputStream sb = new ByteArrayOutputStream();
+                byte[] header = ("Solution " + ++i[0] + ":\n").getBytes();
+                sb.write(header, 0, header.length);
+                prettyPrintSubstitution(filterAnonymousVariables(substitution, result.getParsedRule()), result.getParsedRule(), compiledDef, options.output, v -> sb.write(v, 0, v.length));
+                sb.write('\n');
+                try {
+                    sb.writeTo(out);
+                    out.flush();
+                } catch (IOException e) {
+                    throw KEMException.internalError(e.getMessage(), e);
+                }
+                return true;
+            });
+            if (i[0] == 0) {
+                out.write("No search results \n".getBytes());
+            }
+        } catch (IOException e) {
+            throw KEMException.internalError(e.getMessage(), e);
         }
-        outputFile(sb.toString(), options);
     }
 
     /**
@@ -172,20 +216,23 @@ public class KRun {
         return vars.iterator().next();
     }
 
-    //TODO(dwightguth): use Writer
-    public void outputFile(String output, KRunOptions options) {
-        outputFile(output.getBytes(), options);
-    }
-
-    public void outputFile(byte[] output, KRunOptions options) {
+    /**
+     * @return A stream writing to the output file given by the options, or to standard output if there is none.
+     * Closing the stream does not close standard output.
+     */
+    private OutputStream openOutputFile(KRunOptions options) throws IOException {
         if (options.outputFile == null) {
-            try {
-                System.out.write(output);
-            } catch (IOException e) {
-                throw KEMException.internalError(e.getMessage(), e);
-            }
+            return new CloseShieldOutputStream(System.out);
         } else {
-            files.saveToWorkingDirectory(options.outputFile, output);
+            return new BufferedOutputStream(new FileOutputStream(files.resolveWorkingDirectory(options.outputFile)));
+        }
+    }
+
+    private void prettyPrint(CompiledDefinition compiledDef, KRunOptions options, K result) {
+        try (OutputStream out = openOutputFile(options)) {
+            prettyPrint(compiledDef, options.output, out, result);
+        } catch (IOException e) {
+            throw KEMException.internalError(e.getMessage(), e);
         }
     }
 
@@ -218,22 +265,44 @@ public class KRun {
     }
 
     public static void prettyPrint(CompiledDefinition compiledDef, OutputModes output, Consumer<byte[]> print, K result) {
-        switch (output) {
-        case KAST:
-            print.accept((ToKast.apply(result) + "\n").getBytes());
-            break;
-        case NONE:
-            print.accept("".getBytes());
-            break;
-        case PRETTY:
-            Module unparsingModule = compiledDef.getExtensionModule(compiledDef.languageParsingModule());
-            print.accept((unparseTerm(result, unparsingModule) + "\n").getBytes());
-            break;
-        case BINARY:
-            print.accept(ToBinary.apply(result));
-            break;
-        default:
-            throw KEMException.criticalError("Unsupported output mode: " + output);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        prettyPrint(compiledDef, output, out, result);
+        print.accept(out.toByteArray());
+    }
+
+    /**
+     * Writes the term to out in the given output mode as it is unparsed, so the whole output
+     * never has to be held in memory.
+     */
+    public static void prettyPrint(CompiledDefinition compiledDef, OutputModes output, OutputStream out, K result) {
+        try {
+            switch (output) {
+            case KAST: {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out));
+                ToKast.apply(result, writer);
+                writer.write("\n");
+                writer.flush();
+                break;
+            }
+            case NONE:
+                break;
+            case PRETTY: {
+                Module unparsingModule = compiledDef.getExtensionModule(compiledDef.languageParsingModule());
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out));
+                unparseTerm(result, unparsingModule, writer);
+                writer.write("\n");
+                writer.flush();
+                break;
+            }
+            case BINARY:
+                ToBinary.apply(out, result);
+                out.flush();
+                break;
+            default:
+                throw KEMException.criticalError("Unsupported output mode: " + output);
+            }
+        } catch (IOException e) {
+            throw KEMException.internalError(e.getMessage(), e);
         }
     }
 
@@ -354,10 +423,10 @@ public class KRun {
         return KApply(compiledDef.topCellInitializer, output.entrySet().stream().map(e -> KApply(KLabel("_|->_"), e.getKey(), e.getValue())).reduce(KApply(KLabel(".Map")), (a, b) -> KApply(KLabel("_Map_"), a, b)));
     }
 
-    private static String unparseTerm(K input, Module test) {
-        return KOREToTreeNodes.toString(
+    private static void unparseTerm(K input, Module test, Appendable out) throws IOException {
+        ParallelUnparser.unparse(
                 new AddBrackets(test).addBrackets((ProductionReference)
-                        KOREToTreeNodes.apply(KOREToTreeNodes.up(test, input), test)));
+                        KOREToTreeNodes.apply(KOREToTreeNodes.up(test, input), test)), out);
     }
 
     public K externalParse(String parser, String value, Sort startSymbol, Source source, CompiledDefinition compiledDef) {
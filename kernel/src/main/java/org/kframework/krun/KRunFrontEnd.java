@@ -10,6 +10,9 @@ import org.kframework.krun.modes.ExecutionMode;
 import org.kframework.main.FrontEnd;
 import org.kframework.main.GlobalOptions;
 import org.kframework.rewriter.Rewriter;
+import org.kframework.utils.Metrics;
+import org.kframework.utils.RuleProfiler;
+import org.kframework.utils.errorsystem.KEMException;
 import org.kframework.utils.errorsystem.KExceptionManager;
 import org.kframework.utils.file.FileUtil;
 import org.kframework.utils.file.JarInfo;
@@ -86,6 +89,17 @@ public class KRunFrontEnd extends FrontEnd {
      * @return the exit code returned from executing krun.
      */
     public int run() {
+        if (krunOptions.experimental.profileRules != null && krunOptions.experimental.profileRulesSampling < 1) {
+            throw KEMException.criticalError("--profile-rules-sampling must be at least 1.");
+        }
+        if (krunOptions.experimental.profileRules != null) {
+            RuleProfiler.beginRun(krunOptions.experimental.profileRulesSampling);
+        }
+        // kserver --metrics keeps the metrics enabled after the run
+        boolean metrics = krunOptions.experimental.metrics != null || krunOptions.experimental.statistics;
+        if (metrics) {
+            Metrics.beginRun();
+        }
         scope.enter(kompiledDir.get());
         try {
             for (int i = 0; i < krunOptions.experimental.profile - 1; i++) {
@@ -100,6 +114,22 @@ public class KRunFrontEnd extends FrontEnd {
                     executionMode.get());
         } finally {
             scope.exit();
+            if (metrics) {
+                Metrics.endRun();
+            }
+            if (krunOptions.experimental.metrics != null) {
+                files.saveToWorkingDirectory(krunOptions.experimental.metrics, Metrics.toJson());
+            }
+            if (krunOptions.experimental.profileRules != null) {
+                try {
+                    files.saveToWorkingDirectory(krunOptions.experimental.profileRules, RuleProfiler.report());
+                    files.saveToWorkingDirectory(krunOptions.experimental.profileRules + ".folded",
+                            RuleProfiler.collapsedStacks());
+                } finally {
+                    // after the reports, so that a run beginning meanwhile does not clear the profile
+                    RuleProfiler.endRun();
+                }
+            }
         }
     }
 }
@@ -255,6 +255,14 @@ public final class KRunOptions {
             return debugger;
         }
 
+        @Parameter(names="--debugger-checkpoints-in-memory", description="Number of most recent checkpoints of each debugger state " +
+                "to keep in memory. Older checkpoints are saved to a temporary file. Negative keeps all of them in memory.")
+        public int debuggerCheckpointsInMemory = -1;
+
+        @Parameter(names="--stream-search", description="Print search results as soon as they are found, in the order " +
+                "they are found, instead of sorting them when the search ends. A solution found in several states is printed once for each.")
+        public boolean streamSearch = false;
+
         @Parameter(names="--ltlmc", description="Specify the formula for model checking at the commandline.")
         public String ltlmc;
 
@@ -277,6 +285,11 @@ public final class KRunOptions {
         @Parameter(names="--coverage-file", description="Record a trace of locations of all rules and terms applied.")
         public File coverage = null;
 
+        @Parameter(names="--coverage-histogram", description="Record in the coverage file the number of times each " +
+                "location was applied, in binary, instead of a line for each time. The counts are added to those " +
+                "already in the file.")
+        public boolean coverageHistogram = false;
+
         @Parameter(names="--native-libraries", description="Native libraries to link the rewrite engine against. Useful in defining rewriter plugins.",
                 listConverter=StringListConverter.class)
         public List<String> nativeLibraries = Collections.emptyList();
@@ -287,5 +300,18 @@ public final class KRunOptions {
 
         @Parameter(names="--profile", description="Run krun multiple times to gather better performance metrics.")
         public int profile = 1;
+
+        @Parameter(names="--metrics", description="Write the counters and timers of the rewrite engine to the file, " +
+                "in JSON. In kserver, they include those of the other krun processes using the server.")
+        public String metrics;
+
+        @Parameter(names="--profile-rules", description="Write the cost of each rule to the file, the most " +
+                "expensive first, and the same costs to the file with the extension .folded, in the collapsed stack " +
+                "format of flame graphs.")
+        public String profileRules;
+
+        @Parameter(names="--profile-rules-sampling", description="Time one in n side conditions and " +
+                "right-hand sides, chosen at random, when profiling rules with --profile-rules.")
+        public int profileRulesSampling = 16;
     }
 }
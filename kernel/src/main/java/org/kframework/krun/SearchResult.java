@@ -9,6 +9,8 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * Created by manasvi on 9/4/15.
@@ -16,6 +18,7 @@ import java.util.Optional;
  */
 public class SearchResult {
     private List<? extends Map<? extends KVariable, ? extends K>> searchList;
+    private Consumer<Predicate<Map<? extends KVariable, ? extends K>>> streamedSearch;
     private Rule parsedRule;
 
     public SearchResult(List<? extends Map<? extends KVariable, ? extends K>> searchList, Rule parsedRule) {
@@ -23,6 +26,34 @@ public class SearchResult {
         this.parsedRule = parsedRule;
     }
 
+    /**
+     * A search which has not run yet, and passes its results to a consumer as they are found.
+     * @param streamedSearch Runs the search, calling its argument on every result until it returns false.
+     */
+    public SearchResult(Consumer<Predicate<Map<? extends KVariable, ? extends K>>> streamedSearch, Rule parsedRule) {
+        this.streamedSearch = streamedSearch;
+        this.parsedRule = parsedRule;
+    }
+
+    public boolean isStreamed() {
+        return streamedSearch != null;
+    }
+
+    /**
+     * Passes the results to the consumer until it returns false, running the search if it is streamed.
+     */
+    public void forEachResult(Predicate<Map<? extends KVariable, ? extends K>> consumer) {
+        if (streamedSearch != null) {
+            streamedSearch.accept(consumer);
+        } else {
+            for (Map<? extends KVariable, ? extends K> result : searchList) {
+                if (!consumer.test(result)) {
+                    return;
+                }
+            }
+        }
+    }
+
     public List<? extends Map<? extends KVariable, ? extends K>> getSearchList() {
         return searchList == null ? null : Collections.unmodifiableList(searchList);
 
@@ -85,40 +85,41 @@ public class DebugExecutionMode implements ExecutionMode<Void> {
 
     @Override
     public Void execute(K k, Rewriter rewriter, CompiledDefinition compiledDefinition) {
-        KDebug debugger = new KoreKDebug(k, rewriter, checkpointInterval, files, kem, kRunOptions, compiledDefinition);
-        ConsoleReader reader = getConsoleReader();
-        while (true) {
-            try {
-                String input = reader.readLine("KDebug> ");
-                if (input == null) {
-                    //User pressed Ctrl + D
+        try (KDebug debugger = new KoreKDebug(k, rewriter, checkpointInterval, files, kem, kRunOptions, compiledDefinition)) {
+            ConsoleReader reader = getConsoleReader();
+            while (true) {
+                try {
+                    String input = reader.readLine("KDebug> ");
+                    if (input == null) {
+                        //User pressed Ctrl + D
+                        return null;
+                    }
+                    if (input.isEmpty()) {
+                        continue;
+                    }
+                    Command command = parseCommand(input);
+                    if (command instanceof Commands.QuitCommand) {
+                        break;
+                    }
+                    if (command instanceof Commands.SourceCommand) {
+                        String source = ((Commands.SourceCommand) command).getSourceFile();
+                        processSourceCommand(source, debugger, compiledDefinition);
+                        System.out.println("File " + source + " Sourced");
+                    }
+                    command.runCommand(debugger, compiledDefinition, false);
+                } catch (KEMException e) {
+                    System.out.println(e.getMessage());
+                } catch (ParseException parseException) {
+                    System.out.println(parseException.getMessage());
+                } catch (NumberFormatException numberException) {
+                    System.out.println("Could not parse \"foo\" as number");
+                } catch (FileNotFoundException fileNotFound) {
+                    System.out.println(fileNotFound.getMessage());
+                } catch (IOException inputException) {
+                    KEMException.criticalError("Failed to read input from console");
+                } catch (UserInterruptException interrupt) {
                     return null;
                 }
-                if (input.isEmpty()) {
-                    continue;
-                }
-                Command command = parseCommand(input);
-                if (command instanceof Commands.QuitCommand) {
-                    break;
-                }
-                if (command instanceof Commands.SourceCommand) {
-                    String source = ((Commands.SourceCommand) command).getSourceFile();
-                    processSourceCommand(source, debugger, compiledDefinition);
-                    System.out.println("File " + source + " Sourced");
-                }
-                command.runCommand(debugger, compiledDefinition, false);
-            } catch (KEMException e) {
-                System.out.println(e.getMessage());
-            } catch (ParseException parseException) {
-                System.out.println(parseException.getMessage());
-            } catch (NumberFormatException numberException) {
-                System.out.println("Could not parse \"foo\" as number");
-            } catch (FileNotFoundException fileNotFound) {
-                System.out.println(fileNotFound.getMessage());
-            } catch (IOException inputException) {
-                KEMException.criticalError("Failed to read input from console");
-            } catch (UserInterruptException interrupt) {
-                return null;
             }
         }
         return null;
@@ -51,6 +51,10 @@ public class KRunExecutionMode implements ExecutionMode {
                 pattern = new Rule(KORE.KVariable("X"), BooleanUtils.TRUE, BooleanUtils.TRUE, KORE.Att());
                 parsedPattern = pattern;
             }
+            if (kRunOptions.experimental.streamSearch) {
+                Rule searchPattern = pattern;
+                return new SearchResult(consumer -> rewriter.search(k, Optional.ofNullable(kRunOptions.depth), Optional.ofNullable(kRunOptions.bound), searchPattern, kRunOptions.searchType(), consumer), parsedPattern);
+            }
             return new SearchResult(rewriter.search(k, Optional.ofNullable(kRunOptions.depth), Optional.ofNullable(kRunOptions.bound), pattern, kRunOptions.searchType()), parsedPattern);
         }
         if (kRunOptions.exitCodePattern != null) {
@@ -12,6 +12,7 @@ import org.fusesource.jansi.AnsiConsole;
 import org.fusesource.jansi.AnsiOutputStream;
 import org.kframework.main.FrontEnd;
 import org.kframework.main.Main;
+import org.kframework.utils.Metrics;
 import org.kframework.utils.errorsystem.KExceptionManager;
 import org.kframework.utils.file.FileUtil;
 import org.kframework.utils.file.JarInfo;
@@ -65,6 +66,9 @@ public class KServerFrontEnd extends FrontEnd {
         for (String tool : tools) {
             injectors.put(tool, Main.getInjector(tool));
         }
+        if (options.metrics) {
+            Metrics.enable();
+        }
         NGServer server = new NGServer(InetAddress.getLoopbackAddress(), options.port);
         Thread t = new Thread(server);
         instance = this;
@@ -0,0 +1,28 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.kserver;
+
+import org.kframework.utils.Metrics;
+
+import com.martiansoftware.nailgun.NGContext;
+
+import java.util.Arrays;
+
+/**
+ * Prints the {@link Metrics} of a running kserver, started with --metrics, in JSON.
+ * With --reset, they are then set back to zero, so that the next call only reports what happened in between.
+ */
+public class KServerMetrics {
+
+    public static void nailMain(NGContext context) {
+        if (!Metrics.isEnabled()) {
+            context.err.println("Metrics are not collected. Start kserver with --metrics to collect them.");
+            context.exit(1);
+            return;
+        }
+        context.out.print(Metrics.toJson());
+        context.out.flush();
+        if (Arrays.asList(context.getArgs()).contains("--reset")) {
+            Metrics.reset();
+        }
+    }
+}
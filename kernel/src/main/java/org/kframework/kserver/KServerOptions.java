@@ -15,4 +15,8 @@ public class KServerOptions {
 
     @Parameter(names={"--port", "-p"}, description="The port to start the server on.")
     public int port = 2113;
+
+    @Parameter(names="--metrics", description="Collect the counters and timers of the rewrite engine, " +
+            "which kserver-metrics prints.")
+    public boolean metrics = false;
 }
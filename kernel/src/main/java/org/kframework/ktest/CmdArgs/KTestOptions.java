@@ -131,6 +131,27 @@ public class KTestOptions {
             validateValueWith=PositiveInteger.class)
     private int threads = Runtime.getRuntime().availableProcessors();
 
+    /**
+     * Number of ktest processes to split the tests between.
+     */
+    @Parameter(names="--shards", description="Split the tests into this many shards, balanced by the " +
+                        "durations of previous runs, and run each shard in a ktest process of its own. " +
+                        "The threads of --threads are divided between the shards.",
+            validateValueWith=PositiveInteger.class)
+    private int shards = 1;
+
+    /**
+     * Index of the shard run by this process, set in the processes started by --shards.
+     */
+    @Parameter(names="--shard", hidden=true)
+    private Integer shard;
+
+    /**
+     * Directory shared by the processes started by --shards.
+     */
+    @Parameter(names="--shard-dir", hidden=true)
+    private String shardDir;
+
     /**
      * Generate a junit-like report.
      */
@@ -182,6 +203,29 @@ public class KTestOptions {
                 "command to be executed without actual execution.")
     public boolean dry = false;
 
+    /**
+     * Run krun steps inside the ktest JVM.
+     */
+    @Parameter(names="--in-process", description="Run krun steps inside the ktest JVM, keeping the definitions " +
+                "loaded between programs, instead of starting a new process for each program.")
+    private boolean inProcess = false;
+
+    /**
+     * File with the durations of the steps in previous runs.
+     */
+    @Parameter(names="--timings", description="File in which the durations of the steps are kept between runs, " +
+                "so that the longest steps can be started first.")
+    private String timings = ".ktest-timings";
+
+    /**
+     * Skip the steps which succeeded in previous runs with the same inputs.
+     */
+    @Parameter(names="--incremental", description="Skip the kompile and krun steps which succeeded in a previous " +
+                "run with --incremental on the same definition sources, programs, input and output files and " +
+                "arguments, and report them as succeeded. The results are kept in .ktest-results. Ignored with " +
+                "--update-out and --generate-out.")
+    private boolean incremental = false;
+
     /**
      * Enable debugging. When enabled, KTest passes --debug to spawned processes.
      */
@@ -208,6 +252,9 @@ public class KTestOptions {
         this.excludes = obj.excludes;
         this.skips = obj.skips;
         this.threads = obj.threads;
+        this.shards = obj.shards;
+        this.shard = obj.shard;
+        this.shardDir = obj.shardDir;
         this.generateReport = obj.generateReport;
         this.parameters = obj.parameters;
         this.global = obj.global;
@@ -218,6 +265,9 @@ public class KTestOptions {
         this.ignoreWS = obj.ignoreWS;
         this.ignoreBalancedParens = obj.ignoreBalancedParens;
         this.dry = obj.dry;
+        this.inProcess = obj.inProcess;
+        this.timings = obj.timings;
+        this.incremental = obj.incremental;
         this.debug = obj.debug;
         this.warnings2errors = obj.warnings2errors;
     }
@@ -327,8 +377,36 @@ public class KTestOptions {
         return debug;
     }
 
+    public boolean getInProcess() {
+        return inProcess;
+    }
+
+    public String getTimings() {
+        return timings;
+    }
+
+    public boolean getIncremental() {
+        return incremental && !updateOut && !generateOut;
+    }
+
     public int getThreads() {
-        return threads;
+        return shard == null ? threads : Math.max(1, threads / shards);
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    /**
+     * @return the index of the shard run by this process, or null if it is not one of the processes started by
+     * --shards.
+     */
+    public Integer getShard() {
+        return shard;
+    }
+
+    public String getShardDir() {
+        return shardDir;
     }
 
     public boolean isWarnings2errors() {
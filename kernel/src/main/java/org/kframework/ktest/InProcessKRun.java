@@ -0,0 +1,130 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.ktest;
+
+import com.google.inject.Injector;
+import com.martiansoftware.nailgun.ThreadLocalInputStream;
+import com.martiansoftware.nailgun.ThreadLocalPrintStream;
+import org.kframework.main.Main;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs krun inside the ktest JVM, the way kserver does, instead of starting a new JVM for each program.
+ *
+ * Each ktest worker thread has its own krun injector. Its definition scope keeps the definitions loaded for the
+ * previous programs of the worker, one per kompiled directory, along with everything derived from them. Each program
+ * runs in a thread of its own, with System.in, System.out and System.err redirected to it, so that it can be
+ * interrupted when it times out. A program which does not stop when interrupted cannot be killed safely inside the
+ * JVM, so it is left running as a daemon thread, its run fails with a timeout, and the programs of the same definition
+ * are run as processes from then on (see {@link #isSupported}).
+ */
+final class InProcessKRun {
+
+    /**
+     * How long a program which timed out has to react to being interrupted before it is stopped.
+     */
+    private static final long GRACE_PERIOD = 1000;
+
+    /* the definitions, by working directory and --directory, of the programs which ignored an interruption */
+    private static final Set<String> unresponsive = ConcurrentHashMap.newKeySet();
+
+    private static final ThreadLocal<Injector> injectors = ThreadLocal.withInitial(() -> Main.getInjector("-krun"));
+
+    private static ThreadLocalInputStream in;
+    private static ThreadLocalPrintStream out;
+    private static ThreadLocalPrintStream err;
+
+    private InProcessKRun() {}
+
+    /**
+     * Redirects the standard streams through thread-local streams, which keep going to the original streams except
+     * in the threads running krun.
+     */
+    private static synchronized void install() {
+        if (out == null) {
+            in = new ThreadLocalInputStream(System.in);
+            out = new ThreadLocalPrintStream(System.out);
+            err = new ThreadLocalPrintStream(System.err);
+            System.setIn(in);
+            System.setOut(out);
+            System.setErr(err);
+        }
+    }
+
+    /**
+     * @param args the arguments of krun, not including krun itself.
+     * @return false if a program of the same definition did not stop when it timed out, in which case the program
+     * should be run as a process.
+     */
+    static boolean isSupported(String[] args, File workingDir) {
+        return !unresponsive.contains(definition(args, workingDir));
+    }
+
+    private static String definition(String[] args, File workingDir) {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals("-d") || args[i].equals("--directory")) {
+                File dir = new File(args[i + 1]);
+                return (dir.isAbsolute() ? dir : new File(workingDir, args[i + 1])).getAbsolutePath();
+            }
+        }
+        return workingDir.getAbsolutePath();
+    }
+
+    /**
+     * @param args the arguments of krun, not including krun itself.
+     * @param timeout in milliseconds.
+     */
+    static ProcOutput run(String[] args, File workingDir, Map<String, String> env, String input, long timeout)
+            throws InterruptedException {
+        install();
+        Injector injector = injectors.get();
+        Map<String, String> krunEnv = new HashMap<>(env);
+        // the standard streams of the program are never terminals
+        krunEnv.put("NAILGUN_TTY_0", "0");
+        krunEnv.put("NAILGUN_TTY_1", "0");
+        krunEnv.put("NAILGUN_TTY_2", "0");
+
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+        int[] returnCode = {1};
+        Thread thread = new Thread(() -> {
+            in.init(new ByteArrayInputStream(input == null ? new byte[0] : input.getBytes()));
+            out.init(new PrintStream(stdout, true));
+            err.init(new PrintStream(stderr, true));
+            try {
+                returnCode[0] = injector.getInstance(Main.class).runApplication("-krun", args, workingDir, krunEnv);
+            } catch (Throwable e) {
+                // like an uncaught exception in the JVM of a krun process
+                e.printStackTrace();
+            } finally {
+                System.out.flush();
+                System.err.flush();
+            }
+        }, "krun " + String.join(" ", args));
+        // so that a program which ignores interruption does not keep the JVM alive
+        thread.setDaemon(true);
+        thread.start();
+        thread.join(timeout);
+        if (!thread.isAlive()) {
+            return new ProcOutput(stdout.toString(), stderr.toString(), returnCode[0], false);
+        }
+
+        thread.interrupt();
+        thread.join(GRACE_PERIOD);
+        if (thread.isAlive()) {
+            // krun does not check for interruption everywhere, and stopping the thread could leave shared state
+            // corrupted, so it is left running and the definition is not run in this JVM any more
+            unresponsive.add(definition(args, workingDir));
+        }
+        // the definitions of this worker may have been left in an inconsistent state, so load them again
+        injectors.remove();
+        return new ProcOutput(null, null, 1, true);
+    }
+}
@@ -18,6 +18,7 @@ import org.kframework.utils.file.JarInfo;
 import org.kframework.utils.inject.JCommanderModule;
 import org.kframework.utils.inject.JCommanderModule.ExperimentalUsage;
 import org.kframework.utils.inject.JCommanderModule.Usage;
+import org.kframework.utils.inject.Options;
 import org.kframework.utils.inject.CommonModule;
 import org.xml.sax.SAXException;
 
@@ -47,6 +48,7 @@ public class KTestFrontEnd extends FrontEnd {
     private final KExceptionManager kem;
     private final Map<String, String> env;
     private final FileUtil files;
+    private final String[] args;
 
     @Inject
     KTestFrontEnd(
@@ -57,7 +59,8 @@ public class KTestFrontEnd extends FrontEnd {
             @ExperimentalUsage String experimentalUsage,
             JarInfo jarInfo,
             @Environment Map<String, String> env,
-            FileUtil files) {
+            FileUtil files,
+            @Options String[] args) {
         super(kem, globalOptions, usage, experimentalUsage, jarInfo, files);
         this.options = options;
         this.options.setDebug(globalOptions.debug);
@@ -65,12 +68,17 @@ public class KTestFrontEnd extends FrontEnd {
         this.kem = kem;
         this.env = env;
         this.files = files;
+        this.args = args;
     }
 
     public int run() {
         try {
             options.validateArgs(files);
-            return makeTestSuite(options.getTargetFile(), options).run() ? 0 : 1;
+            TestSuite testSuite = makeTestSuite(options.getTargetFile(), options);
+            if (options.getShards() > 1 && options.getShard() == null) {
+                return testSuite.runShards(args) ? 0 : 1;
+            }
+            return testSuite.run() ? 0 : 1;
         } catch (SAXException | ParserConfigurationException | IOException | TransformerException
                 | ParameterException e) {
             throw KEMException.criticalError(e.getMessage(), e);
@@ -89,6 +89,11 @@ public class Proc<T> implements Runnable {
 
     private final boolean warnings2errors;
 
+    /**
+     * Run krun inside the ktest JVM instead of starting a process. See {@link InProcessKRun}.
+     */
+    private final boolean inProcess;
+
     /**
      * Whether the process succeeded or not.
      */
@@ -126,11 +131,13 @@ public class Proc<T> implements Runnable {
      * @param strComparator comparator object to compare program outputs with expected outputs
      * @param outputFile output file to be updated when --update-out is used
      * @param newOutputFile output file to generated when --generate-out is used
+     * @param inProcess true to run krun inside this JVM, in which case the first argument is only used for logging
      */
     public Proc(T obj, String[] args, File inputFile, String procInput,
                 Annotated<String, File> expectedOut, Annotated<String, File> expectedErr,
                 StringMatcher strComparator, File workingDir, KTestOptions options,
-                File outputFile, File newOutputFile, KExceptionManager kem, Map<String, String> env, boolean warnings2errors) {
+                File outputFile, File newOutputFile, KExceptionManager kem, Map<String, String> env, boolean warnings2errors,
+                boolean inProcess) {
         this.obj = obj;
         this.args = args;
         this.inputFile = inputFile;
@@ -146,6 +153,7 @@ public class Proc<T> implements Runnable {
         this.env = new HashMap<>(env);
         success = options.dry;
         this.warnings2errors = warnings2errors;
+        this.inProcess = inProcess;
         // add the /bin directory to the PATH if not there already
         String binDir = ExecNames.getBinDirectory();
         // windows is case insensitive w.r.t environment variables, so first find the exact match
@@ -161,7 +169,7 @@ public class Proc<T> implements Runnable {
 
     public Proc(T obj, String[] args, File workingDir, KTestOptions options, KExceptionManager kem, Map<String, String> env, boolean warnings2errors) {
         this(obj, args, null, "", null, null, options.getDefaultStringMatcher(), workingDir,
-                options, null, null, kem, env, warnings2errors);
+                options, null, null, kem, env, warnings2errors, false);
     }
 
     @Override
@@ -200,6 +208,15 @@ public class Proc<T> implements Runnable {
         }
     }
 
+    /**
+     * Report the process as succeeded without running it, because it succeeded with the same
+     * inputs in a previous run (see `--incremental').
+     */
+    public void reportCached() {
+        success = true;
+        System.out.format("Cached [%s]%n", toLogString(args));
+    }
+
     private ProcOutput runProc(String[] args) {
         if (options.dry) {
             StringBuilder dryStr = new StringBuilder();
@@ -212,6 +229,19 @@ public class Proc<T> implements Runnable {
                 dryStr.append(" <").append(inputFile);
             System.out.println(dryStr.toString());
             return null;
+        } else if (inProcess && InProcessKRun.isSupported(Arrays.copyOfRange(args, 1, args.length), workingDir)) {
+            try {
+                printRunningMsg(toLogString(args));
+                long startTime = System.currentTimeMillis();
+                ProcOutput output = InProcessKRun.run(Arrays.copyOfRange(args, 1, args.length), workingDir, env,
+                        procInput, options.getTimeout());
+                timeDelta += System.currentTimeMillis() - startTime;
+                return output;
+            } catch (InterruptedException e) {
+                kem.registerInternalWarning(e.getMessage(), e);
+                reportErr("program failed with exception: " + e.getMessage());
+            }
+            return null; // unreachable
         } else {
             ProcessBuilder pb = new ProcessBuilder(args).directory(workingDir);
             pb.environment().clear();
@@ -270,6 +300,10 @@ public class Proc<T> implements Runnable {
         return obj;
     }
 
+    public String[] getArgs() {
+        return args;
+    }
+
     /**
      * @return reason of failure. null when process is not started yet or it's succeeded.
      */
@@ -7,6 +7,8 @@ import org.apache.commons.lang3.StringUtils;
 import org.kframework.utils.errorsystem.KEMException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -23,6 +25,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 public class ReportGen {
 
@@ -32,6 +35,8 @@ public class ReportGen {
 
     private final File junitFolder;
 
+    private static final String SUMMARY = "summary.xml";
+
     public ReportGen(File junitFolder) {
         reports = new HashMap<>();
         this.junitFolder = junitFolder;
@@ -53,11 +58,7 @@ public class ReportGen {
     }
 
     public void save() throws ParserConfigurationException, TransformerException, IOException {
-        if (!junitFolder.isDirectory()) {
-            if (!junitFolder.mkdirs()) {
-                throw KEMException.criticalError("Could not create directory " + junitFolder);
-            }
-        }
+        makeJunitFolder();
 
         DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
         DocumentBuilder db = dbf.newDocumentBuilder();
@@ -74,11 +75,65 @@ public class ReportGen {
 
         Element elem = genSummary(doc, reports);
         File targetFile = new File(junitFolder.getAbsolutePath(),
-                "summary.xml");
+                SUMMARY);
         writeXmlFile(targetFile, elem);
 
     }
 
+    /**
+     * Merge the reports saved by several ktest processes (see `--shards') into one report.
+     * Test suites of the same definition are merged into one test suite.
+     * @param partialFolders folders of the reports to merge, some of which may not exist
+     * @param junitFolder folder of the merged report
+     */
+    public static void merge(List<File> partialFolders, File junitFolder)
+            throws ParserConfigurationException, SAXException, TransformerException, IOException {
+        ReportGen merged = new ReportGen(junitFolder);
+        merged.makeJunitFolder();
+
+        DocumentBuilder db = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        Document doc = db.newDocument();
+
+        Map<String, Element> testSuites = new TreeMap<>();
+        for (File partialFolder : partialFolders) {
+            File[] files = partialFolder.listFiles((dir, name) -> name.endsWith(".xml") && !name.equals(SUMMARY));
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                Element partial = db.parse(file).getDocumentElement();
+                Element testSuiteElem = testSuites.computeIfAbsent(file.getName(), name -> {
+                    Element elem = doc.createElement("testsuite");
+                    elem.setAttribute("name", partial.getAttribute("name"));
+                    return elem;
+                });
+                NodeList testElems = partial.getElementsByTagName("testcase");
+                for (int i = 0; i < testElems.getLength(); i++) {
+                    Element testElem = (Element) doc.importNode(testElems.item(i), true);
+                    testSuiteElem.appendChild(testElem);
+                    if (testElem.getAttribute("status").equals("failed")) {
+                        merged.failures++;
+                    }
+                    merged.count++;
+                }
+            }
+        }
+
+        for (Map.Entry<String, Element> e : testSuites.entrySet()) {
+            merged.writeXmlFile(new File(junitFolder.getAbsolutePath(), e.getKey()), e.getValue());
+        }
+        merged.writeXmlFile(new File(junitFolder.getAbsolutePath(), SUMMARY),
+                merged.genSummary(doc, merged.reports));
+    }
+
+    private void makeJunitFolder() {
+        if (!junitFolder.isDirectory()) {
+            if (!junitFolder.mkdirs()) {
+                throw KEMException.criticalError("Could not create directory " + junitFolder);
+            }
+        }
+    }
+
     private void writeXmlFile(File targetFile, Element elem)
             throws TransformerFactoryConfigurationError, TransformerException, IOException {
         Transformer transformer = TransformerFactory.newInstance().newTransformer();
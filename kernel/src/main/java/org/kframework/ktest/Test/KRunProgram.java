@@ -43,13 +43,7 @@ public class KRunProgram {
      * @return command array to pass process builder
      */
     public String[] getKrunCmd() {
-        List<String> stringArgs = new ArrayList<>();
-        stringArgs.add(ExecNames.getKrun());
-        stringArgs.add(pgmPath);
-        for (PgmArg arg : args) {
-            stringArgs.addAll(arg.toStringList());
-        }
-        String[] argsArr = stringArgs.toArray(new String[stringArgs.size()]);
+        String[] argsArr = getKrunArgs();
         if (OS.current() == OS.WINDOWS) {
             for (int i = 0; i < argsArr.length; i++) {
                 argsArr[i] = StringUtil.escapeShell(argsArr[i], OS.current());
@@ -57,4 +51,17 @@ public class KRunProgram {
         }
         return argsArr;
     }
+
+    /**
+     * @return the krun command, without the escaping needed to pass it to a process
+     */
+    public String[] getKrunArgs() {
+        List<String> stringArgs = new ArrayList<>();
+        stringArgs.add(ExecNames.getKrun());
+        stringArgs.add(pgmPath);
+        for (PgmArg arg : args) {
+            stringArgs.addAll(arg.toStringList());
+        }
+        return stringArgs.toArray(new String[stringArgs.size()]);
+    }
 }
@@ -0,0 +1,97 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.ktest.Test;
+
+import org.apache.commons.io.FileUtils;
+import org.kframework.utils.errorsystem.KEMException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Makes the ktest processes started by --shards kompile each definition only once.
+ *
+ * The process which gets to kompile a definition first holds a lock on a file in the kompiled directory while it
+ * kompiles it, and then leaves the outcome in another file there, tagged with the directory shared by the shards of
+ * the run. The other processes wait for the lock and reuse the outcome instead of kompiling the definition again.
+ */
+final class KompileLock implements Closeable {
+
+    private static final String LOCK = "ktest.lock", DONE = "ktest.done";
+
+    private final File kompiledDir;
+    private final String run;
+    private final RandomAccessFile file;
+    private final FileLock lock;
+
+    private KompileLock(File kompiledDir, String run) throws IOException {
+        this.kompiledDir = kompiledDir;
+        this.run = run;
+        if (!kompiledDir.isDirectory() && !kompiledDir.mkdirs()) {
+            throw new IOException("Could not create directory " + kompiledDir);
+        }
+        file = new RandomAccessFile(new File(kompiledDir, LOCK), "rw");
+        FileChannel channel = file.getChannel();
+        try {
+            lock = channel.lock();
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Blocks until no other shard of the run is kompiling to the directory.
+     * @param run identifies the run, so that the outcomes of previous runs are not reused.
+     */
+    static KompileLock acquire(File kompiledDir, String run) {
+        try {
+            return new KompileLock(kompiledDir, run);
+        } catch (IOException e) {
+            throw KEMException.criticalError("Could not lock " + kompiledDir.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * @return whether another shard of the run succeeded to kompile to the directory, or null if none of them did
+     * it yet.
+     */
+    Boolean result() {
+        File done = new File(kompiledDir, DONE);
+        if (!done.isFile()) {
+            return null;
+        }
+        try {
+            String[] lines = FileUtils.readFileToString(done, StandardCharsets.UTF_8).split("\n");
+            if (lines.length == 2 && lines[0].equals(run)) {
+                return Boolean.valueOf(lines[1]);
+            }
+            return null;
+        } catch (IOException e) {
+            throw KEMException.criticalError("Could not read " + done.getAbsolutePath(), e);
+        }
+    }
+
+    void done(boolean success) {
+        File done = new File(kompiledDir, DONE);
+        try {
+            FileUtils.writeStringToFile(done, run + "\n" + success, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw KEMException.criticalError("Could not write " + done.getAbsolutePath(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            lock.release();
+            file.close();
+        } catch (IOException e) {
+            throw KEMException.criticalError("Could not unlock " + kompiledDir.getAbsolutePath(), e);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.ktest.Test;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.apache.commons.io.FileUtils;
+import org.kframework.attributes.Source;
+import org.kframework.kil.DefinitionItem;
+import org.kframework.kil.Require;
+import org.kframework.kompile.Kompile;
+import org.kframework.ktest.Proc;
+import org.kframework.parser.outer.Outer;
+import org.kframework.utils.errorsystem.KEMException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The kompile and krun steps which succeeded in previous runs of ktest with --incremental, so that they are not run
+ * again as long as their inputs are unchanged.
+ *
+ * The results are kept in a properties file mapping the keys of the steps (see {@link TimingDatabase}) to hashes of
+ * their inputs. The inputs of a kompile step are its arguments and the contents of the definition and of the files
+ * it requires. The inputs of a krun step are its arguments, the contents of the program and of its input and
+ * expected output files, and the modification time and size of the compiled definition, which only changes when
+ * the definition is kompiled again.
+ */
+public class ResultCache {
+
+    /* the hash of a step which failed in this run */
+    private static final String FAILED = "";
+
+    private final File file;
+    private final Map<String, String> previous = new ConcurrentHashMap<>();
+    private final Map<String, String> current = new ConcurrentHashMap<>();
+
+    /**
+     * @param file the cache, or null to run all the steps and not save their results.
+     */
+    public ResultCache(File file) {
+        this.file = file;
+        if (file != null && file.isFile()) {
+            load(file, previous);
+        }
+    }
+
+    public boolean kompileCached(Proc<TestCase> kompileStep) {
+        return file != null
+                && kompileHash(kompileStep).equals(previous.get(TimingDatabase.kompileKey(kompileStep.getObj())));
+    }
+
+    public void recordKompile(Proc<TestCase> kompileStep) {
+        if (file != null) {
+            current.put(TimingDatabase.kompileKey(kompileStep.getObj()),
+                    kompileStep.isSuccess() ? kompileHash(kompileStep) : FAILED);
+        }
+    }
+
+    public boolean krunCached(Proc<KRunProgram> krunStep) {
+        return file != null && krunHash(krunStep).equals(previous.get(TimingDatabase.krunKey(krunStep.getObj())));
+    }
+
+    public void recordKRun(Proc<KRunProgram> krunStep) {
+        if (file != null) {
+            current.put(TimingDatabase.krunKey(krunStep.getObj()),
+                    krunStep.isSuccess() ? krunHash(krunStep) : FAILED);
+        }
+    }
+
+    /**
+     * The hash of the sources of the definition also includes the modification time and size of the compiled
+     * definition, so that a kompile step is run again when the compiled definition was changed or deleted since.
+     */
+    private String kompileHash(Proc<TestCase> kompileStep) {
+        TestCase tc = kompileStep.getObj();
+        List<File> lookupDirectories = new ArrayList<>();
+        String[] args = kompileStep.getArgs();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-I")) {
+                for (i++; i < args.length && !args[i].startsWith("-"); i++) {
+                    File dir = new File(args[i]);
+                    lookupDirectories.add(dir.isAbsolute() ? dir : new File(tc.getWorkingDir(), args[i]));
+                }
+                i--;
+            }
+        }
+        lookupDirectories.add(Kompile.BUILTIN_DIRECTORY);
+        return sourcesHash(args, new File(tc.getDefinition()).getAbsoluteFile(), lookupDirectories)
+                + " " + compiledStamp(tc);
+    }
+
+    /**
+     * @return the hash of the arguments of a kompile step and of the sources of its definition.
+     */
+    static String sourcesHash(String[] args, File definition, List<File> lookupDirectories) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        putArgs(hasher, args);
+        putSources(hasher, definition, lookupDirectories, new HashSet<>());
+        return hasher.hash().toString();
+    }
+
+    private String krunHash(Proc<KRunProgram> krunStep) {
+        KRunProgram program = krunStep.getObj();
+        Hasher hasher = Hashing.sha256().newHasher();
+        putArgs(hasher, krunStep.getArgs());
+        putFile(hasher, new File(program.pgmPath));
+        putFile(hasher, program.inputFile);
+        putFile(hasher, program.outputFile);
+        putFile(hasher, program.errorFile);
+        return hasher.hash().toString() + " " + compiledStamp(program.testCase);
+    }
+
+    private static String compiledStamp(TestCase tc) {
+        File compiled = new File(tc.getKompileDirFullPath(), "compiled.bin");
+        return compiled.lastModified() + ":" + compiled.length();
+    }
+
+    private static void putArgs(Hasher hasher, String[] args) {
+        hasher.putInt(args.length);
+        for (String arg : args) {
+            hasher.putString(arg, StandardCharsets.UTF_8).putByte((byte) 0);
+        }
+    }
+
+    private static void putFile(Hasher hasher, File file) {
+        if (file == null || !file.isFile()) {
+            hasher.putByte((byte) 0);
+            return;
+        }
+        try {
+            byte[] contents = FileUtils.readFileToByteArray(file);
+            hasher.putByte((byte) 1).putInt(contents.length).putBytes(contents);
+        } catch (IOException e) {
+            throw KEMException.criticalError("Could not read " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Hashes the file and the files it requires, found with the outer parser and resolved the way kompile does.
+     * Requires which cannot be resolved only contribute their names. If the file cannot be parsed, its requires
+     * are not followed: kompile fails on it anyway, until the file itself is changed.
+     */
+    private static void putSources(Hasher hasher, File source, List<File> lookupDirectories, Set<File> visited) {
+        if (!visited.add(source)) {
+            return;
+        }
+        String text;
+        try {
+            text = FileUtils.readFileToString(source, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw KEMException.criticalError("Could not read " + source.getAbsolutePath(), e);
+        }
+        hasher.putString(source.getPath(), StandardCharsets.UTF_8).putByte((byte) 0)
+                .putString(text, StandardCharsets.UTF_8).putByte((byte) 0);
+        List<DefinitionItem> items;
+        try {
+            items = Outer.parse(Source.apply(source.getAbsolutePath()), text, null);
+        } catch (KEMException e) {
+            return;
+        }
+        for (DefinitionItem item : items) {
+            if (!(item instanceof Require)) {
+                continue;
+            }
+            String required = ((Require) item).getValue();
+            List<File> candidates = new ArrayList<>();
+            if (new File(required).isAbsolute()) {
+                candidates.add(new File(required));
+            } else {
+                candidates.add(new File(source.getParentFile(), required));
+                lookupDirectories.forEach(dir -> candidates.add(new File(dir, required)));
+            }
+            File resolved = candidates.stream().filter(File::isFile).findFirst().orElse(null);
+            if (resolved == null) {
+                hasher.putString(required, StandardCharsets.UTF_8).putByte((byte) 0);
+            } else {
+                putSources(hasher, resolved.getAbsoluteFile(), lookupDirectories, visited);
+            }
+        }
+    }
+
+    /**
+     * Writes the results of this run, and those of the previous runs for the steps which were not run.
+     */
+    public void save() {
+        if (file == null) {
+            return;
+        }
+        Map<String, String> all = new HashMap<>(previous);
+        all.putAll(current);
+        all.values().removeIf(FAILED::equals);
+        store(all, file);
+    }
+
+    /**
+     * Writes only the results of this run, for {@link #addRecorded} to merge them into another cache.
+     */
+    public void saveRecorded(File recorded) {
+        store(current, recorded);
+    }
+
+    /**
+     * Adds the results written by {@link #saveRecorded} to those of this run.
+     */
+    public void addRecorded(File recorded) {
+        load(recorded, current);
+    }
+
+    private static void load(File file, Map<String, String> results) {
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        } catch (IOException e) {
+            throw KEMException.criticalError("Could not read ktest results from " + file.getAbsolutePath(), e);
+        }
+        for (String key : properties.stringPropertyNames()) {
+            results.put(key, properties.getProperty(key));
+        }
+    }
+
+    private static void store(Map<String, String> results, File file) {
+        Properties properties = new Properties();
+        properties.putAll(results);
+        try {
+            File tmp = new File(file.getAbsolutePath() + ".tmp");
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                properties.store(out, "hashes of the inputs of the ktest steps which succeeded");
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw KEMException.criticalError("Could not write ktest results to " + file.getAbsolutePath(), e);
+        }
+    }
+}
@@ -7,10 +7,12 @@ import org.kframework.ktest.Proc;
 import org.kframework.utils.OS;
 import org.kframework.utils.errorsystem.KEMException;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -29,6 +31,10 @@ import java.util.concurrent.TimeUnit;
  * idle unless:
  * - krun processes are blocked because their definitions are being compiled.
  * - There are no more tasks to run.
+ *
+ * Tasks are started longest first, according to the durations of the previous runs recorded in
+ * a {@link TimingDatabase}. The duration of a kompile task includes its longest krun task, since
+ * those can only start after it.
  */
 public class TaskQueue {
 
@@ -38,12 +44,9 @@ public class TaskQueue {
     // wrapper around it.
     private final ThreadPoolExecutor tpe;
 
-    /**
-     * Status of a kompile task. See {@link #kompilePaths}.
-     */
-    private enum KompileStatus {
-        NOT_STARTED, IN_PROGRESS, FAILED, SUCCEEDED
-    }
+    private final TimingDatabase timings;
+
+    private final ResultCache results;
 
     /**
      * ktest tries to avoid redundant compilations by checking if a compilation to the same path
@@ -54,9 +57,11 @@ public class TaskQueue {
      * compiled definition is same and same options are used for compilation.
      *
      * We also need to keep track of running kompile processes to prevent spawning threads that
-     * do same compilation. Value part of the map handles all possibilities.
+     * do same compilation. The value is completed with the success of the compilation when it
+     * is done, and the tasks which depend on a running compilation wait for it without
+     * occupying a thread.
      */
-    private final Map<String, KompileStatus> kompilePaths = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Boolean>> kompilePaths = new ConcurrentHashMap<>();
 
     /**
      * Similarly, we keep track of PDF tasks. PDF tasks are easier to handle, because we don't
@@ -89,8 +94,10 @@ public class TaskQueue {
      */
     private volatile long lastTestFinished;
 
-    public TaskQueue(KTestOptions options) {
+    public TaskQueue(KTestOptions options, TimingDatabase timings, ResultCache results) {
         this.options = options;
+        this.timings = timings;
+        this.results = results;
         int nThreads;
         if (options.getUpdateOut() || options.getGenerateOut()) {
             nThreads = 1;
@@ -185,20 +192,18 @@ public class TaskQueue {
      * @return New {@link java.lang.Runnable} that does things described above.
      */
     private KTestQueueItem wrapScriptStep(Proc<TestCase> scriptStep) {
-        return new KTestQueueItem() {
+        TestCase tc = scriptStep.getObj();
+        String key = TimingDatabase.scriptKey(tc);
+        return new KTestQueueItem(timings.expected(key) + timings.expectedFromKompile(tc)) {
             @Override
             public void run() {
                 scriptProcs.add(scriptStep);
                 scriptStep.run();
+                timings.record(key, scriptStep.getTimeDelta());
                 if (scriptStep.isSuccess()) {
-                    continueFromKompileStep(scriptStep.getObj());
+                    continueFromKompileStep(tc);
                 }
             }
-
-            @Override
-            protected int priority() {
-                return 1;
-            }
         };
     }
 
@@ -208,80 +213,91 @@ public class TaskQueue {
      * After running:
      * - Adds krun tasks that depend on this kompile step to the queue. (only if it's
      *   successfully done)
-     * - Updates {@link #kompilePaths}.
+     * - Completes the step in {@link #kompilePaths}.
      * - Adds Proc to {@link #kompileProcs}.
      * - Updates {@link #lastTestFinished}.
+     * If the same compilation is already running or done, the krun tasks are added when it
+     * succeeds instead. In the processes started by `--shards', the same goes for compilations
+     * done by other shards, see {@link KompileLock}.
      * @param kompileStep Kompile step to wrap.
      * @return New {@link java.lang.Runnable} that does things described above.
      */
     private KTestQueueItem wrapKompileStep(Proc<TestCase> kompileStep) {
-        return new KTestQueueItem() {
+        TestCase tc = kompileStep.getObj();
+        return new KTestQueueItem(timings.expectedFromKompile(tc)) {
             @Override
             public void run() {
-                String kompilePath = kompileStep.getObj().getKompileDirFullPath();
-                KompileStatus status = tryAddKompileInProgress(kompilePath);
-                if (status == KompileStatus.NOT_STARTED) {
-                    // We're running the kompile process
-                    kompileProcs.add(kompileStep);
-                    kompileStep.run();
-                    lastTestFinished = System.currentTimeMillis();
-                    boolean success = kompileStep.isSuccess();
-                    synchronized (TaskQueue.this) {
-                        kompilePaths.put(kompilePath,
-                                success ? KompileStatus.SUCCEEDED : KompileStatus.FAILED);
-                    }
+                CompletableFuture<Boolean> kompiled = new CompletableFuture<>();
+                CompletableFuture<Boolean> previous = kompilePaths.putIfAbsent(tc.getKompileDirFullPath(), kompiled);
+                if (previous == null) {
+                    boolean success = options.getShard() == null || options.dry ? kompile() : kompileOnce();
+                    kompiled.complete(success);
                     if (success) {
-                        addKRunSteps(kompileStep.getObj());
+                        addKRunSteps(tc);
                     }
-                } else if (status == KompileStatus.IN_PROGRESS) {
-                    // Just wait until it's finished
-                    tpe.execute(this);
-                } else if (status == KompileStatus.SUCCEEDED) {
-                    // Just add KRun steps
-                    addKRunSteps(kompileStep.getObj());
-                } else if (status == KompileStatus.FAILED) {
-                    // Nothing to do
                 } else {
-                    throw new RuntimeException("Unhandled case in TaskQueue.wrapKompileStep");
+                    // Add KRun steps once the compilation succeeds, without waiting for it here
+                    previous.thenAccept(success -> {
+                        if (success) {
+                            addKRunSteps(tc);
+                        }
+                    });
                 }
             }
 
-            @Override
-            protected int priority() {
-                return 1;
+            private boolean kompile() {
+                kompileProcs.add(kompileStep);
+                if (results.kompileCached(kompileStep)) {
+                    kompileStep.reportCached();
+                    return true;
+                }
+                // We're running the kompile process
+                kompileStep.run();
+                timings.record(TimingDatabase.kompileKey(tc), kompileStep.getTimeDelta());
+                results.recordKompile(kompileStep);
+                lastTestFinished = System.currentTimeMillis();
+                return kompileStep.isSuccess();
+            }
+
+            /**
+             * Kompile unless another shard did it, in which case it reports the kompile step.
+             */
+            private boolean kompileOnce() {
+                try (KompileLock lock = KompileLock.acquire(new File(tc.getKompileDirFullPath()),
+                        new File(options.getShardDir()).getAbsolutePath())) {
+                    Boolean shared = lock.result();
+                    if (shared != null) {
+                        return shared;
+                    }
+                    boolean success = kompile();
+                    lock.done(success);
+                    return success;
+                }
             }
         };
     }
 
+    /**
+     * A task which is started before the tasks expected to take less time.
+     */
     private static abstract class KTestQueueItem implements Runnable, Comparable<KTestQueueItem> {
 
-        protected abstract int priority();
+        /**
+         * Expected duration in milliseconds.
+         */
+        private final long expected;
+
+        protected KTestQueueItem(long expected) {
+            this.expected = expected;
+        }
 
         @Override
         public int compareTo(KTestQueueItem o) {
-            return Integer.compare(priority(), o.priority());
+            return Long.compare(o.expected, expected);
         }
 
     }
 
-    /**
-     * Check status of kompile task that compiles to given path.
-     * Path is added to {@link #kompilePaths} as {@code IN_PROGRESS} when {@code NOT_STARTED}
-     * is returned.
-     * @param path Path to search in {@link #kompilePaths}.
-     * @return Status of kompile task that compiles to given path. Never returns {@code NOT_STARTED}.
-     */
-    private synchronized KompileStatus tryAddKompileInProgress(String path) {
-        KompileStatus status = kompilePaths.get(path);
-        assert (status != KompileStatus.NOT_STARTED)
-                : "TaskQueue.kompilePaths: Kompile task shouldn't be in NOT_STARTED state";
-        if (status == null) {
-            kompilePaths.put(path, KompileStatus.IN_PROGRESS);
-            return KompileStatus.NOT_STARTED;
-        }
-        return status;
-    }
-
     /**
      * Create a {@link java.lang.Runnable} from a PDF step that updates {@link #pdfDefs},
      * {@link #pdfProcs} and {@link #lastTestFinished} after it's done.
@@ -289,19 +305,16 @@ public class TaskQueue {
      * @return New {@link java.lang.Runnable} that does things described above.
      */
     private KTestQueueItem wrapPDFStep(Proc<TestCase> pdfStep) {
-        return new KTestQueueItem() {
+        String key = TimingDatabase.pdfKey(pdfStep.getObj());
+        return new KTestQueueItem(timings.expected(key)) {
             @Override
             public void run() {
                 pdfDefs.put(pdfStep.getObj().getDefinition(), pdfStep.isSuccess());
                 pdfProcs.add(pdfStep);
                 pdfStep.run();
+                timings.record(key, pdfStep.getTimeDelta());
                 lastTestFinished = System.currentTimeMillis();
             }
-
-            @Override
-            protected int priority() {
-                return 1;
-            }
         };
     }
 
@@ -325,12 +338,12 @@ public class TaskQueue {
 
     /**
      * Create a {@link java.lang.Runnable} from a krun step that updates {@link #krunProcs} and
-     * {@link #lastTestFinished}.
+     * {@link #lastTestFinished}. The step is not run if it is in {@link #results}.
      * @param krunStep KRun step to wrap.
      * @return New {@link java.lang.Runnable} that does things described above.
      */
     private KTestQueueItem wrapKRunStep(Proc<KRunProgram> krunStep) {
-        return new KTestQueueItem() {
+        return new KTestQueueItem(timings.expected(TimingDatabase.krunKey(krunStep.getObj()))) {
             @Override
             public void run() {
                 // Don't check for `-kompiled` directory when in --dry mode. This is because
@@ -338,17 +351,18 @@ public class TaskQueue {
                 if (options.dry ||
                         krunStep.getObj().testCase.isDefinitionKompiled()) {
                     krunProcs.add(krunStep);
-                    krunStep.run();
+                    if (results.krunCached(krunStep)) {
+                        krunStep.reportCached();
+                    } else {
+                        krunStep.run();
+                        timings.recordKRun(krunStep.getObj(), krunStep.getTimeDelta());
+                        results.recordKRun(krunStep);
+                    }
                     lastTestFinished = System.currentTimeMillis();
                 } else {
                     executeKompileStep(krunStep.getObj().testCase);
                 }
             }
-
-            @Override
-            protected int priority() {
-                return 0;
-            }
         };
     }
 }
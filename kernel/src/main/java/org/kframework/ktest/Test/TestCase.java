@@ -193,7 +193,7 @@ public class TestCase {
         List<Proc<KRunProgram>> procs = new ArrayList<>();
 
         for (KRunProgram program : getPrograms()) {
-            String[] args = program.getKrunCmd();
+            String[] args = options.getInProcess() ? program.getKrunArgs() : program.getKrunCmd();
 
             // passing null to Proc is OK, it means `ignore'
             String inputContents = null, outputContents = null, errorContents = null;
@@ -241,7 +241,7 @@ public class TestCase {
             }
             Proc<KRunProgram> p = new Proc<>(program, args, program.inputFile, inputContents,
                     outputContentsAnn, errorContentsAnn, matcher, program.defPath, options,
-                    program.outputFile, program.newOutputFile, kem, env,  warnings2errors);
+                    program.outputFile, program.newOutputFile, kem, env,  warnings2errors, options.getInProcess());
             procs.add(p);
         }
 
@@ -387,7 +387,7 @@ public class TestCase {
      * Generate set of programs to run for this test case.
      * @return set of programs to krun
      */
-    private List<KRunProgram> getPrograms() {
+    List<KRunProgram> getPrograms() {
         List<KRunProgram> ret = new LinkedList<>();
         for (Annotated<String, LocationData> pgmDir : programs)
             ret.addAll(searchPrograms(pgmDir.getObj()));
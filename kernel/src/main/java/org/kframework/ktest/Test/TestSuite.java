@@ -4,32 +4,57 @@ package org.kframework.ktest.Test;
 import com.google.common.collect.Iterables;
 import org.apache.commons.io.FilenameUtils;
 import org.kframework.ktest.CmdArgs.KTestOptions;
+import org.kframework.ktest.ExecNames;
 import org.kframework.ktest.Proc;
 import org.kframework.ktest.ReportGen;
 import org.kframework.utils.ColorUtil;
+import org.kframework.utils.errorsystem.KEMException;
 import org.kframework.utils.file.FileUtil;
+import org.xml.sax.SAXException;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.TransformerException;
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 public class TestSuite {
 
     private final List<TestCase> tests;
     private final KTestOptions options;
+    private final FileUtil files;
     private final ReportGen reportGen;
+    private final TimingDatabase timings;
+    private final ResultCache results;
 
     public static final String REPORT_DIR = "junit-reports";
 
+    public static final String RESULTS_FILE = ".ktest-results";
+
     public TestSuite(List<TestCase> tests, KTestOptions options, FileUtil files) {
-        this.tests = tests;
         this.options = options;
-        reportGen = options.getGenerateReport() ? new ReportGen(files.resolveWorkingDirectory(REPORT_DIR)) : null;
+        this.files = files;
+        timings = new TimingDatabase(options.dry ? null : files.resolveWorkingDirectory(options.getTimings()));
+        results = new ResultCache(options.dry || !options.getIncremental()
+                ? null : files.resolveWorkingDirectory(RESULTS_FILE));
+        if (options.getShard() == null) {
+            this.tests = tests;
+            reportGen = options.getGenerateReport() ? new ReportGen(files.resolveWorkingDirectory(REPORT_DIR)) : null;
+        } else {
+            this.tests = split(tests, options.getShards(), timings).get(options.getShard());
+            reportGen = options.getGenerateReport()
+                    ? new ReportGen(shardReportDir(new File(options.getShardDir()), options.getShard())) : null;
+        }
     }
 
     public boolean run() throws IOException, TransformerException, ParserConfigurationException {
-        TaskQueue queue = new TaskQueue(options);
+        TaskQueue queue = new TaskQueue(options, timings, results);
         for (TestCase test : tests) {
             queue.addTask(test);
         }
@@ -39,6 +64,17 @@ public class TestSuite {
             return true;
         }
 
+        if (options.getShard() == null) {
+            timings.save();
+            results.save();
+        } else {
+            File shardDir = new File(options.getShardDir());
+            timings.saveRecorded(shardTimingsFile(shardDir, options.getShard()));
+            if (options.getIncremental()) {
+                results.saveRecorded(shardResultsFile(shardDir, options.getShard()));
+            }
+        }
+
         List<Proc<TestCase>> scriptProcs = queue.getScriptProcs();
         List<Proc<TestCase>> kompileProcs = queue.getKompileProcs();
         List<Proc<TestCase>> pdfProcs = queue.getPdfProcs();
@@ -53,10 +89,7 @@ public class TestSuite {
             cpuTimeSpent += p.getTimeDelta();
         }
 
-        String colorCode = ColorUtil.RgbToAnsi(success ? "green" : "red",
-                options.getColorSetting(), options.getTerminalColor());
-        String msg = success ? "SUCCESS" : "FAIL (see details above)";
-        System.out.format("%n%s%s%s%n", colorCode, msg, ColorUtil.ANSI_NORMAL);
+        printResult(success);
 
         printTimeInfo(cpuTimeSpent / 1000, realTimeSpent / 1000,
                 kompileProcs.size(), pdfProcs.size(), krunProcs.size());
@@ -89,6 +122,130 @@ public class TestSuite {
         return success;
     }
 
+    /**
+     * Run the tests in {@link KTestOptions#getShards()} ktest processes, each of which runs the tests of one shard
+     * and leaves its report and timings in a directory shared by the processes, and merge them.
+     * @param args the arguments of this ktest process, passed on to the processes of the shards
+     * @return whether all the shards succeeded
+     */
+    public boolean runShards(String[] args) throws IOException, TransformerException, ParserConfigurationException,
+            SAXException {
+        File shardDir = files.resolveTemp("shards");
+        if (!shardDir.isDirectory() && !shardDir.mkdirs()) {
+            throw KEMException.criticalError("Could not create directory " + shardDir);
+        }
+        List<Process> processes = new ArrayList<>();
+        for (int shard = 0; shard < options.getShards(); shard++) {
+            List<String> cmd = new ArrayList<>();
+            cmd.add(ExecNames.getExecutable("ktest"));
+            cmd.addAll(Arrays.asList(args));
+            cmd.addAll(Arrays.asList("--shard", Integer.toString(shard), "--shard-dir", shardDir.getAbsolutePath()));
+            processes.add(files.getProcessBuilder().command(cmd).inheritIO().start());
+        }
+
+        boolean success = true;
+        try {
+            for (Process process : processes) {
+                success &= process.waitFor() == 0;
+            }
+        } catch (InterruptedException e) {
+            processes.forEach(Process::destroy);
+            Thread.currentThread().interrupt();
+            throw KEMException.criticalError("KTest was interrupted", e);
+        }
+
+        if (options.dry) {
+            return true;
+        }
+
+        List<File> reportDirs = new ArrayList<>();
+        for (int shard = 0; shard < options.getShards(); shard++) {
+            File shardTimings = shardTimingsFile(shardDir, shard);
+            if (shardTimings.isFile()) {
+                timings.addRecorded(shardTimings);
+            }
+            File shardResults = shardResultsFile(shardDir, shard);
+            if (shardResults.isFile()) {
+                results.addRecorded(shardResults);
+            }
+            reportDirs.add(shardReportDir(shardDir, shard));
+        }
+        timings.save();
+        results.save();
+        if (reportGen != null) {
+            ReportGen.merge(reportDirs, files.resolveWorkingDirectory(REPORT_DIR));
+        }
+
+        printResult(success);
+        return success;
+    }
+
+    /**
+     * Split the tests into shards which are expected to take about as long, so that each shard can be run by a
+     * ktest process of its own. The tests which kompile to the same directory are in the same shard.
+     * The split only depends on the tests and on the timings, so all the processes make the same split.
+     */
+    static List<List<TestCase>> split(List<TestCase> tests, int shards, TimingDatabase timings) {
+        Map<String, List<TestCase>> groups = new TreeMap<>();
+        for (TestCase test : tests) {
+            groups.computeIfAbsent(test.getKompileDirFullPath(), dir -> new ArrayList<>()).add(test);
+        }
+        Map<String, Long> expected = new HashMap<>();
+        groups.forEach((dir, group) -> {
+            long time = timings.expected(TimingDatabase.kompileKey(group.get(0)));
+            for (TestCase test : group) {
+                if (test.getPosixInitScript() != null) {
+                    time += timings.expected(TimingDatabase.scriptKey(test));
+                }
+                time += timings.expected(TimingDatabase.pdfKey(test));
+                for (KRunProgram program : test.getPrograms()) {
+                    time += timings.expected(TimingDatabase.krunKey(program));
+                }
+            }
+            expected.put(dir, time);
+        });
+
+        // longest first, each to the shard with the least work so far
+        List<String> dirs = new ArrayList<>(groups.keySet());
+        dirs.sort(Comparator.comparing((String dir) -> expected.get(dir)).reversed()
+                .thenComparing(Comparator.naturalOrder()));
+        List<List<TestCase>> split = new ArrayList<>();
+        long[] load = new long[shards];
+        for (int shard = 0; shard < shards; shard++) {
+            split.add(new ArrayList<>());
+        }
+        for (String dir : dirs) {
+            int shard = 0;
+            for (int i = 1; i < shards; i++) {
+                if (load[i] < load[shard]) {
+                    shard = i;
+                }
+            }
+            split.get(shard).addAll(groups.get(dir));
+            load[shard] += expected.get(dir);
+        }
+        return split;
+    }
+
+    private static File shardReportDir(File shardDir, int shard) {
+        return new File(shardDir, "report-" + shard);
+    }
+
+    private static File shardTimingsFile(File shardDir, int shard) {
+        return new File(shardDir, "timings-" + shard);
+    }
+
+    private static File shardResultsFile(File shardDir, int shard) {
+        return new File(shardDir, "results-" + shard);
+    }
+
+    private void printResult(boolean success) {
+        String colorCode = ColorUtil.RgbToAnsi(success ? "green" : "red",
+                options.getColorSetting(), options.getTerminalColor());
+        String msg = success ? "SUCCESS" : "FAIL (see details above)";
+        System.out.format("%n%s%s%s%n", colorCode, msg, ColorUtil.ANSI_NORMAL);
+    }
+
     private void makeReport(Proc<?> p, String definition, String testName) {
         if (reportGen == null)
             return;
@@ -0,0 +1,162 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.ktest.Test;
+
+import org.kframework.utils.errorsystem.KEMException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * How long the steps of the tests took in previous runs of ktest, so {@link TaskQueue} can start the longest ones
+ * first.
+ *
+ * The durations are kept in a properties file mapping the keys of the steps (e.g. "kompile" followed by the
+ * kompiled directory) to milliseconds. Each run replaces the durations of the steps it runs.
+ */
+public class TimingDatabase {
+
+    private static final String KOMPILE = "kompile ", KRUN = "krun ", PDF = "pdf ", SCRIPT = "script ";
+    /* the longest krun step on a kompiled directory */
+    private static final String LONGEST_KRUN = "longest-krun ";
+
+    private final File file;
+    private final Map<String, Long> previous = new ConcurrentHashMap<>();
+    private final Map<String, Long> current = new ConcurrentHashMap<>();
+    /* the average duration of each kind of step in the previous run */
+    private final Map<String, Long> averages = new HashMap<>();
+
+    /**
+     * @param file the database, or null to not use the durations of previous runs nor save the new ones.
+     */
+    public TimingDatabase(File file) {
+        this.file = file;
+        if (file == null || !file.isFile()) {
+            return;
+        }
+        load(file, previous);
+        for (String kind : Arrays.asList(KOMPILE, KRUN, PDF, SCRIPT)) {
+            previous.entrySet().stream()
+                    .filter(e -> e.getKey().startsWith(kind))
+                    .mapToLong(Map.Entry::getValue)
+                    .average()
+                    .ifPresent(average -> averages.put(kind, (long) average));
+        }
+    }
+
+    public static String kompileKey(TestCase tc) {
+        return KOMPILE + tc.getKompileDirFullPath();
+    }
+
+    public static String krunKey(KRunProgram program) {
+        String[] args = program.getKrunArgs();
+        return KRUN + program.testCase.getKompileDirFullPath() + " "
+                + String.join(" ", Arrays.copyOfRange(args, 1, args.length));
+    }
+
+    public static String pdfKey(TestCase tc) {
+        return PDF + tc.getDefinition();
+    }
+
+    public static String scriptKey(TestCase tc) {
+        return SCRIPT + tc.getPosixInitScript();
+    }
+
+    /**
+     * @return the duration of the step in the previous run, or the average of the steps of the same kind if it was
+     * not run.
+     */
+    public long expected(String key) {
+        Long time = previous.get(key);
+        if (time != null) {
+            return time;
+        }
+        return averages.getOrDefault(key.substring(0, key.indexOf(' ') + 1), 0L);
+    }
+
+    /**
+     * @return the expected length of the critical path starting with the kompile step of the test case, that is,
+     * the kompile step followed by its longest krun step.
+     */
+    public long expectedFromKompile(TestCase tc) {
+        return expected(kompileKey(tc)) + previous.getOrDefault(LONGEST_KRUN + tc.getKompileDirFullPath(), 0L);
+    }
+
+    public void record(String key, long time) {
+        current.put(key, time);
+    }
+
+    public void recordKRun(KRunProgram program, long time) {
+        record(krunKey(program), time);
+        current.merge(LONGEST_KRUN + program.testCase.getKompileDirFullPath(), time, Math::max);
+    }
+
+    /**
+     * Writes the durations of this run, and those of the previous runs for the steps which were not run.
+     */
+    public void save() {
+        if (file == null) {
+            return;
+        }
+        Map<String, Long> all = new HashMap<>(previous);
+        all.putAll(current);
+        store(all, file);
+    }
+
+    /**
+     * Writes only the durations of this run, for {@link #addRecorded} to merge them into another database.
+     */
+    public void saveRecorded(File recorded) {
+        store(current, recorded);
+    }
+
+    /**
+     * Adds the durations written by {@link #saveRecorded} to those of this run.
+     */
+    public void addRecorded(File recorded) {
+        Map<String, Long> times = new HashMap<>();
+        load(recorded, times);
+        times.forEach((key, time) -> current.merge(key, time,
+                key.startsWith(LONGEST_KRUN) ? Math::max : (previousTime, newTime) -> newTime));
+    }
+
+    private static void load(File file, Map<String, Long> times) {
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        } catch (IOException e) {
+            throw KEMException.criticalError("Could not read ktest timings from " + file.getAbsolutePath(), e);
+        }
+        for (String key : properties.stringPropertyNames()) {
+            try {
+                times.put(key, Long.parseLong(properties.getProperty(key)));
+            } catch (NumberFormatException e) {
+                // written by someone else; ignore it
+            }
+        }
+    }
+
+    private static void store(Map<String, Long> times, File file) {
+        Properties properties = new Properties();
+        times.forEach((key, time) -> properties.setProperty(key, Long.toString(time)));
+        try {
+            File tmp = new File(file.getAbsolutePath() + ".tmp");
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                properties.store(out, "durations of ktest steps in milliseconds");
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw KEMException.criticalError("Could not write ktest timings to " + file.getAbsolutePath(), e);
+        }
+    }
+}
@@ -58,7 +58,7 @@ public class BinaryParser {
     public static final int BEGIN = 0, KTOKEN = 1, KAPPLY = 2, KSEQUENCE = 3, KVARIABLE = 4, KREWRITE = 5,
             INJECTEDKLABEL = 6, END = 7;
 
-    private final ByteBuffer data;
+    private ByteBuffer data;
     private final List<String> interns = new ArrayList<>();
 
     private BinaryParser(ByteBuffer data) {
@@ -141,6 +141,26 @@ public class BinaryParser {
         return Arrays.equals(Arrays.copyOfRange(bytes, 0, 5), MAGIC);
     }
 
+    /**
+     * Returns a parser of the terms written by {@link org.kframework.unparser.ToBinary#stream}, which share one intern
+     * table. The terms are passed to {@link #next} in the order in which they were written.
+     */
+    public static BinaryParser stream() {
+        return new BinaryParser(null);
+    }
+
+    /**
+     * Parses the next term of a stream, up to and including its terminating byte.
+     */
+    public K next(ByteBuffer term) {
+        data = term;
+        try {
+            return read400();
+        } catch (IOException e) {
+            throw KEMException.criticalError("Could not read K term from binary", e);
+        }
+    }
+
     public static K parse(byte[] in) {
         return parse(ByteBuffer.wrap(in));
     }
@@ -0,0 +1,207 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.parser.concrete2kore;
+
+import org.kframework.attributes.Source;
+import org.kframework.definition.Module;
+import org.kframework.definition.UserList;
+import org.kframework.kore.K;
+import org.kframework.kore.KApply;
+import org.kframework.kore.Sort;
+import org.kframework.parser.TreeNodesToKORE;
+import org.kframework.utils.errorsystem.KExceptionManager;
+import org.kframework.utils.errorsystem.ParseFailedException;
+import scala.Tuple2;
+import scala.util.Either;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.kframework.Collections.*;
+import static org.kframework.kore.KORE.*;
+
+/**
+ * Parses a program of a user list sort (e.g. {@code syntax Stmts ::= List{Stmt, ";"}}) one element at a time.
+ *
+ * The input is read incrementally from a {@link Reader}. Every time the list separator is seen outside of brackets
+ * and string literals, the text accumulated since the end of the previous element is parsed with the element sort
+ * as start symbol. If that succeeds, it is converted to KORE and the parse forest and the text are dropped;
+ * otherwise the separator belongs to the element itself and reading continues. Separators inside brackets (e.g. in
+ * a nested block) are skipped without parsing, and once an element has failed to parse at a few separators, the
+ * rest of the input is parsed at once, so that the parser never reparses a growing element at every separator.
+ * The last element and whatever follows it are parsed with the list sort, so that trailing comments, the empty
+ * list and the absence of a trailing separator are handled exactly as when parsing the whole input.
+ * The result is the same list term as the one built by parsing the whole input at once, but the memory needed
+ * only depends on the size of the largest element.
+ *
+ * Elements must not themselves parse successfully when cut at a separator that belongs to them,
+ * which holds for the usual statement lists.
+ */
+public class ChunkedListParser {
+    private static final int BUFFER_SIZE = 1 << 16;
+    /* the number of separators at which an element may fail to parse before the rest is parsed at once */
+    private static final int MAX_FAILED_ATTEMPTS = 8;
+
+    private final ParseInModule parseInModule;
+    private final Sort sort;
+    private final UserList list;
+    private final KExceptionManager kem;
+
+    public ChunkedListParser(ParseInModule parseInModule, Module module, Sort sort, KExceptionManager kem) {
+        this.parseInModule = parseInModule;
+        this.sort = sort;
+        this.kem = kem;
+        this.list = UserList.getLists(mutable(module.sentences())).stream()
+                .filter(ul -> ul.sort.equals(sort.name()))
+                .findAny().orElse(null);
+    }
+
+    /**
+     * @return true if the sort is a user list with a separator, and so can be parsed in chunks.
+     */
+    public boolean isChunked() {
+        return list != null && !list.separator.isEmpty();
+    }
+
+    public K parse(Reader input, Source source) throws IOException {
+        if (!isChunked()) {
+            StringBuilder sb = new StringBuilder();
+            char[] buffer = new char[BUFFER_SIZE];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                sb.append(buffer, 0, read);
+            }
+            return parse(sb.toString(), sort, source, 1, 1);
+        }
+
+        Sort childSort = Sort(list.childSort);
+        String separator = list.separator;
+        List<K> items = new ArrayList<>();
+        StringBuilder chunk = new StringBuilder();
+        char[] buffer = new char[BUFFER_SIZE];
+        int line = 1;
+        int column = 1;
+        // the text of the last element parsed, with its separator, and where it starts
+        String last = null;
+        int lastLine = 1;
+        int lastColumn = 1;
+        // the state of the scan of the chunk up to pos
+        int pos = 0;
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        int failures = 0;
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            chunk.append(buffer, 0, read);
+            while (pos < chunk.length()) {
+                if (!inString && depth == 0 && failures <= MAX_FAILED_ATTEMPTS) {
+                    if (pos + separator.length() > chunk.length()) {
+                        // a separator may be split across two reads
+                        if (separator.startsWith(chunk.substring(pos))) {
+                            break;
+                        }
+                    } else if (startsWith(chunk, separator, pos)) {
+                        K item = tryParse(chunk.substring(0, pos), childSort, source, line, column);
+                        if (item != null) {
+                            items.add(item);
+                            last = chunk.substring(0, pos + separator.length());
+                            lastLine = line;
+                            lastColumn = column;
+                            for (int i = 0; i < last.length(); i++) {
+                                switch (last.charAt(i)) {
+                                    case '\r':
+                                        if (i + 1 < last.length() && last.charAt(i + 1) == '\n') {
+                                            i++;
+                                        }
+                                    case '\n':
+                                    case '\u000B':
+                                    case '\u000C':
+                                    case '\u0085':
+                                    case '\u2028':
+                                    case '\u2029':
+                                        line++; column = 1; break;
+                                    default:
+                                        column++;
+                                }
+                            }
+                            chunk.delete(0, pos + separator.length());
+                            pos = 0;
+                            failures = 0;
+                            continue;
+                        }
+                        failures++;
+                    }
+                }
+                char c = chunk.charAt(pos++);
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (c == '\\') {
+                        escaped = true;
+                    } else if (c == '"') {
+                        inString = false;
+                    }
+                } else if (c == '"') {
+                    inString = true;
+                } else if (c == '(' || c == '[' || c == '{') {
+                    depth++;
+                } else if (c == ')' || c == ']' || c == '}') {
+                    depth--;
+                }
+            }
+        }
+
+        // the last element is parsed again with the rest, so that the list is terminated exactly as in the grammar
+        K rest;
+        if (last == null) {
+            rest = parse(chunk.toString(), sort, source, line, column);
+        } else {
+            items.remove(items.size() - 1);
+            rest = parse(last + chunk, sort, source, lastLine, lastColumn);
+        }
+        // the remainder is a list itself, so its elements follow those parsed so far
+        List<K> tail = new ArrayList<>();
+        while (rest instanceof KApply && ((KApply) rest).klabel().name().equals(list.klabel)) {
+            tail.add(((KApply) rest).items().get(0));
+            rest = ((KApply) rest).items().get(1);
+        }
+        items.addAll(tail);
+        for (int i = items.size() - 1; i >= 0; i--) {
+            rest = KApply(KLabel(list.klabel), items.get(i), rest);
+        }
+        return rest;
+    }
+
+    private static boolean startsWith(StringBuilder sb, String prefix, int offset) {
+        for (int i = 0; i < prefix.length(); i++) {
+            if (sb.charAt(offset + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private K tryParse(String input, Sort startSymbol, Source source, int startLine, int startColumn) {
+        Tuple2<Either<Set<ParseFailedException>, K>, Set<ParseFailedException>> res =
+                parseInModule.parseString(input, startSymbol, source, startLine, startColumn);
+        if (res._1().isLeft()) {
+            return null;
+        }
+        kem.addAllKException(res._2().stream().map(e -> e.getKException()).collect(Collectors.toSet()));
+        return TreeNodesToKORE.down(res._1().right().get());
+    }
+
+    private K parse(String input, Sort startSymbol, Source source, int startLine, int startColumn) {
+        Tuple2<Either<Set<ParseFailedException>, K>, Set<ParseFailedException>> res =
+                parseInModule.parseString(input, startSymbol, source, startLine, startColumn);
+        kem.addAllKException(res._2().stream().map(e -> e.getKException()).collect(Collectors.toSet()));
+        if (res._1().isLeft()) {
+            throw res._1().left().get().iterator().next();
+        }
+        return TreeNodesToKORE.down(res._1().right().get());
+    }
+}
@@ -3,6 +3,7 @@ package org.kframework.parser.concrete2kore;
 
 import org.kframework.definition.Module;
 import org.kframework.kore.K;
+import org.kframework.parser.concrete2kore.generator.RuleGrammarGenerator;
 import org.kframework.utils.errorsystem.ParseFailedException;
 
 import java.io.Serializable;
@@ -16,6 +17,7 @@ public class ParseCache implements Serializable {
     private final Module module;
     private final boolean strict;
     private final Map<String, ParsedSentence> cache;
+    private ParseInModule parser;
 
     public ParseCache(Module module, boolean strict, Map<String, ParsedSentence> cache) {
         this.module = module;
@@ -35,6 +37,18 @@ public class ParseCache implements Serializable {
         return strict;
     }
 
+    /**
+     * The parser generated from {@link #getModule()}, with its grammar already compiled.
+     * It is generated on the first call and saved together with the parses.
+     */
+    public synchronized ParseInModule getParser(RuleGrammarGenerator gen) {
+        if (parser == null) {
+            parser = gen.getCombinedGrammar(module);
+            parser.initialize();
+        }
+        return parser;
+    }
+
     public static class ParsedSentence implements Serializable {
         private K parse;
         private final Set<ParseFailedException> warnings;
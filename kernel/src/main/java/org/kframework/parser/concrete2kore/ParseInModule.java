@@ -76,6 +76,27 @@ public class ParseInModule implements Serializable {
         return extensionModule;
     }
 
+    /**
+     * @return the module used to disambiguate the parses.
+     */
+    public Module getDisambiguationModule() {
+        return disambModule;
+    }
+
+    /**
+     * @return the module from which the grammar is generated.
+     */
+    public Module getParsingModule() {
+        return parsingModule;
+    }
+
+    /**
+     * @return whether sort checks are added for the variables whose sort is inferred.
+     */
+    public boolean isStrict() {
+        return strict;
+    }
+
     /**
      * Parse as input the given string and start symbol using the module stored in the object.
      * @param input          the string to parse.
@@ -87,6 +108,14 @@ public class ParseInModule implements Serializable {
         return parseString(input, startSymbol, source, 1, 1);
     }
 
+    /**
+     * Generates the grammar now rather than on the first parse, so that it is included
+     * when this object is serialized.
+     */
+    public void initialize() {
+        getGrammar();
+    }
+
     private void getGrammar() {
         Grammar g = grammar;
         if (g == null) {
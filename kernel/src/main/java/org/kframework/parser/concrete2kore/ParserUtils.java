@@ -1,6 +1,8 @@
 // Copyright (c) 2015-2016 K Team. All Rights Reserved.
 package org.kframework.parser.concrete2kore;
 
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import org.apache.commons.io.FileUtils;
 import org.kframework.attributes.Att;
 import org.kframework.attributes.Source;
@@ -22,12 +24,18 @@ import org.kframework.utils.file.FileUtil;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -42,6 +50,11 @@ public class ParserUtils {
     private final KExceptionManager kem;
     private final GlobalOptions options;
     private Function<File, File> makeAbsolute;
+    /**
+     * The outer syntax of the files parsed by this object, by hash of their source and contents, so that the files
+     * required by several definitions, such as the prelude, are only parsed once.
+     */
+    private final Map<HashCode, List<DefinitionItem>> outerParses = new ConcurrentHashMap<>();
 
     public ParserUtils(Function<File, File> makeAbsolute, KExceptionManager kem) {
         this(makeAbsolute, kem, new GlobalOptions());
@@ -111,21 +124,50 @@ public class ParserUtils {
         return kilToKore.apply(def).getModule(mainModule).get();
     }
 
+    /**
+     * Parses the outer syntax of the definition and of the files it requires, directly or not.
+     * The required files are read and parsed concurrently, as soon as they are found.
+     * @return the modules of the files, each file once, in the order in which they are first required.
+     */
     public List<org.kframework.kil.Module> slurp(
             String definitionText,
             Source source,
             File currentDirectory,
             List<File> lookupDirectories) {
-        List<DefinitionItem> items = Outer.parse(source, definitionText, null);
-        if (options.verbose) {
-            System.out.println("Importing: " + source);
-        }
+        Map<File, CompletableFuture<SlurpedFile>> slurped = new ConcurrentHashMap<>();
+        SlurpedFile definition = slurpFile(definitionText, source, currentDirectory, lookupDirectories, slurped);
         List<org.kframework.kil.Module> results = new ArrayList<>();
+        collectModules(definition, slurped, new HashSet<>(), results);
+        return results;
+    }
+
+    /**
+     * The outer syntax of a file, with the files it requires.
+     */
+    private static class SlurpedFile {
+        final Source source;
+        final List<DefinitionItem> items;
+        /* the files required by each Require item */
+        final Map<Require, File> requires;
+
+        SlurpedFile(Source source, List<DefinitionItem> items, Map<Require, File> requires) {
+            this.source = source;
+            this.items = items;
+            this.requires = requires;
+        }
+    }
+
+    private SlurpedFile slurpFile(
+            String definitionText,
+            Source source,
+            File currentDirectory,
+            List<File> lookupDirectories,
+            Map<File, CompletableFuture<SlurpedFile>> slurped) {
+        List<DefinitionItem> items = outerParse(definitionText, source);
+        Map<Require, File> requires = new IdentityHashMap<>();
 
         for (DefinitionItem di : items) {
-            if (di instanceof org.kframework.kil.Module)
-                results.add((org.kframework.kil.Module) di);
-            else if (di instanceof Require) {
+            if (di instanceof Require) {
                 // resolve location of the new file
 
                 String definitionFileName = ((Require) di).getValue();
@@ -144,17 +186,62 @@ public class ParserUtils {
                         .filter(file -> file.exists()).findFirst();
 
                 if (definitionFile.isPresent()) {
-                    results.addAll(slurp(loadDefinitionText(definitionFile.get()),
-                            Source.apply(definitionFile.get().getAbsolutePath()),
-                            definitionFile.get().getParentFile(),
-                            lookupDirectories));
+                    File file = definitionFile.get().getAbsoluteFile();
+                    requires.put((Require) di, file);
+                    slurped.computeIfAbsent(file, f -> CompletableFuture.supplyAsync(() ->
+                            slurpFile(loadDefinitionText(f), Source.apply(f.getAbsolutePath()), f.getParentFile(),
+                                    lookupDirectories, slurped)));
                 }
                 else
                     throw KExceptionManager.criticalError("Could not find file: " +
                             definitionFileName + "\nLookup directories:" + allLookupDirectoris, di);
             }
         }
-        return results;
+        return new SlurpedFile(source, items, requires);
+    }
+
+    private void collectModules(
+            SlurpedFile file,
+            Map<File, CompletableFuture<SlurpedFile>> slurped,
+            Set<File> visited,
+            List<org.kframework.kil.Module> results) {
+        if (options.verbose) {
+            System.out.println("Importing: " + file.source);
+        }
+        for (DefinitionItem di : file.items) {
+            if (di instanceof org.kframework.kil.Module)
+                results.add((org.kframework.kil.Module) di);
+            else if (di instanceof Require) {
+                File required = file.requires.get(di);
+                if (visited.add(required)) {
+                    try {
+                        collectModules(slurped.get(required).join(), slurped, visited, results);
+                    } catch (CompletionException e) {
+                        if (e.getCause() instanceof RuntimeException) {
+                            throw (RuntimeException) e.getCause();
+                        }
+                        throw e;
+                    }
+                }
+            }
+        }
+    }
+
+    private List<DefinitionItem> outerParse(String definitionText, Source source) {
+        HashCode hash = Hashing.sha256().newHasher()
+                .putString(source.source(), StandardCharsets.UTF_8)
+                .putByte((byte) 0)
+                .putString(definitionText, StandardCharsets.UTF_8)
+                .hash();
+        List<DefinitionItem> items = outerParses.get(hash);
+        if (items == null) {
+            items = Outer.parse(source, definitionText, null);
+            List<DefinitionItem> parsed = outerParses.putIfAbsent(hash, items);
+            if (parsed != null) {
+                items = parsed;
+            }
+        }
+        return items;
     }
 
     private String loadDefinitionText(File definitionFile) {
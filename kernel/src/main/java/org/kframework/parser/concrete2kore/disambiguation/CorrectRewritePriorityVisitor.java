@@ -4,6 +4,7 @@ package org.kframework.parser.concrete2kore.disambiguation;
 import com.google.common.collect.Sets;
 import org.kframework.Collections;
 import org.kframework.definition.NonTerminal;
+import org.kframework.kore.KLabel;
 import org.kframework.parser.Ambiguity;
 import org.kframework.parser.SetsTransformerWithErrors;
 import org.kframework.parser.Term;
@@ -15,7 +16,9 @@ import scala.util.Either;
 import scala.util.Left;
 import scala.util.Right;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import static org.kframework.Collections.*;
@@ -36,6 +39,11 @@ public class CorrectRewritePriorityVisitor extends SetsTransformerWithErrors<Par
         exceptions.add("#KList");
     }
 
+    /**
+     * One child visitor per parent label, so that subtrees shared between ambiguity branches are checked only once.
+     */
+    private final Map<KLabel, PriorityVisitor2> childVisitors = new HashMap<>();
+
     @Override
     public Either<java.util.Set<ParseFailedException>, Term> apply(Ambiguity amb) {
         // if the ambiguity has rewrites at the top, prefer them, and eliminate the rest
@@ -58,7 +66,7 @@ public class CorrectRewritePriorityVisitor extends SetsTransformerWithErrors<Par
             // match only on the outermost elements
             if (tc.production().items().apply(0) instanceof NonTerminal) {
                 Either<java.util.Set<ParseFailedException>, Term> rez =
-                        new PriorityVisitor2(tc).apply(tc.get(0));
+                        childVisitor(tc).apply(tc.get(0));
                 if (rez.isLeft())
                     return rez;
                 tc = tc.with(0, rez.right().get());
@@ -66,7 +74,7 @@ public class CorrectRewritePriorityVisitor extends SetsTransformerWithErrors<Par
             if (tc.production().items().apply(tc.production().items().size() - 1) instanceof NonTerminal) {
                 int last = tc.items().size() - 1;
                 Either<java.util.Set<ParseFailedException>, Term> rez =
-                        new PriorityVisitor2(tc).apply(tc.get(last));
+                        childVisitor(tc).apply(tc.get(last));
                 if (rez.isLeft())
                     return rez;
                 tc = tc.with(last, rez.right().get());
@@ -75,16 +83,20 @@ public class CorrectRewritePriorityVisitor extends SetsTransformerWithErrors<Par
         return super.apply(tc);
     }
 
+    private PriorityVisitor2 childVisitor(TermCons parent) {
+        return childVisitors.computeIfAbsent(parent.production().klabel().get(), PriorityVisitor2::new);
+    }
+
     private static class PriorityVisitor2 extends SetsTransformerWithErrors<ParseFailedException> {
-        private final TermCons parent;
+        private final KLabel parentLabel;
 
-        public PriorityVisitor2(TermCons parent) {
-            this.parent = parent;
+        public PriorityVisitor2(KLabel parentLabel) {
+            this.parentLabel = parentLabel;
         }
 
         public Either<java.util.Set<ParseFailedException>, Term> apply(TermCons tc) {
             if (tc.production().klabel().isDefined() && tc.production().klabel().get().name().equals("#KRewrite")) {
-                String msg = "Rewrite is not allowed to be an immediate child of " + parent.production().klabel().get() +
+                String msg = "Rewrite is not allowed to be an immediate child of " + parentLabel +
                         "    Use parentheses: (x)=>(y) to set the proper scope of the operations.";
                 KException kex = new KException(KException.ExceptionType.ERROR, KException.KExceptionGroup.CRITICAL, msg, tc.source().get(), tc.location().get());
                 return Left.apply(Sets.newHashSet(new PriorityException(kex)));
@@ -17,6 +17,8 @@ import scala.util.Either;
 import scala.util.Left;
 import scala.util.Right;
 
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Apply the priority and associativity filters.
@@ -26,6 +28,12 @@ public class PriorityVisitor extends SetsTransformerWithErrors<ParseFailedExcept
     private final POSet<Tag> priorities;
     private final Set<Tuple2<Tag, Tag>> leftAssoc;
     private final Set<Tuple2<Tag, Tag>> rightAssoc;
+    /**
+     * The result of {@link PriorityVisitor2} only depends on the label of the parent and the side,
+     * so the visitors are shared in order to reuse their caches over subtrees shared between ambiguity branches.
+     */
+    private final Map<Tuple2<Tag, PriorityVisitor2.Side>, PriorityVisitor2> childVisitors = new HashMap<>();
+
     public PriorityVisitor(POSet<Tag> priorities, Set<Tuple2<Tag, Tag>> leftAssoc, Set<Tuple2<Tag, Tag>> rightAssoc) {
         super();
         this.priorities = priorities;
@@ -40,7 +48,7 @@ public class PriorityVisitor extends SetsTransformerWithErrors<ParseFailedExcept
             // match only on the outermost elements
             if (tc.production().items().apply(0) instanceof NonTerminal) {
                 Either<java.util.Set<ParseFailedException>, Term> rez =
-                        new PriorityVisitor2(tc, PriorityVisitor2.Side.LEFT, priorities, leftAssoc, rightAssoc).apply(tc.get(0));
+                        childVisitor(tc, PriorityVisitor2.Side.LEFT).apply(tc.get(0));
                 if (rez.isLeft())
                     return rez;
                 tc = tc.with(0, rez.right().get());
@@ -48,7 +56,7 @@ public class PriorityVisitor extends SetsTransformerWithErrors<ParseFailedExcept
             if (tc.production().items().apply(tc.production().items().size() - 1) instanceof NonTerminal) {
                 int last = tc.items().size() - 1;
                 Either<java.util.Set<ParseFailedException>, Term> rez =
-                        new PriorityVisitor2(tc, PriorityVisitor2.Side.RIGHT, priorities, leftAssoc, rightAssoc).apply(tc.get(last));
+                        childVisitor(tc, PriorityVisitor2.Side.RIGHT).apply(tc.get(last));
                 if (rez.isLeft())
                     return rez;
                 tc = tc.with(last, rez.right().get());
@@ -57,20 +65,26 @@ public class PriorityVisitor extends SetsTransformerWithErrors<ParseFailedExcept
         return super.apply(tc);
     }
 
+    private PriorityVisitor2 childVisitor(TermCons parent, PriorityVisitor2.Side side) {
+        Tag parentLabel = new Tag(parent.production().klabel().get().name());
+        return childVisitors.computeIfAbsent(new Tuple2<>(parentLabel, side),
+                k -> new PriorityVisitor2(parentLabel, side, priorities, leftAssoc, rightAssoc));
+    }
+
     private static class PriorityVisitor2 extends SetsTransformerWithErrors<ParseFailedException> {
         /**
          * Specifies whether the current node is the left most or the right most child of the parent.
          * This is useful because associativity can be checked at the same time with priorities.
          */
         public static enum Side {LEFT, RIGHT}
-        private final TermCons parent;
+        private final Tag parentLabel;
         private final Side side;
         private final POSet<Tag> priorities;
         private final Set<Tuple2<Tag, Tag>> leftAssoc;
         private final Set<Tuple2<Tag, Tag>> rigthAssoc;
 
-        public PriorityVisitor2(TermCons parent, Side side, POSet<Tag> priorities, Set<Tuple2<Tag, Tag>> leftAssoc, Set<Tuple2<Tag, Tag>> rightAssoc) {
-            this.parent = parent;
+        public PriorityVisitor2(Tag parentLabel, Side side, POSet<Tag> priorities, Set<Tuple2<Tag, Tag>> leftAssoc, Set<Tuple2<Tag, Tag>> rightAssoc) {
+            this.parentLabel = parentLabel;
             this.side = side;
             this.priorities = priorities;
             this.leftAssoc = leftAssoc;
@@ -81,7 +95,6 @@ public class PriorityVisitor extends SetsTransformerWithErrors<ParseFailedExcept
             if (tc.production().att().contains("bracket")) return Right.apply(tc);
             //if (Side.RIGHT  == side && !(tc.production().items().apply(0) instanceof NonTerminal)) return Right.apply(tc);
             //if (Side.LEFT == side && !(tc.production().items().apply(tc.production().items().size() - 1) instanceof NonTerminal)) return Right.apply(tc);
-            Tag parentLabel = new Tag(parent.production().klabel().get().name());
             Tag localLabel = new Tag(tc.production().klabel().get().name());
             if (priorities.lessThan(parentLabel, localLabel)) {
                 String msg = "Priority filter exception. Cannot use " + localLabel + " as a child of " + parentLabel;
@@ -3,6 +3,7 @@ package org.kframework.parser.concrete2kore.disambiguation;
 
 import com.google.common.collect.Sets;
 import org.kframework.attributes.Att;
+import org.kframework.definition.Production;
 import org.kframework.parser.Ambiguity;
 import org.kframework.parser.KList;
 import org.kframework.parser.SetsTransformerWithErrors;
@@ -14,6 +15,8 @@ import scala.util.Either;
 import scala.util.Left;
 import scala.util.Right;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 
@@ -21,11 +24,17 @@ import java.util.Set;
  * Remove parsing artifacts such as single element ambiguities.
  */
 public class TreeCleanerVisitor extends SetsTransformerWithErrors<ParseFailedException> {
+    /**
+     * The chain check only depends on the parent production, so one visitor is kept per production
+     * in order to reuse its cache over subtrees shared between ambiguity branches.
+     */
+    private final Map<Production, TreeCleanerVisitor2> childVisitors = new HashMap<>();
+
     @Override
     public Either<Set<ParseFailedException>, Term> apply(TermCons tc) {
         if (tc.production().isSyntacticSubsort()) {
             // eliminating syntactic subsort
-            Either<java.util.Set<ParseFailedException>, Term> rez = new TreeCleanerVisitor2(tc).apply(tc.get(0));
+            Either<java.util.Set<ParseFailedException>, Term> rez = childVisitors.computeIfAbsent(tc.production(), TreeCleanerVisitor2::new).apply(tc.get(0));
             if (rez.isLeft())
                 return rez;
             if (tc.production().klabel().isEmpty())
@@ -59,9 +68,9 @@ public class TreeCleanerVisitor extends SetsTransformerWithErrors<ParseFailedExc
      * Some of productions are excepted though, and are annotated with 'allowChainSubsort'.
      */
     private static class TreeCleanerVisitor2 extends SetsTransformerWithErrors<ParseFailedException> {
-        private final TermCons parent;
+        private final Production parent;
 
-        public TreeCleanerVisitor2(TermCons parent) {
+        public TreeCleanerVisitor2(Production parent) {
             this.parent = parent;
         }
 
@@ -72,10 +81,10 @@ public class TreeCleanerVisitor extends SetsTransformerWithErrors<ParseFailedExc
         public Either<java.util.Set<ParseFailedException>, Term> apply(TermCons tc) {
             if (tc.production().isSyntacticSubsort()
                     && !tc.production().att().contains(Att.allowChainSubsort())
-                    && !parent.production().att().contains(Att.allowChainSubsort())
-                    && (tc.production().att().contains(Att.generatedByAutomaticSubsorting()) || parent.production().att().contains(Att.generatedByAutomaticSubsorting()))) {
+                    && !parent.att().contains(Att.allowChainSubsort())
+                    && (tc.production().att().contains(Att.generatedByAutomaticSubsorting()) || parent.att().contains(Att.generatedByAutomaticSubsorting()))) {
                 String msg = "Unexpected error, please report! Generated subsorts are not allowed as a child of a user subsort." +
-                        "\nParent: " + parent.production().toString() +
+                        "\nParent: " + parent.toString() +
                         "\nChild:  " + tc.production().toString();
                 return Left.apply(Sets.newHashSet(new ParseFailedException(new KException(
                         KException.ExceptionType.ERROR, KException.KExceptionGroup.INTERNAL,
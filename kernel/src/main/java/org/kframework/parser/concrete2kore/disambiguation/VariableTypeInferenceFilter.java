@@ -26,6 +26,7 @@ import org.kframework.utils.errorsystem.ParseFailedException;
 import org.kframework.utils.errorsystem.VariableTypeClashException;
 import org.pcollections.ConsPStack;
 import scala.Tuple2;
+import scala.Tuple4;
 import scala.util.Either;
 import scala.util.Left;
 import scala.util.Right;
@@ -34,6 +35,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
@@ -386,6 +388,12 @@ public class VariableTypeInferenceFilter extends SetsGeneralTransformer<ParseFai
     }
 
     private class CollectVariables extends SetsGeneralTransformer<ParseFailedException, VarInfo> {
+        private final Map<Tuple2<Sort, VarType>, CollectVariables2> childVisitors = new HashMap<>();
+
+        private CollectVariables2 childVisitor(Sort sort, VarType varType) {
+            return childVisitors.computeIfAbsent(new Tuple2<>(sort, varType), k -> new CollectVariables2(sort, varType));
+        }
+
         public Tuple2<Either<java.util.Set<ParseFailedException>, Term>, java.util.Set<VarInfo>> apply(TermCons tc) {
             // TODO: (Radu) if this is cast, take the sort from annotations?
             Set<VarInfo> collector = Sets.newHashSet();
@@ -394,12 +402,12 @@ public class VariableTypeInferenceFilter extends SetsGeneralTransformer<ParseFai
                     || tc.production().klabel().get().name().startsWith("#SemanticCastTo")
                     || tc.production().klabel().get().name().equals("#InnerCast"))) {
                 Term t = tc.get(0);
-                collector = new CollectVariables2(getSortOfCast(tc), VarType.USER).apply(t)._2();
+                collector = childVisitor(getSortOfCast(tc), VarType.USER).apply(t)._2();
             } else {
                 for (int i = 0, j = 0; i < tc.production().items().size(); i++) {
                     if (tc.production().items().apply(i) instanceof NonTerminal) {
                         Term t = tc.get(j);
-                        Set<VarInfo> vars = new CollectVariables2(((NonTerminal) tc.production().items().apply(i)).sort(), VarType.CONTEXT).apply(t)._2();
+                        Set<VarInfo> vars = childVisitor(((NonTerminal) tc.production().items().apply(i)).sort(), VarType.CONTEXT).apply(t)._2();
                         collector.addAll(vars);
                         j++;
                     }
@@ -437,10 +445,17 @@ public class VariableTypeInferenceFilter extends SetsGeneralTransformer<ParseFai
 
     private class ApplyTypeCheck extends SetsTransformerWithErrors<ParseFailedException> {
         private final Map<VarKey, Sort> decl;
+        private final Map<Tuple4<Sort, Boolean, Boolean, Boolean>, ApplyTypeCheck2> childVisitors = new HashMap<>();
+
         public ApplyTypeCheck(Map<VarKey, Sort> decl) {
             this.decl = decl;
         }
 
+        private ApplyTypeCheck2 childVisitor(Sort sort, boolean hasCastAlready, boolean strictSortEquality, boolean addCast) {
+            return childVisitors.computeIfAbsent(new Tuple4<>(sort, hasCastAlready, strictSortEquality, addCast),
+                    k -> new ApplyTypeCheck2(sort, hasCastAlready, strictSortEquality, addCast));
+        }
+
         public Either<java.util.Set<ParseFailedException>, Term> apply(TermCons tc) {
             if (tc.production().klabel().isDefined()
                     && (tc.production().klabel().get().name().equals("#SyntacticCast")
@@ -448,7 +463,7 @@ public class VariableTypeInferenceFilter extends SetsGeneralTransformer<ParseFai
                     || tc.production().klabel().get().name().equals("#InnerCast"))) {
                 Term t = tc.get(0);
                 boolean strictSortEquality = !tc.production().klabel().get().name().startsWith("#SemanticCastTo");
-                Either<Set<ParseFailedException>, Term> rez = new ApplyTypeCheck2(getSortOfCast(tc), true, strictSortEquality, strictSortEquality && inferSortChecks).apply(t);
+                Either<Set<ParseFailedException>, Term> rez = childVisitor(getSortOfCast(tc), true, strictSortEquality, strictSortEquality && inferSortChecks).apply(t);
                 if (rez.isLeft())
                     return rez;
                 tc = tc.with(0, rez.right().get());
@@ -457,7 +472,7 @@ public class VariableTypeInferenceFilter extends SetsGeneralTransformer<ParseFai
                     if (tc.production().items().apply(i) instanceof NonTerminal) {
                         Term t = tc.get(j);
                         Sort s = ((NonTerminal) tc.production().items().apply(i)).sort();
-                        Either<Set<ParseFailedException>, Term> rez = new ApplyTypeCheck2(s, false, false, inferSortChecks).apply(t);
+                        Either<Set<ParseFailedException>, Term> rez = childVisitor(s, false, false, inferSortChecks).apply(t);
                         if (rez.isLeft())
                             return rez;
                         tc = tc.with(j, rez.right().get());
@@ -534,20 +549,41 @@ public class VariableTypeInferenceFilter extends SetsGeneralTransformer<ParseFai
          */
         public Set<Multimap<VarKey, Sort>> vars = new HashSet<>();
         private final Set<VarKey> declaredNames;
+        /**
+         * The constraints collected for each ambiguity branch, shared by all the visitors of a traversal.
+         * A branch only depends on its own subtree, so branches shared between ambiguities are visited once.
+         * The cached sets are never modified.
+         */
+        private final Map<Term, Set<Multimap<VarKey, Sort>>> branchVars;
 
         public CollectExpectedVariablesVisitor(Set<VarKey> declaredNames) {
+            this(declaredNames, new IdentityHashMap<>());
+        }
+
+        private CollectExpectedVariablesVisitor(Set<VarKey> declaredNames, Map<Term, Set<Multimap<VarKey, Sort>>> branchVars) {
             this.declaredNames = declaredNames;
+            this.branchVars = branchVars;
+        }
+
+        private Set<Multimap<VarKey, Sort>> branchVars(Term t) {
+            Set<Multimap<VarKey, Sort>> res = branchVars.get(t);
+            if (res == null) {
+                CollectExpectedVariablesVisitor viz = new CollectExpectedVariablesVisitor(declaredNames, branchVars);
+                viz.apply(t);
+                res = viz.vars;
+                branchVars.put(t, res);
+            }
+            return res;
         }
 
         @Override
         public Term apply(Ambiguity node) {
             Set<Multimap<VarKey, Sort>> newVars = new HashSet<>();
             for (Term t : node.items()) {
-                CollectExpectedVariablesVisitor viz = new CollectExpectedVariablesVisitor(declaredNames);
-                viz.apply(t);
+                Set<Multimap<VarKey, Sort>> branch = branchVars(t);
                 // create the split
                 for (Multimap<VarKey, Sort> elem : vars) { // for every local type restrictions
-                    for (Multimap<VarKey, Sort> elem2 : viz.vars) { // create a combination with every ambiguity detected
+                    for (Multimap<VarKey, Sort> elem2 : branch) { // create a combination with every ambiguity detected
                         Multimap<VarKey, Sort> clone = HashMultimap.create();
                         clone.putAll(elem);
                         clone.putAll(elem2);
@@ -555,7 +591,8 @@ public class VariableTypeInferenceFilter extends SetsGeneralTransformer<ParseFai
                     }
                 }
                 if (vars.size() == 0)
-                    newVars.addAll(viz.vars);
+                    for (Multimap<VarKey, Sort> elem2 : branch)
+                        newVars.add(HashMultimap.create(elem2));
             }
             if (!newVars.isEmpty())
                 vars = newVars;
@@ -14,6 +14,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -61,6 +62,12 @@ public class Grammar implements Serializable {
     /** The set of "root" NonTerminals */
     private BiMap<String, NonTerminal> startNonTerminals = HashBiMap.create();
 
+    /**
+     * The distinct terminals of the grammar, indexed by {@link RegExState#tokenId}.
+     * Computed by {@link #compile()}.
+     */
+    private List<RegExState> tokens = Collections.emptyList();
+
     public boolean add(NonTerminal newNT) {
         if (startNonTerminals.containsKey(newNT.name)) {
             return false;
@@ -160,8 +167,10 @@ public class Grammar implements Serializable {
 
     static final RunAutomaton pattern = new RunAutomaton(new RegExp("("+ multiLine +"|"+ singleLine +"|"+ whites +")*").toAutomaton(), false);
 
+    static final RunAutomaton emptyPattern = new RunAutomaton(BasicAutomata.makeEmpty(), false);
+
     /**
-     * Calculates Nullability and OrderingInfo for all the states in the grammar.
+     * Calculates Nullability, OrderingInfo and the token ids for all the states in the grammar.
      * Must be called before being handed over to the parser, but after
      * the grammar is finished being built.
      */
@@ -179,6 +188,7 @@ public class Grammar implements Serializable {
         for (int i = 0; i < allStates.size(); i++) {
             inverseAllStates.put(allStates.get(i), i);
         }
+        assignTokenIds(allStates);
 
         // prepare the Tarjan input data
         // TODO: java doesn't allow arrays of generic types so we need to move from arrays to ArrayList
@@ -227,6 +237,41 @@ public class Grammar implements Serializable {
         }
     }
 
+    /**
+     * Gives the same token id to all the {@link RegExState}s that match the same terminal
+     * (same precede, main and follow automata), so the parser can scan each terminal
+     * at most once per position, however many states of the grammar use it.
+     * Whitespace states and terminals appearing in many productions share their automata,
+     * so the table is usually much smaller than the number of states.
+     * @param allStates all the states of the grammar.
+     */
+    private void assignTokenIds(List<State> allStates) {
+        Map<RunAutomaton, Map<RunAutomaton, Map<RunAutomaton, RegExState>>> byPatterns = new IdentityHashMap<>();
+        tokens = new ArrayList<>();
+        for (State s : allStates) {
+            if (s instanceof RegExState) {
+                RegExState state = (RegExState) s;
+                RegExState representative = byPatterns
+                        .computeIfAbsent(state.precedePattern, k -> new IdentityHashMap<>())
+                        .computeIfAbsent(state.pattern, k -> new IdentityHashMap<>())
+                        .computeIfAbsent(state.followPattern, k -> state);
+                if (representative == state) {
+                    state.tokenId = tokens.size();
+                    tokens.add(state);
+                } else {
+                    state.tokenId = representative.tokenId;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of distinct terminals in the grammar, after {@link #compile()}.
+     */
+    public int getTokenCount() {
+        return tokens.size();
+    }
+
     /**
      * Recursive DFS that traverses all the states and returns a set of all reachable {@link NonTerminal}.
      * @param start The state from which to run the collector.
@@ -511,9 +556,15 @@ public class Grammar implements Serializable {
         public final RunAutomaton pattern;
         public final RunAutomaton precedePattern;
         public final RunAutomaton followPattern;
+        /**
+         * Identifies the terminal matched by this state. States with the same id match exactly
+         * the same input, so the parser shares their scanning results.
+         * Assigned by {@link Grammar#compile()}; -1 means the results are not shared.
+         */
+        int tokenId = -1;
 
         public RegExState(String name, NonTerminal nt, RunAutomaton pattern) {
-            this(name, nt, new RunAutomaton(BasicAutomata.makeEmpty(), false), pattern, new RunAutomaton(BasicAutomata.makeEmpty(), false));
+            this(name, nt, emptyPattern, pattern, emptyPattern);
         }
 
         public RegExState(String name, NonTerminal nt, RunAutomaton precedePattern, RunAutomaton pattern, RunAutomaton followPattern) {
@@ -39,6 +39,9 @@ public class KSyntax2GrammarStatesFilter {
         Automaton.setMinimization(Automaton.MINIMIZE_BRZOZOWSKI);
         Grammar grammar = new Grammar();
         Set<String> rejects = new HashSet<>();
+        // equal terminals share the same instance, so their automata are built once
+        // and Grammar.compile() gives their states the same token id
+        Map<TerminalLike, TerminalLike> terminals = new HashMap<>();
         // create a NonTerminal for every declared sort
         for (Sort sort : iterable(module.definedSorts())) {
             grammar.add(new NonTerminal(sort.name()));
@@ -48,7 +51,7 @@ public class KSyntax2GrammarStatesFilter {
         }
 
         stream(module.productions()).forEach(p -> collectRejects(p, rejects));
-        stream(module.productions()).collect(Collectors.groupingBy(p -> p.sort())).forEach((sort, prods) -> processProductions(sort, prods, grammar, rejects));
+        stream(module.productions()).collect(Collectors.groupingBy(p -> p.sort())).forEach((sort, prods) -> processProductions(sort, prods, grammar, rejects, terminals));
 
         grammar.addWhiteSpace();
         grammar.compile();
@@ -77,7 +80,8 @@ public class KSyntax2GrammarStatesFilter {
         }
     }
 
-    public static void processProductions(Sort sort, List<Production> prods, Grammar grammar, Set<String> autoRejects) {
+    public static void processProductions(Sort sort, List<Production> prods, Grammar grammar, Set<String> autoRejects,
+                                          Map<TerminalLike, TerminalLike> terminals) {
         NonTerminal nt = grammar.get(sort.name());
         assert nt != null : "Could not find in the grammar the required sort: " + sort;
         // all types of production follow pretty much the same pattern
@@ -106,7 +110,7 @@ public class KSyntax2GrammarStatesFilter {
                     previous.next.add(nts);
                     previous = nts;
                 } else if (prdItem instanceof TerminalLike) {
-                    TerminalLike lx = (TerminalLike) prdItem;
+                    TerminalLike lx = terminals.computeIfAbsent((TerminalLike) prdItem, t -> t);
                     Grammar.PrimitiveState pstate = new Grammar.RegExState(
                             sort.name() + ":" + lx.toString(),
                             nt,
@@ -18,16 +18,21 @@ import org.kframework.parser.concrete2kore.kernel.Grammar.PrimitiveState;
 import org.kframework.parser.concrete2kore.kernel.Grammar.RegExState;
 import org.kframework.parser.concrete2kore.kernel.Grammar.RuleState;
 import org.kframework.parser.concrete2kore.kernel.Grammar.State;
-import org.kframework.utils.algorithms.AutoVivifyingBiMap;
+import org.kframework.utils.algorithms.LongIntHashMap;
+import org.kframework.utils.algorithms.LongObjectHashMap;
 import org.kframework.utils.errorsystem.KException;
 import org.kframework.utils.errorsystem.KException.ExceptionType;
 import org.kframework.utils.errorsystem.KException.KExceptionGroup;
 import org.kframework.utils.errorsystem.ParseFailedException;
 import org.pcollections.ConsPStack;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Set;
-import java.util.TreeSet;
 
 /**
  * This is the main code for running the parser.
@@ -37,12 +42,16 @@ import java.util.TreeSet;
  * ----------------
  *
  * The parser operates by maintaining tables of {@link NonTerminalCall},
- * {@link StateCall} and {@link StateReturn} records. These tables are stored
- * in ParseState and are keyed by {@link NonTerminalCall.Key},
- * {@link StateCall.Key} and {@link StateReturn.Key}. For any given Key, there is
- * a single value that can be looked up in an {@link AutoVivifyingBiMap}.
- * If no value exists for a given Key, then the {@link AutoVivifyingBiMap}
- * will create one.
+ * {@link StateCall} and {@link StateReturn} records. For any given
+ * {@link NonTerminalCall.Key}, {@link StateCall.Key} or {@link StateReturn.Key}
+ * there is a single record, which is created the first time it is looked up.
+ * The tables are keyed by pairs of ints packed in a long, so that looking up a
+ * record does not allocate: {@link NonTerminalCall}s are stored in ParseState
+ * by (non-terminal, begin position), and each {@link NonTerminalCall} stores its
+ * own {@link StateCall}s by (state, begin position) and {@link StateReturn}s by
+ * (state call, end position). See {@link ParseState#ntCall(NonTerminal, int)},
+ * {@link NonTerminalCall#stateCall(int, State)} and
+ * {@link NonTerminalCall#stateReturn(StateCall, int)}.
  *
  * In addition to these tables, a work queue of {@link StateReturn}s
  * to be processed is kept in {@link StateReturnWorkList}.
@@ -54,6 +63,11 @@ import java.util.TreeSet;
  * The main loop of the parser then processes elements in this queue until
  * it is empty.
  *
+ * Terminals are matched directly on the input, as the parser is scannerless.
+ * The result of matching a terminal at a position is kept in ParseState
+ * (keyed by {@link RegExState#tokenId} and position), so a terminal shared by
+ * many states, or reached from many {@link NonTerminalCall}s, is scanned only once.
+ *
  * See {@link NonTerminalCall}, {@link StateCall} and {@link StateReturn}
  * (preferably in that order) for more information.
  *
@@ -100,8 +114,10 @@ public class Parser {
     private static class StateCall {
         /** The {@link Function} storing the AST parsed so far */
         final Function function = Function.empty();
+        /** The index of this StateCall in its {@link NonTerminalCall}, used to key its {@link StateReturn}s */
+        final int index;
 
-        private static class Key implements AutoVivifyingBiMap.Create<StateCall> {
+        private static class Key {
             /** The {@link NonTerminalCall} containing this StateCall */
             final NonTerminalCall ntCall;
             /** The start position of this StateCall */
@@ -118,8 +134,6 @@ public class Parser {
                 this.hashCode = computeHash();
             }
 
-            public StateCall create() { return new StateCall(this); }
-
             @Override
             public boolean equals(Object o) {
                 if (this == o) return true;
@@ -151,7 +165,7 @@ public class Parser {
             }
         }
         final Key key;
-        StateCall(Key key) { assert key != null; this.key = key; }
+        StateCall(Key key, int index) { assert key != null; this.key = key; this.index = index; }
 
         public int hashCode() {
             return this.key.hashCode();
@@ -172,6 +186,8 @@ public class Parser {
         final Function function = Function.empty();
 
         private final int[] orderingInfo = new int[5];
+        /** Whether this StateReturn is currently in the {@link StateReturnWorkList} */
+        boolean enqueued = false;
 
         public int compareTo(StateReturn that) {
             // The following idiom is a short-circuiting, integer "and
@@ -204,7 +220,7 @@ public class Parser {
             return 0;
         }
 
-        private static class Key implements AutoVivifyingBiMap.Create<StateReturn> {
+        private static class Key {
             /** The {@link StateCall} that this StateReturn finishes */
             public final StateCall stateCall;
             /** The end position of the parse */
@@ -217,8 +233,6 @@ public class Parser {
                 this.hashCode = computeHash();
             }
 
-            public StateReturn create() { return new StateReturn(this); }
-
             @Override
             public boolean equals(Object o) {
                 if (this == o) return true;
@@ -311,7 +325,39 @@ public class Parser {
         final Set<StateCall> callers = new HashSet<>();
         /** The {@link StateReturn}s for the {@link ExitState} in this NonTerminalCall */
         final Set<StateReturn> exitStateReturns = new HashSet<>();
-        private static class Key implements AutoVivifyingBiMap.Create<NonTerminalCall> {
+        /** The {@link StateCall}s of this NonTerminalCall, keyed by state and begin position */
+        final LongObjectHashMap<StateCall> stateCalls = new LongObjectHashMap<>();
+        /** The {@link StateReturn}s of this NonTerminalCall, keyed by state call index and end position */
+        final LongObjectHashMap<StateReturn> stateReturns = new LongObjectHashMap<>();
+
+        /**
+         * Returns the {@link StateCall} for the given state and begin position, creating it if needed.
+         */
+        StateCall stateCall(int stateBegin, State state) {
+            long k = LongIntHashMap.pack(state.unique, stateBegin);
+            StateCall stateCall = stateCalls.get(k);
+            if (stateCall == null) {
+                stateCall = new StateCall(new StateCall.Key(this, stateBegin, state), stateCalls.size());
+                stateCalls.put(k, stateCall);
+            }
+            return stateCall;
+        }
+
+        /**
+         * Returns the {@link StateReturn} for the given state call and end position, creating it if needed.
+         */
+        StateReturn stateReturn(StateCall stateCall, int stateEnd) {
+            assert stateCall.key.ntCall == this;
+            long k = LongIntHashMap.pack(stateCall.index, stateEnd);
+            StateReturn stateReturn = stateReturns.get(k);
+            if (stateReturn == null) {
+                stateReturn = new StateReturn(new StateReturn.Key(stateCall, stateEnd));
+                stateReturns.put(k, stateReturn);
+            }
+            return stateReturn;
+        }
+
+        private static class Key {
             /** The {@link NonTerminal} being called */
             public final NonTerminal nt;
             /** The start position for parsing the {@link NonTerminal} */
@@ -325,8 +371,6 @@ public class Parser {
                 this.hashCode = computeHash();
             }
 
-            public NonTerminalCall create() { return new NonTerminalCall(this); }
-
             @Override
             public boolean equals(Object o) {
                 if (this == o) return true;
@@ -367,20 +411,41 @@ public class Parser {
 
     ////////////////
 
+    /**
+     * The {@link StateReturn}s waiting to be processed, bucketed by the begin position
+     * of their {@link NonTerminalCall}. Since that position is the first (contravariant)
+     * criterion of {@link StateReturn#compareTo(StateReturn)}, buckets are processed from
+     * the last position to the first, and a heap gives the order inside a bucket.
+     */
     private static class StateReturnWorkList {
-        private final HashSet<StateReturn> contains = new HashSet<>();
-        private final TreeSet<StateReturn> ordering = new TreeSet<>();
-        public void enqueue(StateReturn stateReturn) {
-            if (!contains.add(stateReturn)) return;
-            ordering.add(stateReturn);
+        private final PriorityQueue<StateReturn>[] buckets;
+        private final BitSet nonEmpty = new BitSet();
+
+        @SuppressWarnings("unchecked")
+        StateReturnWorkList(int inputLength) {
+            buckets = new PriorityQueue[inputLength + 1];
         }
-        public void addAll(Set<? extends StateReturn> c) {
-            if (!contains.addAll(c)) return;
-            ordering.addAll(c);
+
+        public void enqueue(StateReturn stateReturn) {
+            if (stateReturn.enqueued) return;
+            stateReturn.enqueued = true;
+            int bucket = stateReturn.key.stateCall.key.ntCall.key.ntBegin;
+            if (buckets[bucket] == null) {
+                buckets[bucket] = new PriorityQueue<>();
+                nonEmpty.set(bucket);
+            }
+            buckets[bucket].add(stateReturn);
         }
+
         public StateReturn dequeue() {
-            StateReturn next = ordering.pollFirst();
-            contains.remove(next);
+            int bucket = nonEmpty.length() - 1;
+            if (bucket < 0) return null;
+            StateReturn next = buckets[bucket].poll();
+            if (buckets[bucket].isEmpty()) {
+                buckets[bucket] = null;
+                nonEmpty.clear(bucket);
+            }
+            next.enqueued = false;
             return next;
         }
     }
@@ -394,15 +459,16 @@ public class Parser {
         // the reverse input used for precede restrictions
         final String reverseInput;
         // a priority queue containing the return states to be processed
-        final StateReturnWorkList stateReturnWorkList = new StateReturnWorkList();
+        final StateReturnWorkList stateReturnWorkList;
         // a preprocessed correspondence from index to line and column in the input string
         // TODO: replace lines and columns with Location class
         // TODO: extract Location class into it's own file
         final int[] lines;
         final int[] columns;
-        AutoVivifyingBiMap<NonTerminalCall.Key, NonTerminalCall> ntCalls = new AutoVivifyingBiMap<>();
-        AutoVivifyingBiMap<StateCall.Key, StateCall> stateCalls = new AutoVivifyingBiMap<>();
-        AutoVivifyingBiMap<StateReturn.Key, StateReturn> stateReturns = new AutoVivifyingBiMap<>();
+        // the non-terminal calls, keyed by non-terminal and begin position
+        final LongObjectHashMap<NonTerminalCall> ntCalls = new LongObjectHashMap<>();
+        // the end of the match of each token, keyed by token id and start position
+        final LongIntHashMap scanned = new LongIntHashMap();
 
         public ParseState(String input, int startLine, int startColumn) {
             /**
@@ -414,6 +480,7 @@ public class Parser {
              * http://www.unicode.org/reports/tr18/#Line_Boundaries
              */
             this.input = input;
+            this.stateReturnWorkList = new StateReturnWorkList(input.length());
             this.reverseInput = new StringBuilder(input).reverse().toString();
             lines = new int[input.length()+1];
             columns = new int[input.length()+1];
@@ -445,6 +512,20 @@ public class Parser {
             lines[input.length()] = l;
             columns[input.length()] = c;
         }
+
+        /**
+         * Returns the {@link NonTerminalCall} for the given non-terminal and begin position, creating it if needed.
+         * Non-terminals are identified by the unique id of their entry state.
+         */
+        NonTerminalCall ntCall(NonTerminal nt, int ntBegin) {
+            long k = LongIntHashMap.pack(nt.entryState.unique, ntBegin);
+            NonTerminalCall ntCall = ntCalls.get(k);
+            if (ntCall == null) {
+                ntCall = new NonTerminalCall(new NonTerminalCall.Key(nt, ntBegin));
+                ntCalls.put(k, ntCall);
+            }
+            return ntCall;
+        }
     }
 
     ////////////////
@@ -554,8 +635,7 @@ public class Parser {
      */
     public Term parse(NonTerminal nt, int position) {
         assert nt != null : "Start symbol cannot be null.";
-        activateStateCall(s.stateCalls.get(new StateCall.Key(s.ntCalls.get(
-            new NonTerminalCall.Key(nt, position)), position, nt.entryState)),
+        activateStateCall(s.ntCall(nt, position).stateCall(position, nt.entryState),
             Function.IDENTITY);
 
         for (StateReturn stateReturn;
@@ -564,7 +644,7 @@ public class Parser {
         }
 
         Ambiguity result = Ambiguity.apply(new HashSet<>());
-        for(StateReturn stateReturn : s.ntCalls.get(new NonTerminalCall.Key(nt,position)).exitStateReturns) {
+        for(StateReturn stateReturn : s.ntCall(nt, position).exitStateReturns) {
             if (stateReturn.key.stateEnd == s.input.length()) {
                 result.items().add(KList.apply(ConsPStack.singleton(Ambiguity.apply(stateReturn.function.values))));
             }
@@ -594,13 +674,15 @@ public class Parser {
      * maximum point in the input string.
      */
     public ParseError getErrors() {
+        List<StateCall.Key> stateCallKeys = new ArrayList<>();
+        s.ntCalls.forEachValue(ntCall -> ntCall.stateCalls.forEachValue(stateCall -> stateCallKeys.add(stateCall.key)));
         int current = 0;
-        for (StateCall.Key key : s.stateCalls.keySet()) {
+        for (StateCall.Key key : stateCallKeys) {
             if (key.state instanceof PrimitiveState)
                 current = Math.max(current, key.stateBegin);
         }
         Set<Pair<Production, RegExState>> tokens = new HashSet<>();
-        for (StateCall.Key key : s.stateCalls.keySet()) {
+        for (StateCall.Key key : stateCallKeys) {
             if (key.state instanceof RegExState && key.stateBegin == current) {
                 tokens.add(new ImmutablePair<>(
                     null, ((RegExState) key.state)));
@@ -635,6 +717,29 @@ public class Parser {
 
     private AssertionError unknownStateType() { return new AssertionError("Unknown state type"); }
 
+    private static final int NO_MATCH = -1;
+    private static final int NOT_SCANNED = -2;
+
+    // match a primitive state at the given position, reusing the result
+    // of any state that matches the same token at that position
+    private Set<PrimitiveState.MatchResult> matches(PrimitiveState state, int position) {
+        if (!(state instanceof RegExState) || ((RegExState) state).tokenId < 0) {
+            return state.matches(s.input, s.reverseInput, position);
+        }
+        long key = LongIntHashMap.pack(((RegExState) state).tokenId, position);
+        int matchEnd = s.scanned.get(key, NOT_SCANNED);
+        if (matchEnd == NOT_SCANNED) {
+            Set<PrimitiveState.MatchResult> matchResults = state.matches(s.input, s.reverseInput, position);
+            assert matchResults.size() <= 1 : "Expected at most one match for a regular expression.";
+            matchEnd = matchResults.isEmpty() ? NO_MATCH : matchResults.iterator().next().matchEnd;
+            s.scanned.put(key, matchEnd);
+        }
+        if (matchEnd == NO_MATCH) {
+            return Collections.emptySet();
+        }
+        return Collections.singleton(new PrimitiveState.MatchResult(matchEnd));
+    }
+
     // finish the process of one state return from the work list
     private void workListStep(StateReturn stateReturn) {
         if (finishStateReturn(stateReturn)) {
@@ -642,13 +747,12 @@ public class Parser {
             if (state instanceof ExitState) {
                 for (StateCall stateCall : stateReturn.key.stateCall.key.ntCall.callers) {
                     s.stateReturnWorkList.enqueue(
-                        s.stateReturns.get(
-                            new StateReturn.Key(stateCall, stateReturn.key.stateEnd)));
+                        stateCall.key.ntCall.stateReturn(stateCall, stateReturn.key.stateEnd));
                 }
             } else if (state instanceof NextableState) {
                 for (State nextState : ((NextableState) state).next) {
-                    activateStateCall(s.stateCalls.get(new StateCall.Key(
-                        stateReturn.key.stateCall.key.ntCall, stateReturn.key.stateEnd, nextState)),
+                    activateStateCall(stateReturn.key.stateCall.key.ntCall.stateCall(
+                        stateReturn.key.stateEnd, nextState),
                         stateReturn.function);
                 }
             } else { throw unknownStateType(); }
@@ -674,16 +778,13 @@ public class Parser {
                     new Rule.MetaData.Location(endPosition, s.lines[endPosition], s.columns[endPosition]),
                     s.input));
         } else if (stateReturn.key.stateCall.key.state instanceof NonTerminalState) {
+            NonTerminal child = ((Grammar.NonTerminalState) stateReturn.key.stateCall.key.state).child;
+            NonTerminalCall childCall = s.ntCall(child, stateReturn.key.stateCall.key.stateBegin);
             return stateReturn.function.addNTCall(
                 stateReturn.key.stateCall.function,
-                s.stateReturns.get(new StateReturn.Key(
-                    s.stateCalls.get(new StateCall.Key(
-                        s.ntCalls.get(new NonTerminalCall.Key(
-                            ((Grammar.NonTerminalState) stateReturn.key.stateCall.key.state).child,
-                            stateReturn.key.stateCall.key.stateBegin)),
-                        stateReturn.key.stateEnd,
-                        ((Grammar.NonTerminalState) stateReturn.key.stateCall.key.state).child.exitState)),
-                    stateReturn.key.stateEnd)).function);
+                childCall.stateReturn(
+                    childCall.stateCall(stateReturn.key.stateEnd, child.exitState),
+                    stateReturn.key.stateEnd).function);
         } else { throw unknownStateType(); }
     }
 
@@ -697,30 +798,25 @@ public class Parser {
             nextState instanceof ExitState ||
             nextState instanceof RuleState) {
             s.stateReturnWorkList.enqueue(
-                s.stateReturns.get(
-                    new StateReturn.Key(stateCall, stateCall.key.stateBegin)));
+                stateCall.key.ntCall.stateReturn(stateCall, stateCall.key.stateBegin));
         } else if (nextState instanceof PrimitiveState) {
             for (PrimitiveState.MatchResult matchResult :
-                    ((PrimitiveState)nextState).matches(s.input, s.reverseInput, stateCall.key.stateBegin)) {
+                    matches((PrimitiveState) nextState, stateCall.key.stateBegin)) {
                 s.stateReturnWorkList.enqueue(
-                    s.stateReturns.get(
-                        new StateReturn.Key(stateCall, matchResult.matchEnd)));
+                    stateCall.key.ntCall.stateReturn(stateCall, matchResult.matchEnd));
             }
         // not instanceof SimpleState
         } else if (nextState instanceof NonTerminalState) {
             // add to the ntCall
-            NonTerminalCall ntCall = s.ntCalls.get(new NonTerminalCall.Key(
-                ((NonTerminalState) nextState).child, stateCall.key.stateBegin));
+            NonTerminalCall ntCall = s.ntCall(((NonTerminalState) nextState).child, stateCall.key.stateBegin);
             ntCall.callers.add(stateCall);
             // activate the entry state call (almost like activateStateCall but we have no stateReturn)
-            StateCall entryStateCall = s.stateCalls.get(new StateCall.Key(
-                ntCall, stateCall.key.stateBegin, ntCall.key.nt.entryState));
+            StateCall entryStateCall = ntCall.stateCall(stateCall.key.stateBegin, ntCall.key.nt.entryState);
             activateStateCall(entryStateCall, Function.IDENTITY);
             // process existStateReturns already done in the ntCall
             for (StateReturn exitStateReturn : ntCall.exitStateReturns) {
                 s.stateReturnWorkList.enqueue(
-                    s.stateReturns.get(
-                        new StateReturn.Key(stateCall, exitStateReturn.key.stateEnd)));
+                    stateCall.key.ntCall.stateReturn(stateCall, exitStateReturn.key.stateEnd));
             }
         } else { throw unknownStateType(); }
     }
@@ -16,11 +16,18 @@ import org.kframework.utils.errorsystem.KEMException;
 import org.pcollections.ConsPStack;
 import scala.Tuple2;
 import scala.collection.Seq;
-import scala.collection.Set;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 import static org.kframework.Collections.*;
 import static scala.compat.java8.JFunction.*;
@@ -38,27 +45,98 @@ public class AddBrackets {
         this.m = m;
     }
 
+    /**
+     * Adds brackets to a whole term. Large terms are cut into pieces as by {@link ParallelUnparser}, which are
+     * processed in parallel on the common fork-join pool.
+     */
     public ProductionReference addBrackets(ProductionReference t) {
-        return addBrackets(t, null, null);
+        Set<Term> roots = ParallelUnparser.chunkRoots(t, ParallelUnparser.GRAIN);
+        if (roots.isEmpty()) {
+            return addBrackets(t, null, null);
+        }
+        return ForkJoinPool.commonPool().invoke(new AddBracketsTask(t, null, null, roots));
     }
 
     public ProductionReference addBrackets(ProductionReference t, ProductionReference previousLeftCapture, ProductionReference previousRightCapture) {
+        return addBrackets(t, previousLeftCapture, previousRightCapture, Collections.emptySet());
+    }
+
+    private class AddBracketsTask extends RecursiveTask<ProductionReference> {
+        private final ProductionReference t;
+        private final ProductionReference previousLeftCapture;
+        private final ProductionReference previousRightCapture;
+        private final Set<Term> roots;
+
+        AddBracketsTask(ProductionReference t, ProductionReference previousLeftCapture, ProductionReference previousRightCapture, Set<Term> roots) {
+            this.t = t;
+            this.previousLeftCapture = previousLeftCapture;
+            this.previousRightCapture = previousRightCapture;
+            this.roots = roots;
+        }
+
+        @Override
+        protected ProductionReference compute() {
+            return addBrackets(t, previousLeftCapture, previousRightCapture, roots);
+        }
+    }
+
+    private static class Frame {
+        final TermCons outer;
+        final ProductionReference previousLeftCapture;
+        final ProductionReference previousRightCapture;
+        final Iterator<Term> items;
+        // ProductionReferences, or the tasks computing them
+        final List<Object> newItems = new ArrayList<>();
+
+        Frame(TermCons outer, ProductionReference previousLeftCapture, ProductionReference previousRightCapture) {
+            this.outer = outer;
+            this.previousLeftCapture = previousLeftCapture;
+            this.previousRightCapture = previousRightCapture;
+            this.items = outer.items().iterator();
+        }
+    }
+
+    /**
+     * Traverses the term with an explicit stack, forking a task for each subterm in roots.
+     */
+    @SuppressWarnings("unchecked")
+    private ProductionReference addBrackets(ProductionReference t, ProductionReference previousLeftCapture, ProductionReference previousRightCapture, Set<Term> roots) {
         if (t instanceof Constant) {
             return t;
         }
-        TermCons outer = (TermCons)t;
-        List<Term> newItems = new ArrayList<>();
-        for (Term t2 : outer.items()) {
-            ProductionReference inner = (ProductionReference) t2;
-            EnumSet<Fixity> fixity = getFixity(outer);
-            int position = getPosition(inner, outer);
-            ProductionReference leftCapture = getLeftCapture(previousLeftCapture, outer, inner);
-            ProductionReference rightCapture = getRightCapture(previousRightCapture, outer, inner);
-            ProductionReference newInner = addBrackets(inner, outer, leftCapture, rightCapture);
-            newInner = addBrackets(newInner, leftCapture, rightCapture);
-            newItems.add(newInner);
+        Deque<Frame> stack = new ArrayDeque<>();
+        stack.push(new Frame((TermCons) t, previousLeftCapture, previousRightCapture));
+        while (true) {
+            Frame frame = stack.peek();
+            if (frame.items.hasNext()) {
+                ProductionReference inner = (ProductionReference) frame.items.next();
+                ProductionReference leftCapture = getLeftCapture(frame.previousLeftCapture, frame.outer, inner);
+                ProductionReference rightCapture = getRightCapture(frame.previousRightCapture, frame.outer, inner);
+                ProductionReference newInner = addBrackets(inner, frame.outer, leftCapture, rightCapture);
+                if (newInner instanceof Constant) {
+                    frame.newItems.add(newInner);
+                } else if (roots.contains(newInner)) {
+                    frame.newItems.add(new AddBracketsTask(newInner, leftCapture, rightCapture, roots).fork());
+                } else {
+                    stack.push(new Frame((TermCons) newInner, leftCapture, rightCapture));
+                }
+            } else {
+                stack.pop();
+                List<Term> newItems = new ArrayList<>();
+                for (Object item : frame.newItems) {
+                    if (item instanceof ForkJoinTask) {
+                        newItems.add(((ForkJoinTask<ProductionReference>) item).join());
+                    } else {
+                        newItems.add((Term) item);
+                    }
+                }
+                ProductionReference result = TermCons.apply(ConsPStack.from(newItems), frame.outer.production());
+                if (stack.isEmpty()) {
+                    return result;
+                }
+                stack.peek().newItems.add(result);
+            }
         }
-        return TermCons.apply(ConsPStack.from(newItems), outer.production());
     }
 
     public ProductionReference addBrackets(ProductionReference inner, TermCons outer, ProductionReference leftCapture, ProductionReference rightCapture) {
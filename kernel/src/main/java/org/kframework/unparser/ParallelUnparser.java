@@ -0,0 +1,171 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.unparser;
+
+import org.kframework.parser.Term;
+import org.kframework.parser.TermCons;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static scala.compat.java8.JFunction.*;
+
+/**
+ * Unparses large terms on the common fork-join pool.
+ *
+ * The term is cut at some of its subterms (see {@link #chunkRoots(Term, int)}) into pieces of about {@link #GRAIN}
+ * nodes, and each piece is unparsed by its own task into a list of fragments, with a placeholder for every piece
+ * below it. The fragments are then written in order, so the output is the same as the one of
+ * {@link KOREToTreeNodes#unparse(Term, Appendable)}. Terms with fewer nodes are unparsed on the calling thread.
+ * Only a few pieces ahead of the one being written are unparsed at any time, so the fragments held in memory do
+ * not grow with the size of the term.
+ */
+public class ParallelUnparser {
+
+    /**
+     * The approximate number of nodes processed by each task.
+     */
+    static final int GRAIN = 1 << 12;
+
+    /**
+     * The number of pieces being unparsed or waiting to be written at any time.
+     */
+    private static final int WINDOW = 2 * ForkJoinPool.getCommonPoolParallelism();
+
+    private ParallelUnparser() {}
+
+    public static void unparse(Term t, Appendable out) throws IOException {
+        Set<Term> roots = chunkRoots(t, GRAIN);
+        if (roots.isEmpty()) {
+            KOREToTreeNodes.unparse(t, out);
+            return;
+        }
+        // the pieces are submitted in the order in which they are written, as those before are consumed
+        Iterator<Term> pending = inOrder(t, roots).iterator();
+        Set<Term> rendered = Collections.newSetFromMap(new IdentityHashMap<>());
+        Map<Term, ForkJoinTask<List<Object>>> tasks = new IdentityHashMap<>();
+        Deque<Iterator<Object>> stack = new ArrayDeque<>();
+        stack.push(render(t, roots).iterator());
+        while (!stack.isEmpty()) {
+            Iterator<Object> fragments = stack.peek();
+            if (!fragments.hasNext()) {
+                stack.pop();
+                continue;
+            }
+            Object next = fragments.next();
+            if (next instanceof String) {
+                out.append((String) next);
+            } else {
+                Term root = (Term) next;
+                rendered.add(root);
+                ForkJoinTask<List<Object>> task = tasks.remove(root);
+                while (tasks.size() < WINDOW && pending.hasNext()) {
+                    Term pendingRoot = pending.next();
+                    if (!rendered.contains(pendingRoot)) {
+                        tasks.put(pendingRoot, ForkJoinPool.commonPool().submit(() -> render(pendingRoot, roots)));
+                    }
+                }
+                // a format may write the pieces out of order, in which case this one may not be submitted yet
+                stack.push((task == null ? render(root, roots) : task.join()).iterator());
+            }
+        }
+    }
+
+    /**
+     * @return the roots in the order of a pre-order traversal of t, which is the order in which their text is
+     * written unless a format of a production reorders its arguments.
+     */
+    private static List<Term> inOrder(Term t, Set<Term> roots) {
+        List<Term> inOrder = new ArrayList<>();
+        Deque<Term> stack = new ArrayDeque<>();
+        stack.push(t);
+        while (!stack.isEmpty()) {
+            Term node = stack.pop();
+            if (roots.contains(node)) {
+                inOrder.add(node);
+            }
+            if (node instanceof TermCons) {
+                // the items are stored last first, so the first is pushed last
+                for (Term item : ((TermCons) node).items()) {
+                    stack.push(item);
+                }
+            }
+        }
+        return inOrder;
+    }
+
+    /**
+     * @return the text of t as a list of Strings, with the roots of the pieces below it in place of their text.
+     */
+    private static List<Object> render(Term t, Set<Term> roots) {
+        List<Object> fragments = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        KOREToTreeNodes.unparse(t, sb, func(roots::contains), proc(root -> {
+            if (sb.length() > 0) {
+                fragments.add(sb.toString());
+                sb.setLength(0);
+            }
+            fragments.add(root);
+        }));
+        if (sb.length() > 0) {
+            fragments.add(sb.toString());
+        }
+        return fragments;
+    }
+
+    /**
+     * Cuts a term into pieces of at least grain nodes each, except for the piece containing the term itself.
+     * Working up from the leaves, a subterm becomes the root of a piece when the nodes below it that are not yet in
+     * a piece, plus itself, number at least grain. So long lists and deeply nested terms are cut as well as wide
+     * ones, and the number of pieces is at most the size of the term divided by grain.
+     * @return the roots of the pieces other than t, compared by identity.
+     */
+    static Set<Term> chunkRoots(Term t, int grain) {
+        Set<Term> roots = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Term> nodes = new ArrayList<>();
+        int[] parents = new int[16];
+        nodes.add(t);
+        parents[0] = -1;
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(0);
+        // number the nodes so that every node comes after its parent
+        while (!stack.isEmpty()) {
+            int parent = stack.pop();
+            Term node = nodes.get(parent);
+            if (node instanceof TermCons) {
+                for (Term child : ((TermCons) node).items()) {
+                    int idx = nodes.size();
+                    nodes.add(child);
+                    if (idx == parents.length) {
+                        parents = Arrays.copyOf(parents, parents.length * 2);
+                    }
+                    parents[idx] = parent;
+                    stack.push(idx);
+                }
+            }
+        }
+        if (nodes.size() < 2 * grain) {
+            return roots;
+        }
+        int[] sizes = new int[nodes.size()];
+        Arrays.fill(sizes, 1);
+        for (int i = nodes.size() - 1; i > 0; i--) {
+            if (sizes[i] >= grain) {
+                roots.add(nodes.get(i));
+            } else {
+                sizes[parents[i]] += sizes[i];
+            }
+        }
+        return roots;
+    }
+}
@@ -47,6 +47,24 @@ public class ToBinary {
         return out.toByteArray();
     }
 
+    /**
+     * Returns a writer of a sequence of terms which share one intern table, so that a string is only written the first
+     * time it appears in any of them. The terms are written without the magic header and version, each terminated by
+     * {@link BinaryParser#END}, and must be read back in the same order by {@link BinaryParser#stream()}.
+     */
+    public static ToBinary stream(DataOutputStream out) {
+        return new ToBinary(out);
+    }
+
+    public void write(K k) {
+        try {
+            traverse(k);
+            data.writeByte(BinaryParser.END);
+        } catch (IOException e) {
+            throw KEMException.criticalError("Could not write K term to binary", e, k);
+        }
+    }
+
     DataOutputStream data;
     Map<String, Integer> interns = new HashMap<>();
 
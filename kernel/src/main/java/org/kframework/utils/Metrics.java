@@ -0,0 +1,359 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.utils;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide counters and latency histograms, exported as JSON.
+ *
+ * The metrics are registered once, usually in static fields, and updated from any thread. Their values are striped
+ * across threads with {@link LongAdder}, so that threads updating the same metric do not contend. While the metrics
+ * are disabled, which is the default, updating them costs a single read of a volatile field.
+ *
+ * In kserver, the metrics are shared by all the requests, so they include those of the requests running
+ * concurrently. They are either enabled for the whole process with {@link #enable}, e.g. by kserver --metrics, or
+ * only while some run which needs them is running, with {@link #beginRun} and {@link #endRun}.
+ */
+public final class Metrics {
+
+    private static volatile boolean enabled;
+    /* whether the metrics are enabled for the whole process, and the number of runs which enabled them */
+    private static boolean always;
+    private static int runs;
+
+    private static final ConcurrentMap<String, Metric> metrics = new ConcurrentHashMap<>();
+
+    private Metrics() {}
+
+    public static synchronized void enable() {
+        always = true;
+        enabled = true;
+    }
+
+    /**
+     * Undoes {@link #enable}. The metrics stay enabled while some run which called {@link #beginRun} is running.
+     */
+    public static synchronized void disable() {
+        always = false;
+        enabled = runs > 0;
+    }
+
+    /**
+     * Enables the metrics until the matching call to {@link #endRun}.
+     */
+    public static synchronized void beginRun() {
+        runs++;
+        enabled = true;
+    }
+
+    public static synchronized void endRun() {
+        runs--;
+        enabled = always || runs > 0;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the start of an interval to pass to {@link Histogram#stop}, or 0 if the metrics are disabled.
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public static Counter counter(String name) {
+        return register(name, Counter::new);
+    }
+
+    public static Histogram histogram(String name) {
+        return register(name, Histogram::new);
+    }
+
+    public static HitRate hitRate(String name) {
+        return register(name, HitRate::new);
+    }
+
+    /**
+     * @return a counter for each key, e.g. for each rule.
+     */
+    public static Family<Counter> counters(String name) {
+        return register(name, () -> new Family<>(Counter::new, Counter::addTo));
+    }
+
+    /**
+     * @return a histogram for each key, e.g. for each function.
+     */
+    public static Family<Histogram> histograms(String name) {
+        return register(name, () -> new Family<>(Histogram::new, Histogram::addTo));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <M extends Metric> M register(String name, Supplier<M> metric) {
+        return (M) metrics.computeIfAbsent(name, n -> metric.get());
+    }
+
+    /**
+     * Sets all the metrics back to zero.
+     */
+    public static void reset() {
+        metrics.values().forEach(Metric::reset);
+    }
+
+    /**
+     * @return the values of the metrics, as a JSON object mapping their names to their values.
+     */
+    public static String toJson() {
+        StringBuilder sb = new StringBuilder();
+        writeObject(sb, new TreeMap<>(metrics), "");
+        return sb.append('\n').toString();
+    }
+
+    private static void writeObject(StringBuilder sb, Map<String, ? extends Metric> values, String indent) {
+        sb.append('{');
+        String separator = "\n";
+        for (Map.Entry<String, ? extends Metric> entry : values.entrySet()) {
+            sb.append(separator).append(indent).append("  ");
+            writeString(sb, entry.getKey());
+            sb.append(": ");
+            entry.getValue().writeJson(sb, indent + "  ");
+            separator = ",\n";
+        }
+        if (!values.isEmpty()) {
+            sb.append('\n').append(indent);
+        }
+        sb.append('}');
+    }
+
+    private static void writeString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < ' ') {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    public interface Metric {
+        void reset();
+
+        void writeJson(StringBuilder sb, String indent);
+    }
+
+    public static final class Counter implements Metric {
+        private final LongAdder count = new LongAdder();
+
+        public void inc() {
+            if (enabled) {
+                count.increment();
+            }
+        }
+
+        public void add(long n) {
+            if (enabled) {
+                count.add(n);
+            }
+        }
+
+        public long get() {
+            return count.sum();
+        }
+
+        @Override
+        public void reset() {
+            count.reset();
+        }
+
+        private void addTo(Counter other) {
+            other.count.add(count.sum());
+        }
+
+        @Override
+        public void writeJson(StringBuilder sb, String indent) {
+            sb.append(count.sum());
+        }
+    }
+
+    /**
+     * The number, total and maximum of durations in nanoseconds, and their distribution in buckets whose bounds are
+     * powers of 2.
+     */
+    public static final class Histogram implements Metric {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+        /* bucket i counts the durations d such that 2^(i-1) <= d < 2^i */
+        private final LongAdder[] buckets = new LongAdder[Long.SIZE];
+
+        public Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Records the time since {@code start}, as returned by {@link Metrics#start}.
+         */
+        public void stop(long start) {
+            if (start != 0) {
+                record(System.nanoTime() - start);
+            }
+        }
+
+        public void record(long nanos) {
+            if (!enabled || nanos < 0) {
+                return;
+            }
+            count.increment();
+            total.add(nanos);
+            max.accumulate(nanos);
+            buckets[Math.min(buckets.length - 1, Long.SIZE - Long.numberOfLeadingZeros(nanos))].increment();
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public long totalNanos() {
+            return total.sum();
+        }
+
+        @Override
+        public void reset() {
+            count.reset();
+            total.reset();
+            max.reset();
+            for (LongAdder bucket : buckets) {
+                bucket.reset();
+            }
+        }
+
+        private void addTo(Histogram other) {
+            other.count.add(count.sum());
+            other.total.add(total.sum());
+            other.max.accumulate(max.get());
+            for (int i = 0; i < buckets.length; i++) {
+                other.buckets[i].add(buckets[i].sum());
+            }
+        }
+
+        @Override
+        public void writeJson(StringBuilder sb, String indent) {
+            sb.append("{\"count\": ").append(count.sum())
+                    .append(", \"totalNanos\": ").append(total.sum())
+                    .append(", \"maxNanos\": ").append(max.get())
+                    .append(", \"buckets\": {");
+            String separator = "";
+            for (int i = 0; i < buckets.length; i++) {
+                long n = buckets[i].sum();
+                if (n != 0) {
+                    sb.append(separator).append("\"<").append(1L << i).append("\": ").append(n);
+                    separator = ", ";
+                }
+            }
+            sb.append("}}");
+        }
+    }
+
+    /**
+     * The hits and misses of a cache.
+     */
+    public static final class HitRate implements Metric {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        public void hit() {
+            if (enabled) {
+                hits.increment();
+            }
+        }
+
+        public void miss() {
+            if (enabled) {
+                misses.increment();
+            }
+        }
+
+        @Override
+        public void reset() {
+            hits.reset();
+            misses.reset();
+        }
+
+        @Override
+        public void writeJson(StringBuilder sb, String indent) {
+            long h = hits.sum(), m = misses.sum();
+            sb.append("{\"hits\": ").append(h)
+                    .append(", \"misses\": ").append(m)
+                    .append(", \"hitRate\": ").append(h + m == 0 ? 0 : (double) h / (h + m))
+                    .append('}');
+        }
+    }
+
+    /**
+     * A metric for each key. The keys are named once, when they are first used.
+     */
+    public static final class Family<M extends Metric> implements Metric {
+        private final Supplier<M> metric;
+        /* adds the values of the first metric to the second */
+        private final BiConsumer<M, M> addTo;
+        private final ConcurrentMap<Object, Named<M>> members = new ConcurrentHashMap<>();
+
+        private Family(Supplier<M> metric, BiConsumer<M, M> addTo) {
+            this.metric = metric;
+            this.addTo = addTo;
+        }
+
+        /**
+         * @param name names the key in the exported metrics. It should not capture anything, so that calling this
+         *             method does not allocate.
+         */
+        @SuppressWarnings("unchecked")
+        public <K> M get(K key, Function<? super K, String> name) {
+            Named<M> member = members.get(key);
+            if (member == null) {
+                member = members.computeIfAbsent(key, k -> new Named<>(name.apply((K) k), metric.get()));
+            }
+            return member.metric;
+        }
+
+        @Override
+        public void reset() {
+            members.values().forEach(m -> m.metric.reset());
+        }
+
+        @Override
+        public void writeJson(StringBuilder sb, String indent) {
+            // keys with the same name, e.g. rules without a location, are written as one, with the sum of their values
+            Map<String, M> named = new TreeMap<>();
+            for (Named<M> member : members.values()) {
+                addTo.accept(member.metric, named.computeIfAbsent(member.name, n -> metric.get()));
+            }
+            writeObject(sb, named, indent);
+        }
+
+        private static final class Named<M> {
+            final String name;
+            final M metric;
+
+            Named(String name, M metric) {
+                this.name = name;
+                this.metric = metric;
+            }
+        }
+    }
+}
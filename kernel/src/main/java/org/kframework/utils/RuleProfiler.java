@@ -0,0 +1,198 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.utils;
+
+import org.kframework.utils.errorsystem.KEMException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Profiles the cost of each rule of a definition: how many times the rewrite engine attempts to apply it, how many
+ * of these attempts succeed, and how long it spends evaluating its side conditions and building its right-hand side.
+ *
+ * To keep the overhead low, each interval is timed with probability 1/{@code sampling}, and the times reported are
+ * scaled accordingly. The intervals are chosen at random rather than every {@code sampling}-th one, so that the
+ * sample is not biased when the same sequence of rules repeats with a period which shares a factor with it.
+ * The attempts and successes are counted exactly. The profile is kept in memory until it is written with
+ * {@link #report} and {@link #collapsedStacks}, which may be done after the profiler is disabled.
+ *
+ * The profiler is enabled while some run which needs it is running, with {@link #beginRun} and {@link #endRun}.
+ * In kserver, the runs profiled concurrently share the profile, which also includes the rules applied by the
+ * requests running concurrently. It is cleared when a run begins while no other is being profiled.
+ */
+public final class RuleProfiler {
+
+    /* the average number of intervals per timed interval, or 0 if the profiler is disabled */
+    private static volatile int sampling;
+    /* the sampling of the profile in memory, kept after the profiler is disabled for the reports */
+    private static volatile int reportedSampling = 1;
+    /* the number of runs which enabled the profiler */
+    private static int runs;
+
+    private static final ConcurrentMap<Object, RuleProfile> profiles = new ConcurrentHashMap<>();
+
+    private RuleProfiler() {}
+
+    /**
+     * Enables the profiler until the matching call to {@link #endRun}. If no other run is being profiled, the
+     * profile is cleared first.
+     *
+     * @param sampling the average number of intervals per timed interval. 1 times them all. It must be the same as
+     *                 that of the runs being profiled, which share the profile.
+     */
+    public static synchronized void beginRun(int sampling) {
+        if (sampling < 1) {
+            throw new IllegalArgumentException("The sampling interval must be positive, got " + sampling);
+        }
+        if (runs == 0) {
+            profiles.clear();
+            RuleProfiler.sampling = sampling;
+            reportedSampling = sampling;
+        } else if (RuleProfiler.sampling != sampling) {
+            throw KEMException.criticalError("Cannot profile rules sampling 1 in " + sampling
+                    + " intervals while another run samples 1 in " + RuleProfiler.sampling + ".");
+        }
+        runs++;
+    }
+
+    public static synchronized void endRun() {
+        if (--runs == 0) {
+            sampling = 0;
+        }
+    }
+
+    public static boolean isEnabled() {
+        return sampling != 0;
+    }
+
+    /**
+     * @param name names the rule in the reports, e.g. by its source and location. It should not capture anything, so
+     *             that calling this method does not allocate.
+     * @return the profile of the rule, or null if the profiler is disabled.
+     */
+    @SuppressWarnings("unchecked")
+    public static <R> RuleProfile profile(R rule, Function<? super R, String> name) {
+        if (sampling == 0) {
+            return null;
+        }
+        RuleProfile profile = profiles.get(rule);
+        if (profile == null) {
+            profile = profiles.computeIfAbsent(rule, r -> new RuleProfile(name.apply((R) r)));
+        }
+        return profile;
+    }
+
+    /**
+     * @return the start of an interval to pass to {@link RuleProfile#conditions} or {@link RuleProfile#rightHandSide},
+     * or 0 if the interval is not sampled.
+     */
+    public static long start() {
+        int s = sampling;
+        if (s == 0) {
+            return 0;
+        }
+        if (s > 1 && ThreadLocalRandom.current().nextInt(s) != 0) {
+            return 0;
+        }
+        return System.nanoTime();
+    }
+
+    public static final class RuleProfile {
+        private final String name;
+        private final LongAdder attempts = new LongAdder();
+        private final LongAdder successes = new LongAdder();
+        private final LongAdder conditionsNanos = new LongAdder();
+        private final LongAdder rightHandSideNanos = new LongAdder();
+
+        private RuleProfile(String name) {
+            this.name = name;
+        }
+
+        public void attempted() {
+            attempts.increment();
+        }
+
+        public void succeeded() {
+            successes.increment();
+        }
+
+        /**
+         * Records the time spent evaluating the side conditions since {@code start}, as returned by
+         * {@link RuleProfiler#start}.
+         */
+        public void conditions(long start) {
+            record(conditionsNanos, start);
+        }
+
+        /**
+         * Records the time spent building the right-hand side since {@code start}, as returned by
+         * {@link RuleProfiler#start}.
+         */
+        public void rightHandSide(long start) {
+            record(rightHandSideNanos, start);
+        }
+
+        private static void record(LongAdder nanos, long start) {
+            int s = sampling;
+            if (start != 0 && s != 0) {
+                nanos.add((System.nanoTime() - start) * s);
+            }
+        }
+
+        private long totalNanos() {
+            return conditionsNanos.sum() + rightHandSideNanos.sum();
+        }
+    }
+
+    private static List<RuleProfile> sorted() {
+        List<RuleProfile> sorted = new ArrayList<>(profiles.values());
+        sorted.sort(Comparator.comparingLong(RuleProfile::totalNanos).reversed()
+                .thenComparing(Comparator.comparingLong((RuleProfile p) -> p.attempts.sum()).reversed())
+                .thenComparing(p -> p.name));
+        return sorted;
+    }
+
+    /**
+     * @return a table of the rules, the most expensive first.
+     */
+    public static String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Times sampled on 1 in ").append(reportedSampling).append(" intervals on average.\n");
+        sb.append(String.format("%12s %12s %12s %10s %10s  %s%n",
+                "total ms", "requires ms", "rhs ms", "attempts", "successes", "rule"));
+        for (RuleProfile p : sorted()) {
+            sb.append(String.format("%12.3f %12.3f %12.3f %10d %10d  %s%n",
+                    p.totalNanos() / 1e6, p.conditionsNanos.sum() / 1e6, p.rightHandSideNanos.sum() / 1e6,
+                    p.attempts.sum(), p.successes.sum(), p.name));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the profile in the collapsed stack format of flame graphs: a line "rule;phase microseconds" for each
+     * phase of each rule.
+     */
+    public static String collapsedStacks() {
+        StringBuilder sb = new StringBuilder();
+        for (RuleProfile p : sorted()) {
+            // ';' separates frames, and the count is after the last space
+            String frame = p.name.replace(';', ',').replace('\n', ' ');
+            appendStack(sb, frame, "requires", p.conditionsNanos.sum());
+            appendStack(sb, frame, "rhs", p.rightHandSideNanos.sum());
+        }
+        return sb.toString();
+    }
+
+    private static void appendStack(StringBuilder sb, String rule, String phase, long nanos) {
+        long micros = nanos / 1000;
+        if (micros > 0) {
+            sb.append(rule).append(';').append(phase).append(' ').append(micros).append('\n');
+        }
+    }
+}
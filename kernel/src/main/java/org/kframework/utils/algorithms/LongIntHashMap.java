@@ -0,0 +1,113 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.utils.algorithms;
+
+import java.util.Arrays;
+
+/**
+ * A map from primitive longs to primitive ints using open addressing with linear probing.
+ * Avoids boxing and the allocation of an entry object per mapping, which matters for
+ * tables that are filled with millions of entries and thrown away after a single use.
+ *
+ * {@link #FREE} is reserved to mark empty slots and cannot be used as a key.
+ */
+public class LongIntHashMap {
+    public static final long FREE = Long.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] values;
+    private int size = 0;
+
+    public LongIntHashMap() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, FREE);
+        values = new int[capacity];
+    }
+
+    /**
+     * Mixes the bits of the key so that keys that only differ in their high bits
+     * (e.g. packed pairs of ints) do not collide.
+     */
+    static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while (keys[i] != FREE && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * @param key the key to look up
+     * @param defaultValue the value to return if the key is not in the map
+     * @return the value mapped to the key, or defaultValue
+     */
+    public int get(long key, int defaultValue) {
+        assert key != FREE;
+        int i = slot(key);
+        return keys[i] == FREE ? defaultValue : values[i];
+    }
+
+    public boolean containsKey(long key) {
+        assert key != FREE;
+        return keys[slot(key)] != FREE;
+    }
+
+    public void put(long key, int value) {
+        assert key != FREE;
+        int i = slot(key);
+        if (keys[i] == FREE) {
+            keys[i] = key;
+            size++;
+            if (size * 2 > keys.length) {
+                values[i] = value;
+                rehash();
+                return;
+            }
+        }
+        values[i] = value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int j = slot(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Packs two ints in a long, e.g. a state id and a position in the input.
+     */
+    public static long pack(int high, int low) {
+        return ((long) high << 32) | (low & 0xFFFFFFFFL);
+    }
+}
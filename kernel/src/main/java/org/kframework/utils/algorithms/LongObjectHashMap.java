@@ -0,0 +1,94 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.utils.algorithms;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A map from primitive longs to objects using open addressing with linear probing.
+ * Lookups do not allocate, so it can replace maps keyed by small immutable key objects
+ * that would otherwise be created for every lookup. Keys are usually built with
+ * {@link LongIntHashMap#pack(int, int)}.
+ *
+ * {@link LongIntHashMap#FREE} cannot be used as a key, and null cannot be used as a value.
+ * @param <V>    The type of the values
+ */
+public class LongObjectHashMap<V> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private int size = 0;
+
+    public LongObjectHashMap() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, LongIntHashMap.FREE);
+        values = new Object[capacity];
+    }
+
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int i = LongIntHashMap.hash(key) & mask;
+        while (keys[i] != LongIntHashMap.FREE && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * @param key the key to look up
+     * @return the value mapped to the key, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        assert key != LongIntHashMap.FREE;
+        return (V) values[slot(key)];
+    }
+
+    public void put(long key, V value) {
+        assert key != LongIntHashMap.FREE;
+        assert value != null;
+        int i = slot(key);
+        values[i] = value;
+        if (keys[i] == LongIntHashMap.FREE) {
+            keys[i] = key;
+            size++;
+            if (size * 2 > keys.length) {
+                rehash();
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Applies the action to every value in the map, in no particular order.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> action) {
+        for (Object value : values) {
+            if (value != null) {
+                action.accept((V) value);
+            }
+        }
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != LongIntHashMap.FREE) {
+                int j = slot(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.debugger;
+
+import org.junit.Test;
+import org.kframework.kore.K;
+import org.kframework.utils.errorsystem.KEMException;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+import static org.kframework.kore.KORE.*;
+
+public class CheckpointStoreTest {
+
+    private static K config(int i) {
+        return KApply(KLabel("<T>"), KApply(KLabel("<k>"), KToken(Integer.toString(i), Sort("Int"))));
+    }
+
+    private static void testStore(CheckpointStore.Storage storage) {
+        CheckpointStore store = new CheckpointStore(storage);
+        for (int i = 0; i <= 100; i += 10) {
+            store = store.put(i, config(i), Optional.of(BigInteger.valueOf(i + 1)));
+        }
+        assertEquals(0, store.firstStep());
+        assertEquals(100, store.lastStep());
+        for (int i = 0; i <= 100; i += 10) {
+            assertEquals(Integer.valueOf(i), store.floorEntry(i + 5).getKey());
+            assertEquals(config(i), store.floorEntry(i + 5).getValue());
+            assertEquals(Optional.of(BigInteger.valueOf(i + 1)), store.floorFreshCounter(i + 5));
+        }
+
+        CheckpointStore branch = store.headStore(45).put(50, config(-50));
+        assertEquals(50, branch.lastStep());
+        assertEquals(config(-50), branch.floorEntry(55).getValue());
+        assertEquals(config(40), branch.floorEntry(49).getValue());
+        assertEquals(Optional.empty(), branch.floorFreshCounter(55));
+        assertEquals(Optional.of(BigInteger.valueOf(41)), branch.floorFreshCounter(49));
+        assertEquals(config(50), store.floorEntry(55).getValue());
+        assertEquals(config(100), store.floorEntry(100).getValue());
+    }
+
+    @Test
+    public void testInMemory() {
+        testStore(new CheckpointStore.Storage(-1, null));
+    }
+
+    @Test
+    public void testSpillToFile() throws Exception {
+        File tmp = File.createTempFile("checkpoints", null);
+        tmp.deleteOnExit();
+        try (CheckpointStore.Storage storage = new CheckpointStore.Storage(0, tmp)) {
+            testStore(storage);
+        }
+        try (CheckpointStore.Storage storage = new CheckpointStore.Storage(2, tmp)) {
+            testStore(storage);
+        }
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        File tmp = File.createTempFile("checkpoints", null);
+        tmp.deleteOnExit();
+        CheckpointStore.Storage storage = new CheckpointStore.Storage(0, tmp);
+        CheckpointStore store = new CheckpointStore(storage).put(0, config(0)).put(10, config(10));
+        storage.close();
+        // closing again, or a storage which never opened its file, does nothing
+        storage.close();
+        new CheckpointStore.Storage(-1, null).close();
+        try {
+            store.floorEntry(5);
+            fail("Reading a checkpoint from a closed storage should fail");
+        } catch (KEMException e) {
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSpillWithoutFile() {
+        new CheckpointStore.Storage(2, null);
+    }
+}
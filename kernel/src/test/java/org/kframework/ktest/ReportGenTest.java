@@ -0,0 +1,41 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.ktest;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ReportGenTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testMerge() throws Exception {
+        File first = tmp.newFolder("first"), second = tmp.newFolder("second"), merged = tmp.newFolder("merged");
+        ReportGen report = new ReportGen(first);
+        report.addSuccess("imp.k", "sum.imp", 10, "", "");
+        report.save();
+        report = new ReportGen(second);
+        report.addFailure("imp.k", "collatz.imp", 20, "", "", "wrong output");
+        report.addSuccess("lambda.k", "fib.lambda", 30, "", "");
+        report.save();
+
+        ReportGen.merge(Arrays.asList(first, second, new File(tmp.getRoot(), "missing")), merged);
+
+        String imp = FileUtils.readFileToString(new File(merged, "imp.xml"));
+        assertTrue(imp.contains("sum.imp"));
+        assertTrue(imp.contains("collatz.imp"));
+        assertTrue(new File(merged, "lambda.xml").isFile());
+        String summary = FileUtils.readFileToString(new File(merged, "summary.xml"));
+        assertTrue(summary.contains("<completed>3</completed>"));
+        assertTrue(summary.contains("<failures>1</failures>"));
+        assertTrue(summary.contains("result=\"255\""));
+    }
+}
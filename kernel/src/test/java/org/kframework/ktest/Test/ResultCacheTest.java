@@ -0,0 +1,55 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.ktest.Test;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ResultCacheTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private String hash(File definition) {
+        List<File> lookupDirectories = Collections.singletonList(tmp.getRoot());
+        return ResultCache.sourcesHash(new String[] {definition.getName()}, definition, lookupDirectories);
+    }
+
+    @Test
+    public void testRequiredFilesAreHashed() throws Exception {
+        File dir = tmp.newFolder("def");
+        File main = new File(dir, "a.k");
+        FileUtils.writeStringToFile(main, "requires \"b.k\" require \"c.k\"\n"
+                + "// require \"commented.k\"\nmodule A endmodule");
+        File b = new File(dir, "b.k");
+        FileUtils.writeStringToFile(b, "module B endmodule");
+        File c = new File(tmp.getRoot(), "c.k");
+        FileUtils.writeStringToFile(c, "module C endmodule");
+        File commented = new File(dir, "commented.k");
+        FileUtils.writeStringToFile(commented, "module D endmodule");
+
+        String hash = hash(main);
+        assertEquals(hash, hash(main));
+
+        // a file pulled in with requires
+        FileUtils.writeStringToFile(b, "module B syntax Foo endmodule");
+        String changedB = hash(main);
+        assertNotEquals(hash, changedB);
+
+        // a file pulled in with require, found in a lookup directory
+        FileUtils.writeStringToFile(c, "module C syntax Foo endmodule");
+        String changedC = hash(main);
+        assertNotEquals(changedB, changedC);
+
+        // a require in a comment is not followed
+        FileUtils.writeStringToFile(commented, "module D syntax Foo endmodule");
+        assertEquals(changedC, hash(main));
+    }
+}
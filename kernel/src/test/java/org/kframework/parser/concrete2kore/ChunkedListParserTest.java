@@ -0,0 +1,144 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.parser.concrete2kore;
+
+import com.google.common.collect.Lists;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.kframework.attributes.Location;
+import org.kframework.attributes.Source;
+import org.kframework.definition.Definition;
+import org.kframework.definition.Module;
+import org.kframework.kompile.Kompile;
+import org.kframework.kore.K;
+import org.kframework.kore.Sort;
+import org.kframework.main.GlobalOptions;
+import org.kframework.parser.TreeNodesToKORE;
+import org.kframework.parser.concrete2kore.generator.RuleGrammarGenerator;
+import org.kframework.utils.errorsystem.KExceptionManager;
+import org.kframework.utils.errorsystem.ParseFailedException;
+import org.kframework.utils.file.FileUtil;
+import scala.Tuple2;
+import scala.util.Either;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Set;
+
+import static org.kframework.kore.KORE.*;
+
+public class ChunkedListParserTest {
+    private static final Source SOURCE = Source.apply("generated by ChunkedListParserTest");
+    private static final String DEF = "" +
+            "module TEST " +
+            "syntax Stmt ::= \"a\" | \"b\" | \"{\" Stmts \"}\" " +
+            "syntax Stmts ::= List{Stmt, \";\"} " +
+            "syntax Exp ::= \"x\" | \"(\" Exps \")\" " +
+            "syntax Exps ::= List{Exp, \"::\"} " +
+            "endmodule";
+
+    private Module module;
+    private ParseInModule parser;
+
+    @Before
+    public void setUp() {
+        FileUtil files = FileUtil.testFileUtil();
+        ParserUtils parserUtils = new ParserUtils(files::resolveWorkingDirectory, new KExceptionManager(new GlobalOptions()));
+        File definitionFile = new File(Kompile.BUILTIN_DIRECTORY.toString() + "/kast.k");
+        Definition baseK = parserUtils.loadDefinition("K", "K", files.loadFromWorkingDirectory(definitionFile.getPath()),
+                definitionFile, definitionFile.getParentFile(), Lists.newArrayList(Kompile.BUILTIN_DIRECTORY), false);
+        RuleGrammarGenerator gen = new RuleGrammarGenerator(baseK, true);
+        module = gen.getProgramsGrammar(ParserUtils.parseMainModuleOuterSyntax(DEF, SOURCE, "TEST"));
+        parser = gen.getCombinedGrammar(module);
+    }
+
+    /**
+     * A reader returning one character at a time, so that every separator is split across reads.
+     */
+    private static class OneCharReader extends Reader {
+        private final Reader reader;
+
+        OneCharReader(String s) {
+            reader = new StringReader(s);
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            return reader.read(cbuf, off, Math.min(len, 1));
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    private Object parseWhole(String input, Sort sort) {
+        Tuple2<Either<Set<ParseFailedException>, K>, Set<ParseFailedException>> res =
+                parser.parseString(input, sort, SOURCE);
+        if (res._1().isLeft()) {
+            return res._1().left().get().iterator().next().getKException().getLocation();
+        }
+        return TreeNodesToKORE.down(res._1().right().get());
+    }
+
+    private Object parseChunked(Reader input, Sort sort) throws IOException {
+        ChunkedListParser chunked = new ChunkedListParser(parser, module, sort,
+                new KExceptionManager(new GlobalOptions()));
+        Assert.assertTrue(chunked.isChunked());
+        try {
+            return chunked.parse(input, SOURCE);
+        } catch (ParseFailedException e) {
+            return e.getKException().getLocation();
+        }
+    }
+
+    private void assertSameAsWhole(String input, Sort sort) throws IOException {
+        Object expected = parseWhole(input, sort);
+        Assert.assertEquals(input, expected, parseChunked(new StringReader(input), sort));
+        Assert.assertEquals(input, expected, parseChunked(new OneCharReader(input), sort));
+    }
+
+    @Test
+    public void testStatements() throws IOException {
+        assertSameAsWhole("a; b; a", Sort("Stmts"));
+        assertSameAsWhole("", Sort("Stmts"));
+        assertSameAsWhole("a", Sort("Stmts"));
+        assertSameAsWhole("{a; {b; a}; b}; b; {}", Sort("Stmts"));
+    }
+
+    @Test
+    public void testLineEndings() throws IOException {
+        assertSameAsWhole("a;\r\nb;\n{a;\r b}", Sort("Stmts"));
+        Object error = parseWhole("a;\r\nb;\n{a;\r b}; c", Sort("Stmts"));
+        Assert.assertTrue(error instanceof Location);
+        assertSameAsWhole("a;\r\nb;\n{a;\r b}; c", Sort("Stmts"));
+    }
+
+    @Test
+    public void testErrors() throws IOException {
+        Assert.assertTrue(parseWhole("a; b;", Sort("Stmts")) instanceof Location);
+        assertSameAsWhole("a; b;", Sort("Stmts"));
+        assertSameAsWhole("a; b;  \n", Sort("Stmts"));
+        assertSameAsWhole("a; b a; b", Sort("Stmts"));
+        assertSameAsWhole("a; {b; a; b", Sort("Stmts"));
+    }
+
+    @Test
+    public void testSplitSeparator() throws IOException {
+        assertSameAsWhole("x :: (x :: x) :: x", Sort("Exps"));
+        assertSameAsWhole("x :: x ::", Sort("Exps"));
+    }
+
+    @Test
+    public void testNestedSeparators() throws IOException {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < 200; i++) {
+            sb.append("a; ");
+        }
+        sb.append("b}; a");
+        assertSameAsWhole(sb.toString(), Sort("Stmts"));
+    }
+}
@@ -0,0 +1,46 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.parser.concrete2kore;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kframework.attributes.Source;
+import org.kframework.main.GlobalOptions;
+import org.kframework.utils.errorsystem.KExceptionManager;
+import org.kframework.utils.file.FileUtil;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class ParserUtilsTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testSlurp() throws Exception {
+        File dir = tmp.getRoot();
+        FileUtils.writeStringToFile(new File(dir, "b.k"), "require \"c.k\" module B endmodule");
+        FileUtils.writeStringToFile(new File(dir, "c.k"), "module C endmodule");
+        File main = new File(dir, "a.k");
+        String text = "require \"b.k\" require \"c.k\" module A endmodule";
+
+        ParserUtils parser = new ParserUtils(FileUtil.testFileUtil()::resolveWorkingDirectory, new KExceptionManager(new GlobalOptions()));
+        List<org.kframework.kil.Module> modules =
+                parser.slurp(text, Source.apply(main.getAbsolutePath()), dir, Collections.emptyList());
+        // each file once, in the order in which it is first required
+        assertEquals(Arrays.asList("C", "B", "A"),
+                modules.stream().map(org.kframework.kil.Module::getName).collect(Collectors.toList()));
+
+        // the files which did not change are not parsed again
+        List<org.kframework.kil.Module> again =
+                parser.slurp(text, Source.apply(main.getAbsolutePath()), dir, Collections.emptyList());
+        assertSame(modules.get(0), again.get(0));
+    }
+}
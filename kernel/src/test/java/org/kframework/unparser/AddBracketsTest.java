@@ -10,6 +10,7 @@ import org.kframework.definition.Definition;
 import org.kframework.definition.Module;
 import org.kframework.kompile.Kompile;
 import org.kframework.kore.K;
+import org.kframework.kore.KApply;
 import org.kframework.main.GlobalOptions;
 import org.kframework.parser.ProductionReference;
 import org.kframework.parser.TreeNodesToKORE;
@@ -24,9 +25,11 @@ import scala.util.Either;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Set;
 
 import static org.junit.Assert.*;
+import static org.kframework.kore.KORE.*;
 
 public class AddBracketsTest {
 
@@ -94,6 +97,47 @@ public class AddBracketsTest {
         unparserTest(def, "( 1 + 1 ) * 1");
     }
 
+    @Test
+    public void testParallel() throws IOException {
+        String def = "module TEST\n" +
+                "  syntax Exp ::= Exp \"+\" Exp [left]\n" +
+                "  syntax Exp ::= Exp \"*\" Exp [left]\n" +
+                "  syntax Exp ::= \"1\"\n" +
+                "  syntax Exp ::= \"(\" Exp \")\" [bracket]\n" +
+                "  syntax priority _*_ > _+_\n" +
+                "endmodule\n";
+        Module test = parseModule(def);
+        ParseInModule parser = gen.getCombinedGrammar(gen.getProgramsGrammar(test));
+        KApply times = (KApply) parseTerm("( 1 + 1 ) * 1", parser);
+        KApply plus = (KApply) times.items().get(0);
+        K input = times.items().get(1);
+        for (int i = 0; i < 13; i++) {
+            input = KApply(i % 2 == 0 ? plus.klabel() : times.klabel(), input, input);
+        }
+        ProductionReference term = (ProductionReference) KOREToTreeNodes.apply(KOREToTreeNodes.up(test, input), test);
+        assertFalse(ParallelUnparser.chunkRoots(term, ParallelUnparser.GRAIN).isEmpty());
+
+        String expected = KOREToTreeNodes.toString(new AddBrackets(test).addBrackets(term, null, null));
+        StringBuilder actual = new StringBuilder();
+        ParallelUnparser.unparse(new AddBrackets(test).addBrackets(term), actual);
+        assertEquals(expected, actual.toString());
+    }
+
+    @Test
+    public void testDeepTerm() throws IOException {
+        String def = "module TEST\n" +
+                "  syntax KItem ::= \"a\" [klabel(a)]\n" +
+                "  syntax K ::= K \"~>\" K [klabel(#KSequence), left]\n" +
+                "endmodule\n";
+        Module test = parseModule(def);
+        K input = KSequence(Collections.nCopies(100000, KApply(KLabel("a"))));
+        String expected = String.join(" ~> ", Collections.nCopies(100000, "a"));
+        assertEquals(expected, unparseTerm(input, test));
+        StringBuilder actual = new StringBuilder();
+        ParallelUnparser.unparse(new AddBrackets(test).addBrackets((ProductionReference) KOREToTreeNodes.apply(KOREToTreeNodes.up(test, input), test)), actual);
+        assertEquals(expected, actual.toString());
+    }
+
     private void unparserTest(String def, String pgm) {
         Module test = parseModule(def);
         ParseInModule parser = gen.getCombinedGrammar(gen.getProgramsGrammar(test));
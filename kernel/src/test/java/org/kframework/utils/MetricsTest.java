@@ -0,0 +1,91 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.utils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MetricsTest {
+
+    private final Metrics.Counter counter = Metrics.counter("test.counter");
+    private final Metrics.Histogram histogram = Metrics.histogram("test.histogram");
+    private final Metrics.Family<Metrics.Counter> family = Metrics.counters("test.family");
+
+    @After
+    public void tearDown() {
+        Metrics.disable();
+        Metrics.reset();
+    }
+
+    @Test
+    public void testDisabled() {
+        counter.inc();
+        histogram.record(100);
+        assertEquals(0, Metrics.start());
+        histogram.stop(Metrics.start());
+        assertEquals(0, counter.get());
+        assertEquals(0, histogram.count());
+    }
+
+    @Test
+    public void testEnabled() {
+        Metrics.enable();
+        counter.inc();
+        counter.add(2);
+        histogram.record(5);
+        histogram.record(100);
+        assertEquals(3, counter.get());
+        assertEquals(2, histogram.count());
+        assertEquals(105, histogram.totalNanos());
+        assertSame(counter, Metrics.counter("test.counter"));
+    }
+
+    @Test
+    public void testToJson() {
+        Metrics.enable();
+        histogram.record(5);
+        family.get(1, i -> "one \"quoted\"").inc();
+        family.get(2, i -> "two").add(2);
+        String json = Metrics.toJson();
+        assertTrue(json.contains("\"test.histogram\": {\"count\": 1, \"totalNanos\": 5, \"maxNanos\": 5, \"buckets\": {\"<8\": 1}}"));
+        assertTrue(json.contains("\"one \\\"quoted\\\"\": 1"));
+        assertTrue(json.contains("\"two\": 2"));
+    }
+
+    @Test
+    public void testSameName() {
+        Metrics.enable();
+        family.get(1, i -> "null:null").inc();
+        family.get(2, i -> "null:null").add(2);
+        Metrics.Family<Metrics.Histogram> histograms = Metrics.histograms("test.histograms");
+        histograms.get(1, i -> "same").record(5);
+        histograms.get(2, i -> "same").record(100);
+        String json = Metrics.toJson();
+        assertTrue(json.contains("\"null:null\": 3"));
+        assertTrue(json.contains("\"same\": {\"count\": 2, \"totalNanos\": 105, \"maxNanos\": 100, \"buckets\": {\"<8\": 1, \"<128\": 1}}"));
+    }
+
+    @Test
+    public void testRuns() {
+        Metrics.beginRun();
+        Metrics.beginRun();
+        Metrics.endRun();
+        assertTrue(Metrics.isEnabled());
+        Metrics.endRun();
+        assertFalse(Metrics.isEnabled());
+        // enabled for the whole process, like kserver --metrics
+        Metrics.enable();
+        Metrics.beginRun();
+        Metrics.endRun();
+        assertTrue(Metrics.isEnabled());
+    }
+
+    @Test
+    public void testReset() {
+        Metrics.enable();
+        counter.inc();
+        Metrics.reset();
+        assertEquals(0, counter.get());
+    }
+}
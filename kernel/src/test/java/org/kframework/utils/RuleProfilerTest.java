@@ -0,0 +1,102 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.utils;
+
+import org.junit.Test;
+import org.kframework.utils.errorsystem.KEMException;
+
+import static org.junit.Assert.*;
+
+public class RuleProfilerTest {
+
+    @Test
+    public void testDisabled() {
+        assertNull(RuleProfiler.profile("rule", r -> r));
+        assertEquals(0, RuleProfiler.start());
+    }
+
+    @Test
+    public void testSampling() {
+        RuleProfiler.beginRun(4);
+        int sampled = 0;
+        try {
+            for (int i = 0; i < 100000; i++) {
+                if (RuleProfiler.start() != 0) {
+                    sampled++;
+                }
+            }
+        } finally {
+            RuleProfiler.endRun();
+        }
+        // 25000 on average, with a standard deviation of about 137
+        assertTrue(sampled > 24000 && sampled < 26000);
+        RuleProfiler.beginRun(1);
+        try {
+            assertNotEquals(0, RuleProfiler.start());
+        } finally {
+            RuleProfiler.endRun();
+        }
+    }
+
+    @Test
+    public void testReports() throws InterruptedException {
+        RuleProfiler.beginRun(1);
+        try {
+            RuleProfiler.RuleProfile cheap = RuleProfiler.profile("cheap", r -> "a.k:cheap");
+            RuleProfiler.RuleProfile hot = RuleProfiler.profile("hot", r -> "a.k:hot;1");
+            assertSame(hot, RuleProfiler.profile("hot", r -> "other"));
+            cheap.attempted();
+            hot.attempted();
+            hot.attempted();
+            long start = RuleProfiler.start();
+            Thread.sleep(5);
+            hot.conditions(start);
+            hot.succeeded();
+        } finally {
+            RuleProfiler.endRun();
+        }
+
+        String report = RuleProfiler.report();
+        assertTrue(report.startsWith("Times sampled on 1 in 1 intervals"));
+        assertTrue(report.indexOf("a.k:hot;1") < report.indexOf("a.k:cheap"));
+        assertTrue(report.matches("(?s).* 2 +1  a\\.k:hot;1\n.*"));
+        String stacks = RuleProfiler.collapsedStacks();
+        assertTrue(stacks.startsWith("a.k:hot,1;requires "));
+        assertFalse(stacks.contains("cheap"));
+    }
+
+    @Test
+    public void testConcurrentRuns() {
+        RuleProfiler.beginRun(2);
+        try {
+            RuleProfiler.profile("first", r -> "a.k:first").attempted();
+            RuleProfiler.beginRun(2);
+            try {
+                // the second run shares the profile of the first
+                RuleProfiler.profile("second", r -> "a.k:second").attempted();
+            } finally {
+                RuleProfiler.endRun();
+            }
+            assertTrue(RuleProfiler.isEnabled());
+            try {
+                RuleProfiler.beginRun(3);
+                fail("Runs profiled concurrently should have the same sampling");
+            } catch (KEMException e) {
+                assertTrue(RuleProfiler.isEnabled());
+            }
+            String report = RuleProfiler.report();
+            assertTrue(report.contains("a.k:first"));
+            assertTrue(report.contains("a.k:second"));
+        } finally {
+            RuleProfiler.endRun();
+        }
+        assertFalse(RuleProfiler.isEnabled());
+
+        // a later run starts from an empty profile
+        RuleProfiler.beginRun(2);
+        try {
+            assertFalse(RuleProfiler.report().contains("a.k:first"));
+        } finally {
+            RuleProfiler.endRun();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+// Copyright (c) 2016 K Team. All Rights Reserved.
+package org.kframework.utils.algorithms;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LongIntHashMapTest {
+
+    @Test
+    public void testPutGet() {
+        LongIntHashMap map = new LongIntHashMap();
+        map.put(LongIntHashMap.pack(1, 2), 3);
+        map.put(LongIntHashMap.pack(2, 1), 4);
+        map.put(LongIntHashMap.pack(1, 2), 5);
+        Assert.assertEquals(2, map.size());
+        Assert.assertEquals(5, map.get(LongIntHashMap.pack(1, 2), -1));
+        Assert.assertEquals(4, map.get(LongIntHashMap.pack(2, 1), -1));
+        Assert.assertEquals(-1, map.get(LongIntHashMap.pack(2, 2), -1));
+        Assert.assertFalse(map.containsKey(LongIntHashMap.pack(2, 2)));
+    }
+
+    @Test
+    public void testRehash() {
+        LongIntHashMap map = new LongIntHashMap();
+        for (int i = 0; i < 10000; i++) {
+            map.put(LongIntHashMap.pack(i % 7, i), i);
+        }
+        Assert.assertEquals(10000, map.size());
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertEquals(i, map.get(LongIntHashMap.pack(i % 7, i), -1));
+        }
+    }
+}
@@ -36,7 +36,73 @@ trait Rewriter {
    */
   def search(initialConfiguration: kore.K, depth: Optional[Integer], bound: Optional[Integer], pattern: Rule, searchType: SearchType): java.util.List[_ <: java.util.Map[_ <: kore.KVariable, _ <: kore.K]]
 
+  /**
+   * Like the other search, but passes the substitutions to consumer as they are found instead of returning them
+   * when the search ends, so they do not have to be kept in memory. The same substitution may be passed more than
+   * once if it is found in different configurations.
+   * By default the search runs to completion first; backends override this to stream the results.
+   * @param consumer Called with every substitution found; the search stops as soon as it returns false.
+   */
+  def search(initialConfiguration: kore.K, depth: Optional[Integer], bound: Optional[Integer], pattern: Rule, searchType: SearchType,
+             consumer: java.util.function.Predicate[java.util.Map[_ <: kore.KVariable, _ <: kore.K]]): Unit = {
+    val results = search(initialConfiguration, depth, bound, pattern, searchType).iterator()
+    while (results.hasNext && consumer.test(results.next())) {}
+  }
+
   def executeAndMatch(k: kore.K, depth: Optional[Integer], rule: Rule): Tuple2[RewriterResult, java.util.List[_ <: java.util.Map[_ <: kore.KVariable, _ <: kore.K]]]
 
   def prove(rules: java.util.List[Rule]): java.util.List[kore.K]
+
+  /**
+   * Starts a session on the given configuration, for clients that rewrite the same configuration repeatedly.
+   * By default every call of the session goes through [[execute]] and [[match]]; backends override this to keep
+   * the configuration and the rewriter in their own representation between calls.
+   */
+  def session(k: kore.K): RewriterSession = session(k, Optional.empty())
+
+  /**
+   * Like the other session, but starts the fresh counter of the session at the given value, as returned by
+   * [[RewriterSession.freshCounter]], so that a configuration can be rewritten again with the same fresh constants.
+   * The default session does not keep a fresh counter, and ignores it.
+   */
+  def session(k: kore.K, freshCounter: Optional[java.math.BigInteger]): RewriterSession = {
+    val rewriter = this
+    new RewriterSession {
+      private var current = k
+
+      def execute(depth: Optional[Integer]): RewriterResult = {
+        val result = rewriter.execute(current, depth)
+        current = result.k
+        result
+      }
+
+      def configuration: kore.K = current
+
+      def `match`(rule: Rule): java.util.List[_ <: java.util.Map[_ <: kore.KVariable, _ <: kore.K]] = rewriter.`match`(current, rule)
+    }
+  }
+}
+
+/**
+ * A configuration being rewritten by a [[Rewriter]], which is kept between calls.
+ */
+trait RewriterSession {
+  /**
+   * Rewrites the configuration of the session.
+   * @param depth No. of rewrite steps to take at most. Empty represents unbounded.
+   * @return The number of steps taken and the new configuration, which becomes the configuration of the session.
+   */
+  def execute(depth: Optional[Integer]): RewriterResult
+
+  /**
+   * The current configuration of the session.
+   */
+  def configuration: kore.K
+
+  def `match`(rule: Rule): java.util.List[_ <: java.util.Map[_ <: kore.KVariable, _ <: kore.K]]
+
+  /**
+   * The next value of the fresh counter of the session, or empty if the rewriter does not keep one between calls.
+   */
+  def freshCounter: Optional[java.math.BigInteger] = Optional.empty()
 }
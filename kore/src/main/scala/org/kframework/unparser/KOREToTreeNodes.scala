@@ -14,52 +14,177 @@ object KOREToTreeNodes {
 
   import org.kframework.kore.KORE._
 
-  def apply(t: K, mod: Module): Term = t match {
-    case t: KToken => Constant(t.s, mod.tokenProductionsFor(Sort(t.sort.name)).head, t.att.getOptional[Location]("Location"), t.att.getOptional[Source]("Source"))
-    case a: KApply =>
+  def apply(t: K, mod: Module): Term = foldUp[Term](t, {
+    case a: KApply => a.klist.items.asScala
+    case _ => Seq()
+  }, {
+    case (t: KToken, _) => Constant(t.s, mod.tokenProductionsFor(Sort(t.sort.name)).head, t.att.getOptional[Location]("Location"), t.att.getOptional[Source]("Source"))
+    case (a: KApply, items) =>
       val production: Production = mod.productionsFor(KLabel(a.klabel.name)).find(p => p.items.count(_.isInstanceOf[NonTerminal]) == a.klist.size).get
-      TermCons(ConsPStack.from((a.klist.items.asScala map { i: K => apply(i, mod) }).reverse asJava),
-        production, t.att.getOptional[Location]("Location"), t.att.getOptional[Source]("Source"))
-  }
+      TermCons(ConsPStack.from(items.reverse.asJava),
+        production, a.att.getOptional[Location]("Location"), a.att.getOptional[Source]("Source"))
+  })
 
-  def up(mod: Module)(t: K): K = t match {
-    case v: KVariable => KToken(v.name, Sorts.KVariable, v.att)
-    case t: KToken =>
+  def up(mod: Module)(t: K): K = foldUp[K](t, {
+    case s: KSequence => s.items.asScala
+    case r: KRewrite => Seq(r.left, r.right)
+    case t: KApply => t.klist.items.asScala
+    case _ => Seq()
+  }, {
+    case (v: KVariable, _) => KToken(v.name, Sorts.KVariable, v.att)
+    case (t: KToken, _) =>
       if (mod.tokenProductionsFor.contains(Sort(t.sort.name))) {
         t
       } else {
         KToken(t.s, Sorts.KString, t.att)
       }
-    case s: KSequence =>
-      if (s.items.size() == 0)
+    case (s: KSequence, items) =>
+      if (items.isEmpty)
         KApply(KLabel("#EmptyK"), KList(), s.att)
       else
-        upList(mod)(s.items.asScala).reduce((k1, k2) => KApply(KLabel("#KSequence"), KList(k1, k2), s.att))
-    case r: KRewrite => KApply(KLabel("#KRewrite"), KList(up(mod)(r.left), up(mod)(r.right)), r.att)
-    case t: KApply => KApply(t.klabel, upList(mod)(t.klist.items.asScala), t.att)
+        items.reduce((k1, k2) => KApply(KLabel("#KSequence"), KList(k1, k2), s.att))
+    case (r: KRewrite, Seq(left, right)) => KApply(KLabel("#KRewrite"), KList(left, right), r.att)
+    case (t: KApply, items) => KApply(t.klabel, items, t.att)
+  })
+
+  /**
+   * Computes the result for every subterm of t from the results for its children, as given by children, with an
+   * explicit stack, so that the depth of t (e.g. of a long left-nested ~>) is not limited by the size of the thread
+   * stack.
+   */
+  private def foldUp[R](t: K, children: K => Seq[K], combine: (K, Seq[R]) => R): R = {
+    class Frame(val term: K) {
+      val items: Iterator[K] = children(term).iterator
+      val results: mutable.ArrayBuffer[R] = mutable.ArrayBuffer[R]()
+    }
+    val stack = new java.util.ArrayDeque[Frame]
+    stack.push(new Frame(t))
+    var result: R = null.asInstanceOf[R]
+    while (!stack.isEmpty) {
+      val frame = stack.peek()
+      if (frame.items.hasNext) {
+        stack.push(new Frame(frame.items.next()))
+      } else {
+        stack.pop()
+        result = combine(frame.term, frame.results)
+        if (!stack.isEmpty) {
+          stack.peek().results += result
+        }
+      }
+    }
+    result
   }
 
   def upList(mod: Module)(items: Seq[K]): Seq[K] = {
     items map up(mod) _
   }
 
-  def toString(t: Term): String = t match {
-    case Constant(s, _) => s
-    case t@TermCons(items, p) => {
+  def toString(t: Term): String = {
+    val b = new java.lang.StringBuilder
+    unparse(t, b)
+    b.toString
+  }
+
+  /**
+   * Writes the same text as [[toString]] to out, as it is produced, so that large terms do not have to be
+   * held in memory as a string. The term is traversed with an explicit stack, so its depth is not limited
+   * by the size of the thread stack.
+   */
+  def unparse(t: Term, out: java.lang.Appendable): Unit = unparse(t, out, _ => false, _ => ())
+
+  /**
+   * Like the two-argument unparse, but the proper subterms of t for which split holds are not written. Instead,
+   * onSplit is called with them at the point where their text would be written, and is expected to arrange for it
+   * to be written there. This is used to unparse large subterms in parallel. Subterms which are only needed as
+   * arguments of a format that cannot be streamed are never split.
+   */
+  def unparse(t: Term, out: java.lang.Appendable, split: Term => Boolean, onSplit: Term => Unit): Unit = {
+    // Strings to write and Terms to unparse, the next one on top
+    val stack = new java.util.ArrayDeque[AnyRef]
+    pushItems(t, stack)
+    while (!stack.isEmpty) {
+      stack.pop() match {
+        case s: String => out.append(s)
+        case c: Term if split(c) => onSplit(c)
+        case c: Term => pushItems(c, stack)
+      }
+    }
+  }
+
+  private def pushItems(t: Term, stack: java.util.ArrayDeque[AnyRef]): Unit = t match {
+    case Constant(s, _) => stack.push(s)
+    case t@TermCons(_, p) =>
       var i = 0
-      val unparsedItems = p.items map {
+      val items: Seq[AnyRef] = p.items map {
         case Terminal(s, _) => s
-        case NonTerminal(sort) => {
+        case NonTerminal(sort) =>
+          val child = t.get(i)
           i = i + 1
-          toString(t.get(i - 1))
-        }
+          child
         case RegexTerminal(_, _, _) => throw new AssertionError("Unimplemented yet")
       }
-      if (p.att.contains("format")) {
-        p.att.get[String]("format").get.format(unparsedItems: _*)
-      } else {
-        unparsedItems.mkString(" ")
+      val unparsed: Seq[AnyRef] =
+        if (p.att.contains("format")) {
+          unparseFormat(p.att.get[String]("format").get, items)
+        } else {
+          items.flatMap(item => Seq(" ", item)).drop(1)
+        }
+      unparsed.reverseIterator.foreach(stack.push)
+  }
+
+  private val streamableFormat = """(?s)([^%]|%%|%n|%([1-9][0-9]*\$)?s)*""".r.pattern
+
+  /**
+   * Lays out the items (Strings and Terms) according to the format like [[String#format]] would.
+   * Formats which only use %s, %n and %% keep the Terms to be unparsed in place; for any other format,
+   * the Terms are unparsed to strings and passed to [[String#format]].
+   */
+  private def unparseFormat(format: String, items: Seq[AnyRef]): Seq[AnyRef] = {
+    if (!streamableFormat.matcher(format).matches()) {
+      val args = items map {
+        case s: String => s
+        case t: Term => toString(t)
+      }
+      return Seq(format.format(args: _*))
+    }
+    val result = mutable.ArrayBuffer[AnyRef]()
+    val literal = new java.lang.StringBuilder
+    def item(idx: Int): Unit = items(idx) match {
+      case s: String => literal.append(s)
+      case t: Term =>
+        if (literal.length > 0) {
+          result += literal.toString
+          literal.setLength(0)
+        }
+        result += t
+    }
+    var ordinary = 0
+    var i = 0
+    while (i < format.length) {
+      val c = format.charAt(i)
+      if (c != '%') {
+        literal.append(c)
+        i = i + 1
+      } else format.charAt(i + 1) match {
+        case '%' =>
+          literal.append('%')
+          i = i + 2
+        case 'n' =>
+          literal.append(System.lineSeparator)
+          i = i + 2
+        case 's' =>
+          item(ordinary)
+          ordinary = ordinary + 1
+          i = i + 2
+        case _ =>
+          val dollar = format.indexOf('$', i)
+          item(format.substring(i + 1, dollar).toInt - 1)
+          i = dollar + 2
       }
     }
+    if (literal.length > 0) {
+      result += literal.toString
+    }
+    result
   }
 }